@@ -1,3 +1,4 @@
+@GeneratorModel
 public class A {
     private String a;
     private B b;
@@ -0,0 +1,121 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * Fails if generation allocates more bytes per generated object than the budget
+ * 
+ * Runs go through the public JsonToObjectGenerator.generate entry point, so the engine
+ * the options actually select is what gets measured. The allocation of parsing the same
+ * payload is measured on its own and subtracted, leaving generation itself. Each payload
+ * is run in the default mode and in low-allocation mode, and the low-allocation figure is
+ * checked against the budget. Allocation is read with ThreadMXBean.getThreadAllocatedBytes
+ * for the current thread.
+ * 
+ * Usage: java AllocationBudgetTest [objects] [budgetBytesPerObject]
+ */
+public class AllocationBudgetTest {
+    
+    /** Dominated by the generated text itself (about 140 characters per Employee) and its variable names */
+    private static final long DEFAULT_BUDGET_BYTES_PER_OBJECT = 400;
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 5;
+    
+    public static void main(String[] args) {
+        int objects = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        long budget = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_BUDGET_BYTES_PER_OBJECT;
+        
+        com.sun.management.ThreadMXBean threads = allocationBean();
+        if (threads == null) {
+            System.out.println("Thread allocation counters not supported on this JVM; skipping");
+            return;
+        }
+        
+        System.out.println("=== Allocation Budget Test (budget " + budget + " bytes/object) ===\n");
+        boolean passed = true;
+        passed &= check(threads, "Company, " + objects + " employees", Company.class,
+                        companyJson(objects), objects + 1, budget);
+        passed &= check(threads, "TreeNode chain, " + objects / 10 + " deep", TreeNode.class,
+                        treeChainJson(objects / 10), objects / 10, budget);
+        
+        System.out.println("\n" + (passed ? "PASSED" : "FAILED"));
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+    
+    private static boolean check(com.sun.management.ThreadMXBean threads, String label, Class<?> clazz,
+                                 String json, int objectCount, long budget) {
+        GenerationOptions defaults = GenerationOptions.defaults();
+        GenerationOptions lowAllocation = GenerationOptions.defaults().lowAllocation(true);
+        
+        String expected = generate(clazz, json, defaults);
+        if (!expected.equals(generate(clazz, json, lowAllocation))) {
+            System.out.println(label + ": low-allocation output differs from default output");
+            return false;
+        }
+        
+        long parseBytes = measure(threads, () -> JsonToObjectGenerator.parseJson(json));
+        long defaultBytes = (measure(threads, () -> generate(clazz, json, defaults)) - parseBytes) / objectCount;
+        long lowAllocationBytes = (measure(threads, () -> generate(clazz, json, lowAllocation)) - parseBytes)
+            / objectCount;
+        boolean withinBudget = lowAllocationBytes <= budget;
+        System.out.printf("%-36s default %,6d B/object   low-allocation %,6d B/object   %s%n",
+                          label, defaultBytes, lowAllocationBytes, withinBudget ? "ok" : "OVER BUDGET");
+        return withinBudget;
+    }
+    
+    /**
+     * Average bytes allocated by one run of the action
+     */
+    private static long measure(com.sun.management.ThreadMXBean threads, Runnable action) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            action.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            action.run();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / MEASURED_RUNS;
+    }
+    
+    private static String generate(Class<?> clazz, String json, GenerationOptions options) {
+        GenerationResult result = JsonToObjectGenerator.generate(clazz, json, options);
+        if (!result.isCompleted()) {
+            throw new IllegalStateException("Generation failed: " + result.getMessage());
+        }
+        return result.getCode();
+    }
+    
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean &&
+            ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+    
+    private static String companyJson(int employees) {
+        StringBuilder json = new StringBuilder(employees * 40);
+        json.append("{\"name\":\"Budget Corp\",\"employees\":[");
+        for (int i = 0; i < employees; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"name\":\"Employee ").append(i).append("\",\"age\":").append(20 + i % 45).append('}');
+        }
+        return json.append("]}").toString();
+    }
+    
+    private static String treeChainJson(int depth) {
+        StringBuilder json = new StringBuilder(depth * 40);
+        for (int i = 0; i < depth; i++) {
+            json.append("{\"name\":\"node ").append(i).append("\",\"leftChild\":");
+        }
+        json.append("null");
+        for (int i = 0; i < depth; i++) {
+            json.append('}');
+        }
+        return json.toString();
+    }
+}
@@ -1,3 +1,4 @@
+@GeneratorModel
 public class B {
     private int x;
     
@@ -0,0 +1,346 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Checkpointed, resumable bulk generation
+ * 
+ * The input is either a directory of JSON documents (one unit per *.json file, output
+ * <name>.java) or an NDJSON file (one unit per chunk of about chunkBytes, split on line
+ * boundaries, output part-NNNNN.java). Every finished unit is recorded in
+ * <output>/job.journal together with its output's length and CRC32 (see GenerationJournal).
+ * 
+ * A restarted job reads the journal and skips every unit whose output is still intact;
+ * units whose output is missing, short or fails its checksum - e.g. not yet flushed to
+ * disk when the process died - are generated again, as are units that never made it
+ * into the journal.
+ * 
+ * Usage: java BulkGenerationJob --class Company --input docs/|records.ndjson --output out/
+ *                               [--threads N] [--chunk-bytes N] [--strategy S] [--commit-ms N]
+ */
+public class BulkGenerationJob {
+    
+    static final String JOURNAL_FILE = "job.journal";
+    
+    private static final long DEFAULT_CHUNK_BYTES = 8L << 20;
+    private static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 50;
+    
+    private final Class<?> rootClass;
+    private final Path input;
+    private final Path outputDirectory;
+    private GenerationOptions options = GenerationOptions.defaults();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long chunkBytes = DEFAULT_CHUNK_BYTES;
+    private long commitIntervalMillis = DEFAULT_COMMIT_INTERVAL_MILLIS;
+    
+    public BulkGenerationJob(Class<?> rootClass, Path input, Path outputDirectory) {
+        this.rootClass = Objects.requireNonNull(rootClass, "rootClass");
+        this.input = Objects.requireNonNull(input, "input");
+        this.outputDirectory = Objects.requireNonNull(outputDirectory, "outputDirectory");
+    }
+    
+    public BulkGenerationJob options(GenerationOptions options) {
+        this.options = Objects.requireNonNull(options, "options");
+        return this;
+    }
+    
+    public BulkGenerationJob threads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+    
+    /**
+     * NDJSON input only: approximate bytes per unit. Keep it the same across restarts of a
+     * job, since units are identified by their byte range.
+     */
+    public BulkGenerationJob chunkBytes(long chunkBytes) {
+        if (chunkBytes < 1) {
+            throw new IllegalArgumentException("chunkBytes must be positive: " + chunkBytes);
+        }
+        this.chunkBytes = chunkBytes;
+        return this;
+    }
+    
+    /**
+     * Longest time a finished unit waits before its journal entry is committed
+     */
+    public BulkGenerationJob commitInterval(long commitIntervalMillis) {
+        if (commitIntervalMillis < 1) {
+            throw new IllegalArgumentException("commitIntervalMillis must be at least 1: " + commitIntervalMillis);
+        }
+        this.commitIntervalMillis = commitIntervalMillis;
+        return this;
+    }
+    
+    /**
+     * Run (or resume) the job
+     * 
+     * @throws IOException if a unit cannot be read or written, or the journal fails
+     */
+    public Result run() throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        Files.createDirectories(outputDirectory);
+        List<Unit> units = listUnits();
+        
+        GenerationJournal journal = GenerationJournal.open(outputDirectory.resolve(JOURNAL_FILE), commitIntervalMillis);
+        List<Unit> todo = new ArrayList<>();
+        int skipped = 0;
+        int repaired = 0;
+        AtomicLong outputBytes = new AtomicLong();
+        try {
+            for (Unit unit : units) {
+                GenerationJournal.Entry entry = journal.getEntries().get(unit.key);
+                if (entry == null || !entry.getOutput().equals(unit.output)) {
+                    todo.add(unit);
+                } else if (isIntact(outputDirectory.resolve(entry.getOutput()), entry)) {
+                    skipped++;
+                } else {
+                    repaired++;
+                    todo.add(unit);
+                }
+            }
+            
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (Unit unit : todo) {
+                futures.add(pool.submit(() -> {
+                    generate(unit, journal, outputBytes);
+                    return null;
+                }));
+            }
+            pool.shutdown();
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                pool.shutdownNow();
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                    : new IOException("Unit failed", e.getCause());
+            }
+        } finally {
+            journal.close();
+        }
+        return new Result(units.size(), todo.size(), skipped, repaired, outputBytes.get(),
+                          System.nanoTime() - started, journal);
+    }
+    
+    private void generate(Unit unit, GenerationJournal journal, AtomicLong outputBytes) throws IOException {
+        CRC32 crc = new CRC32();
+        Path output = outputDirectory.resolve(unit.output);
+        try (CheckedOutputStream checked = new CheckedOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(output)), crc);
+             Writer writer = new OutputStreamWriter(checked, StandardCharsets.UTF_8)) {
+            unit.generate(writer);
+        }
+        long length = Files.size(output);
+        outputBytes.addAndGet(length);
+        journal.record(unit.key, unit.output, length, crc.getValue());
+    }
+    
+    private static boolean isIntact(Path output, GenerationJournal.Entry entry) throws IOException {
+        if (!Files.exists(output) || Files.size(output) != entry.getLength()) {
+            return false;
+        }
+        try (CheckedInputStream in = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(output)),
+                                                            new CRC32())) {
+            byte[] buffer = new byte[1 << 16];
+            while (in.read(buffer) >= 0) {
+                // Reading is all that is needed to update the checksum
+            }
+            return in.getChecksum().getValue() == entry.getCrc();
+        }
+    }
+    
+    // ========================================================================================
+    // UNITS
+    // ========================================================================================
+    
+    private List<Unit> listUnits() throws IOException {
+        List<Unit> units = new ArrayList<>();
+        if (Files.isDirectory(input)) {
+            List<Path> documents;
+            try (Stream<Path> files = Files.list(input)) {
+                documents = files.filter(file -> file.getFileName().toString().endsWith(".json"))
+                    .sorted().collect(Collectors.toList());
+            }
+            for (Path document : documents) {
+                String name = document.getFileName().toString();
+                units.add(new DocumentUnit(document, name.substring(0, name.length() - ".json".length()) + ".java"));
+            }
+        } else {
+            int chunks = (int) Math.max(1, Math.min(Integer.MAX_VALUE, Files.size(input) / chunkBytes));
+            for (ShardCoordinator.Shard shard : ShardCoordinator.split(input, chunks)) {
+                units.add(new RangeUnit(shard.getStart(), shard.getEnd(),
+                                        String.format("part-%05d.java", shard.getIndex())));
+            }
+        }
+        return units;
+    }
+    
+    private abstract static class Unit {
+        final String key;
+        final String output;
+        
+        Unit(String key, String output) {
+            this.key = key;
+            this.output = output;
+        }
+        
+        abstract void generate(Writer out) throws IOException;
+    }
+    
+    private final class DocumentUnit extends Unit {
+        private final Path document;
+        
+        DocumentUnit(Path document, String output) {
+            super(document.getFileName().toString(), output);
+            this.document = document;
+        }
+        
+        @Override
+        void generate(Writer out) throws IOException {
+            String json = new String(Files.readAllBytes(document), StandardCharsets.UTF_8);
+            GenerationResult result = JsonToObjectGenerator.generate(rootClass, json, options);
+            if (result.isCompleted()) {
+                out.write(result.getCode());
+                out.write("\n");
+            } else {
+                out.write("// " + document.getFileName() + " failed: " + result.getMessage() + "\n");
+            }
+        }
+    }
+    
+    private final class RangeUnit extends Unit {
+        private final long start;
+        private final long end;
+        
+        RangeUnit(long start, long end, String output) {
+            super(start + "-" + end, output);
+            this.start = start;
+            this.end = end;
+        }
+        
+        @Override
+        void generate(Writer out) throws IOException {
+            ShardWorker.generateRange(rootClass, input.toFile(), start, end, options, out);
+        }
+    }
+    
+    // ========================================================================================
+    // RESULT
+    // ========================================================================================
+    
+    public static final class Result {
+        private final int units;
+        private final int generated;
+        private final int skipped;
+        private final int repaired;
+        private final long outputBytes;
+        private final long elapsedNanos;
+        private final long journalCommits;
+        private final long journalEntries;
+        
+        Result(int units, int generated, int skipped, int repaired, long outputBytes, long elapsedNanos,
+               GenerationJournal journal) {
+            this.units = units;
+            this.generated = generated;
+            this.skipped = skipped;
+            this.repaired = repaired;
+            this.outputBytes = outputBytes;
+            this.elapsedNanos = elapsedNanos;
+            this.journalCommits = journal.getCommits();
+            this.journalEntries = journal.getCommittedEntries();
+        }
+        
+        public int getUnits() {
+            return units;
+        }
+        
+        public int getGenerated() {
+            return generated;
+        }
+        
+        /**
+         * Units finished by an earlier run and verified intact
+         */
+        public int getSkipped() {
+            return skipped;
+        }
+        
+        /**
+         * Units recorded by an earlier run whose output failed verification
+         */
+        public int getRepaired() {
+            return repaired;
+        }
+        
+        public long getOutputBytes() {
+            return outputBytes;
+        }
+        
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d units: %d generated (%d repaired), %d skipped; %d output bytes; "
+                                 + "journal: %d entries in %d commits; %.1f ms",
+                                 units, generated, repaired, skipped, outputBytes, journalEntries, journalCommits,
+                                 elapsedNanos / 1e6);
+        }
+    }
+    
+    // ========================================================================================
+    // COMMAND LINE
+    // ========================================================================================
+    
+    public static void main(String[] args) throws Exception {
+        String className = null;
+        Path input = null;
+        Path output = null;
+        Integer threads = null;
+        Long chunkBytes = null;
+        Long commitMillis = null;
+        CollectionStrategy strategy = CollectionStrategy.DEFAULT;
+        
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--class": className = args[++i]; break;
+                case "--input": input = Paths.get(args[++i]); break;
+                case "--output": output = Paths.get(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--chunk-bytes": chunkBytes = Long.parseLong(args[++i]); break;
+                case "--commit-ms": commitMillis = Long.parseLong(args[++i]); break;
+                case "--strategy": strategy = CollectionStrategy.valueOf(args[++i]); break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if (className == null || input == null || output == null) {
+            System.err.println("Usage: java BulkGenerationJob --class Company --input docs/|records.ndjson "
+                + "--output out/ [--threads N] [--chunk-bytes N] [--strategy S] [--commit-ms N]");
+            System.exit(2);
+        }
+        
+        BulkGenerationJob job = new BulkGenerationJob(Class.forName(className), input, output)
+            .options(GenerationOptions.defaults().collectionStrategy(strategy));
+        if (threads != null) job.threads(threads);
+        if (chunkBytes != null) job.chunkBytes(chunkBytes);
+        if (commitMillis != null) job.commitInterval(commitMillis);
+        System.out.println(job.run());
+    }
+}
@@ -0,0 +1,566 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * JSON tokenizer working directly on UTF-8 bytes
+ * 
+ * Unlike Gson, it never creates a String for a key: names are matched against the
+ * class's FieldNameTable on the raw bytes. Scalar values are captured as packed
+ * (kind, offset, length) handles and decoded only when rendered. Strings that need no
+ * escaping are copied straight from the input into the output.
+ * 
+ * Accepts strict JSON (RFC 8259) only.
+ */
+final class ByteJsonTokenizer implements JsonTokenSource {
+    
+    // Container states, as in Gson's JsonReader
+    private static final byte EMPTY_DOCUMENT = 0;
+    private static final byte NONEMPTY_DOCUMENT = 1;
+    private static final byte EMPTY_OBJECT = 2;
+    private static final byte DANGLING_NAME = 3;
+    private static final byte NONEMPTY_OBJECT = 4;
+    private static final byte EMPTY_ARRAY = 5;
+    private static final byte NONEMPTY_ARRAY = 6;
+    
+    // Scalar handle layout: offset (31 bits) | length (28 bits) | kind (3 bits) | clean flag (1 bit)
+    private static final int KIND_STRING = 0;
+    private static final int KIND_NUMBER = 1;
+    private static final int KIND_TRUE = 2;
+    private static final int KIND_FALSE = 3;
+    private static final int KIND_NULL = 4;
+    private static final int MAX_SCALAR_LENGTH = (1 << 28) - 1;
+    
+    private final byte[] buffer;
+    private final int limit;
+    private final StructuralIndex index;
+    private int pos;
+    // Containers are entered or skipped in document order, so the next one on the tape is always the next one read
+    private int nextContainer;
+    private int peekedContainer = -1;
+    
+    private byte[] stack = new byte[32];
+    private int stackSize;
+    
+    private JsonToken peeked;
+    private int valueStart;
+    private int valueEnd;
+    private boolean valueClean;
+    
+    ByteJsonTokenizer(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+    
+    ByteJsonTokenizer(byte[] buffer, int offset, int length) {
+        this(buffer, offset, length, null, 0);
+    }
+    
+    /**
+     * With a structural index of the same buffer, element counts and container skips are
+     * answered from the tape instead of rescanning the bytes
+     * 
+     * @param firstContainer Tape index of the first container in [offset, offset + length)
+     */
+    ByteJsonTokenizer(byte[] buffer, int offset, int length, StructuralIndex index, int firstContainer) {
+        this.buffer = buffer;
+        this.pos = offset;
+        this.limit = offset + length;
+        this.index = index;
+        this.nextContainer = firstContainer;
+        this.stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+    
+    /**
+     * Heap buffers are read in place; direct buffers are copied once
+     */
+    static ByteJsonTokenizer of(ByteBuffer input) {
+        if (input.hasArray()) {
+            return new ByteJsonTokenizer(input.array(), input.arrayOffset() + input.position(), input.remaining());
+        }
+        byte[] copy = new byte[input.remaining()];
+        input.duplicate().get(copy);
+        return new ByteJsonTokenizer(copy);
+    }
+    
+    /**
+     * Tokenizer over a buffer's remaining bytes with a StructuralIndex built up front
+     */
+    static ByteJsonTokenizer indexed(ByteBuffer input) throws IOException {
+        byte[] bytes;
+        int offset;
+        if (input.hasArray()) {
+            bytes = input.array();
+            offset = input.arrayOffset() + input.position();
+        } else {
+            bytes = new byte[input.remaining()];
+            input.duplicate().get(bytes);
+            offset = 0;
+        }
+        StructuralIndex index = StructuralIndex.build(bytes, offset, input.remaining());
+        return new ByteJsonTokenizer(bytes, offset, input.remaining(), index, 0);
+    }
+    
+    // ========================================================================================
+    // TOKENIZING
+    // ========================================================================================
+    
+    @Override
+    public JsonToken peek() throws IOException {
+        if (peeked == null) {
+            peeked = readToken();
+        }
+        return peeked;
+    }
+    
+    @Override
+    public void advance() throws IOException {
+        peek();
+        peeked = null;
+    }
+    
+    private JsonToken readToken() throws IOException {
+        byte state = stack[stackSize - 1];
+        int c;
+        switch (state) {
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    stackSize--;
+                    return JsonToken.END_OBJECT;
+                }
+                if (state == NONEMPTY_OBJECT) {
+                    if (c != ',') throw syntaxError("Expected ',' or '}'");
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') throw syntaxError("Expected name");
+                readString();
+                stack[stackSize - 1] = DANGLING_NAME;
+                return JsonToken.NAME;
+            case DANGLING_NAME:
+                if (nextNonWhitespace() != ':') throw syntaxError("Expected ':'");
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                return readValue(nextNonWhitespace());
+            case EMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    stackSize--;
+                    return JsonToken.END_ARRAY;
+                }
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                return readValue(c);
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    stackSize--;
+                    return JsonToken.END_ARRAY;
+                }
+                if (c != ',') throw syntaxError("Expected ',' or ']'");
+                return readValue(nextNonWhitespace());
+            case EMPTY_DOCUMENT:
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                return readValue(nextNonWhitespace());
+            default:
+                if (nextNonWhitespace() != -1) throw syntaxError("Unexpected data after document");
+                return JsonToken.END_DOCUMENT;
+        }
+    }
+    
+    private JsonToken readValue(int c) throws IOException {
+        switch (c) {
+            case '{':
+                push(EMPTY_OBJECT);
+                peekedContainer = nextContainer++;
+                return JsonToken.BEGIN_OBJECT;
+            case '[':
+                push(EMPTY_ARRAY);
+                peekedContainer = nextContainer++;
+                return JsonToken.BEGIN_ARRAY;
+            case '"':
+                readString();
+                return JsonToken.STRING;
+            case 't':
+                readLiteral("true");
+                return JsonToken.BOOLEAN;
+            case 'f':
+                readLiteral("false");
+                return JsonToken.BOOLEAN;
+            case 'n':
+                readLiteral("null");
+                return JsonToken.NULL;
+            case -1:
+                throw syntaxError("Unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber();
+                    return JsonToken.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+    
+    /**
+     * Scan a string body; pos is just past the opening quote. Marks the value clean when it
+     * contains no escapes or control characters and can be copied into a Java literal as-is.
+     */
+    private void readString() throws IOException {
+        int start = pos;
+        boolean clean = true;
+        while (pos < limit) {
+            byte b = buffer[pos];
+            if (b == '"') {
+                setValue(start, pos, clean);
+                pos++;
+                return;
+            }
+            if (b == '\\') {
+                clean = false;
+                pos += 2;
+                continue;
+            }
+            if (b >= 0 && b < 0x20) {
+                clean = false;
+            }
+            pos++;
+        }
+        throw syntaxError("Unterminated string");
+    }
+    
+    private void readNumber() {
+        int start = pos - 1;
+        while (pos < limit) {
+            byte b = buffer[pos];
+            if ((b >= '0' && b <= '9') || b == '.' || b == 'e' || b == 'E' || b == '-' || b == '+') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        setValue(start, pos, true);
+    }
+    
+    private void readLiteral(String literal) throws IOException {
+        int start = pos - 1;
+        for (int i = 1; i < literal.length(); i++, pos++) {
+            if (pos >= limit || buffer[pos] != literal.charAt(i)) {
+                throw syntaxError("Expected '" + literal + "'");
+            }
+        }
+        setValue(start, pos, true);
+    }
+    
+    private void setValue(int start, int end, boolean clean) {
+        valueStart = start;
+        valueEnd = end;
+        valueClean = clean;
+    }
+    
+    private int nextNonWhitespace() {
+        while (pos < limit) {
+            byte b = buffer[pos++];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return b & 0xFF;
+            }
+        }
+        return -1;
+    }
+    
+    private void push(byte state) {
+        if (stackSize == stack.length) {
+            stack = java.util.Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = state;
+    }
+    
+    private MalformedJsonException syntaxError(String message) {
+        return new MalformedJsonException(message + " at byte " + pos);
+    }
+    
+    // ========================================================================================
+    // SKIPPING AND LOOKAHEAD
+    // ========================================================================================
+    
+    @Override
+    public void skipValue() throws IOException {
+        JsonToken token = peek();
+        if (token == JsonToken.NAME || token == JsonToken.END_OBJECT ||
+            token == JsonToken.END_ARRAY || token == JsonToken.END_DOCUMENT) {
+            throw new IllegalStateException("Expected a value but was " + token);
+        }
+        peeked = null;
+        if (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {
+            if (index != null) {
+                pos = index.end(peekedContainer);
+                nextContainer = index.skip(peekedContainer);
+            } else {
+                pos = skipContainer(pos);
+            }
+            stackSize--;
+        }
+    }
+    
+    /**
+     * Raw structural scan from just inside a container to just past its closing bracket.
+     * Only quotes, backslashes and brackets are looked at; nothing is decoded.
+     */
+    private int skipContainer(int from) throws IOException {
+        int depth = 1;
+        int i = from;
+        while (i < limit) {
+            byte b = buffer[i++];
+            if (b == '"') {
+                while (i < limit && buffer[i] != '"') {
+                    i += buffer[i] == '\\' ? 2 : 1;
+                }
+                i++;
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (--depth == 0) return i;
+            }
+        }
+        throw syntaxError("Unterminated container");
+    }
+    
+    @Override
+    public boolean countsElements() {
+        return true;
+    }
+    
+    @Override
+    public int countElements() throws IOException {
+        if (peek() != JsonToken.BEGIN_ARRAY) {
+            throw new IllegalStateException("Expected BEGIN_ARRAY but was " + peeked);
+        }
+        if (index != null) {
+            return index.count(peekedContainer);
+        }
+        int depth = 1;
+        int count = 0;
+        boolean sawValue = false;
+        int i = pos;
+        while (i < limit) {
+            byte b = buffer[i++];
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') continue;
+            if (depth == 1 && !sawValue && b != ']') {
+                sawValue = true;
+                count++;
+            }
+            if (b == '"') {
+                while (i < limit && buffer[i] != '"') {
+                    i += buffer[i] == '\\' ? 2 : 1;
+                }
+                i++;
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (--depth == 0) return count;
+            } else if (b == ',' && depth == 1) {
+                sawValue = false;
+            }
+        }
+        throw syntaxError("Unterminated array");
+    }
+    
+    // ========================================================================================
+    // NAMES AND SCALARS
+    // ========================================================================================
+    
+    @Override
+    public int nameIndex(ClassPlan plan) throws IOException {
+        if (peek() != JsonToken.NAME) {
+            throw new IllegalStateException("Expected NAME but was " + peeked);
+        }
+        FieldNameTable table = plan.getNameTable();
+        return valueClean ? table.find(buffer, valueStart, valueEnd) : table.find(decodeString(valueStart, valueEnd));
+    }
+    
+    @Override
+    public String name() throws IOException {
+        if (peek() != JsonToken.NAME) {
+            throw new IllegalStateException("Expected NAME but was " + peeked);
+        }
+        return valueClean
+            ? new String(buffer, valueStart, valueEnd - valueStart, StandardCharsets.UTF_8)
+            : decodeString(valueStart, valueEnd);
+    }
+    
+    @Override
+    public long captureScalar() throws IOException {
+        JsonToken token = peek();
+        int kind;
+        switch (token) {
+            case STRING: kind = KIND_STRING; break;
+            case NUMBER: kind = KIND_NUMBER; break;
+            case BOOLEAN: kind = buffer[valueStart] == 't' ? KIND_TRUE : KIND_FALSE; break;
+            case NULL: kind = KIND_NULL; break;
+            default: throw new IllegalStateException("Expected a scalar but was " + token);
+        }
+        int length = valueEnd - valueStart;
+        if (length > MAX_SCALAR_LENGTH) {
+            throw new IllegalStateException("Scalar value too long: " + length + " bytes");
+        }
+        return ((long) valueStart << 32) | ((long) length << 4) | (kind << 1) | (valueClean ? 1 : 0);
+    }
+    
+    @Override
+    public boolean isNull(long handle) {
+        return kindOf(handle) == KIND_NULL;
+    }
+    
+    @Override
+    public void appendValue(long handle, Class<?> type, StringBuilder out) {
+        int kind = kindOf(handle);
+        int start = startOf(handle);
+        int end = start + lengthOf(handle);
+        
+        if (type == String.class && kind == KIND_STRING && isClean(handle)) {
+            out.append('"');
+            appendRaw(start, end, out);
+            out.append('"');
+            return;
+        }
+        if ((type == int.class || type == Integer.class) && kind == KIND_NUMBER && isPlainInteger(start, end, 9)) {
+            appendRaw(start, end, out);
+            return;
+        }
+        if ((type == long.class || type == Long.class) && kind == KIND_NUMBER && isPlainInteger(start, end, 18)) {
+            appendRaw(start, end, out);
+            out.append('L');
+            return;
+        }
+        if ((type == boolean.class || type == Boolean.class) && (kind == KIND_TRUE || kind == KIND_FALSE)) {
+            out.append(kind == KIND_TRUE ? "true" : "false");
+            return;
+        }
+        // Everything else goes through the tree converter so the output stays identical
+        out.append(JsonToObjectGenerator.ValueConverter.getValueAsString(toPrimitive(kind, start, end), type));
+    }
+    
+    @Override
+    public void appendPrimitive(long handle, StringBuilder out) {
+        int kind = kindOf(handle);
+        int start = startOf(handle);
+        int end = start + lengthOf(handle);
+        switch (kind) {
+            case KIND_STRING:
+                if (isClean(handle)) {
+                    out.append('"');
+                    appendRaw(start, end, out);
+                    out.append('"');
+                } else {
+                    out.append(JsonToObjectGenerator.ValueConverter.getPrimitiveValue(
+                        new JsonPrimitive(decodeString(start, end))));
+                }
+                break;
+            case KIND_NUMBER:
+                appendRaw(start, end, out);
+                break;
+            case KIND_TRUE:
+                out.append("true");
+                break;
+            case KIND_FALSE:
+                out.append("false");
+                break;
+            default:
+                out.append("null");
+        }
+    }
+    
+    private JsonPrimitive toPrimitive(int kind, int start, int end) {
+        switch (kind) {
+            case KIND_STRING:
+                return new JsonPrimitive(decodeString(start, end));
+            case KIND_NUMBER:
+                return JsonParser.parseString(new String(buffer, start, end - start, StandardCharsets.US_ASCII))
+                                 .getAsJsonPrimitive();
+            default:
+                return new JsonPrimitive(kind == KIND_TRUE);
+        }
+    }
+    
+    /**
+     * Integer literal that Integer/Long.parseInt would print back unchanged
+     * (no sign on zero, no fraction or exponent, at most maxDigits digits)
+     */
+    private boolean isPlainInteger(int start, int end, int maxDigits) {
+        int digitsStart = buffer[start] == '-' ? start + 1 : start;
+        int digits = end - digitsStart;
+        if (digits < 1 || digits > maxDigits) return false;
+        if (digits > 1 && buffer[digitsStart] == '0') return false;
+        if (digits == 1 && buffer[digitsStart] == '0' && digitsStart != start) return false;
+        for (int i = digitsStart; i < end; i++) {
+            if (buffer[i] < '0' || buffer[i] > '9') return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Copy UTF-8 bytes into the output: ASCII byte by byte, multi-byte runs decoded in one go
+     */
+    private void appendRaw(int start, int end, StringBuilder out) {
+        int i = start;
+        while (i < end) {
+            byte b = buffer[i];
+            if (b >= 0) {
+                out.append((char) b);
+                i++;
+            } else {
+                int runEnd = i + 1;
+                while (runEnd < end && buffer[runEnd] < 0) runEnd++;
+                out.append(new String(buffer, i, runEnd - i, StandardCharsets.UTF_8));
+                i = runEnd;
+            }
+        }
+    }
+    
+    private String decodeString(int start, int end) {
+        StringBuilder decoded = new StringBuilder(end - start);
+        int runStart = start;
+        int i = start;
+        while (i < end) {
+            if (buffer[i] != '\\') {
+                i++;
+                continue;
+            }
+            decoded.append(new String(buffer, runStart, i - runStart, StandardCharsets.UTF_8));
+            char escape = (char) buffer[i + 1];
+            switch (escape) {
+                case 'n': decoded.append('\n'); break;
+                case 'r': decoded.append('\r'); break;
+                case 't': decoded.append('\t'); break;
+                case 'b': decoded.append('\b'); break;
+                case 'f': decoded.append('\f'); break;
+                case 'u':
+                    decoded.append((char) Integer.parseInt(new String(buffer, i + 2, 4, StandardCharsets.US_ASCII), 16));
+                    i += 4;
+                    break;
+                default: decoded.append(escape); // \" \\ \/
+            }
+            i += 2;
+            runStart = i;
+        }
+        decoded.append(new String(buffer, runStart, end - runStart, StandardCharsets.UTF_8));
+        return decoded.toString();
+    }
+    
+    private static int startOf(long handle) {
+        return (int) (handle >>> 32);
+    }
+    
+    private static int lengthOf(long handle) {
+        return (int) ((handle >>> 4) & MAX_SCALAR_LENGTH);
+    }
+    
+    private static int kindOf(long handle) {
+        return (int) ((handle >>> 1) & 0x7);
+    }
+    
+    private static boolean isClean(long handle) {
+        return (handle & 1) != 0;
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * Cooperative cancellation for generation runs
+ * 
+ * Pass the same token to any number of runs through GenerationOptions; cancel() makes
+ * each of them stop at its next check and report CANCELLED. Interrupting the thread
+ * that runs a generation has the same effect.
+ */
+public final class CancellationToken {
+    
+    private volatile boolean cancelled;
+    
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,235 @@
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import com.google.gson.JsonArray;
+
+/**
+ * Per-class generation plan
+ * 
+ * Captures everything the generator needs to know about a model class - field names,
+ * declared types, setter names, collection element types and map key/value types - so reflection runs
+ * once per class instead of once per JSON object. Plans are immutable and cached
+ * for the lifetime of the JVM.
+ * 
+ * Classes with compile-time metadata (see ModelMetadataProcessor) are planned from
+ * that metadata without touching reflection.
+ */
+final class ClassPlan {
+    
+    private static final Map<Class<?>, ClassPlan> PLANS = new ConcurrentHashMap<>();
+    
+    private final Class<?> type;
+    private final String simpleName;
+    private final String variableBaseName;
+    private final FieldPlan[] fields;
+    private final Map<String, FieldPlan> fieldsByName;
+    private volatile FieldNameTable nameTable;
+    
+    private ClassPlan(Class<?> type, FieldPlan[] fields) {
+        this.type = type;
+        this.simpleName = type.getSimpleName();
+        this.variableBaseName = simpleName.toLowerCase();
+        this.fields = fields;
+        this.fieldsByName = new HashMap<>();
+        for (FieldPlan field : fields) {
+            fieldsByName.put(field.getName(), field);
+        }
+    }
+    
+    /**
+     * Get the (cached) plan for a class
+     */
+    public static ClassPlan of(Class<?> type) {
+        return PLANS.computeIfAbsent(type, ClassPlan::create);
+    }
+    
+    private static ClassPlan create(Class<?> type) {
+        ModelMetadata metadata = ModelMetadataRegistry.lookup(type);
+        return metadata != null ? fromMetadata(type, metadata) : reflect(type);
+    }
+    
+    private static ClassPlan fromMetadata(Class<?> type, ModelMetadata metadata) {
+        List<ModelMetadata.Field> metadataFields = metadata.getFields();
+        FieldPlan[] fields = new FieldPlan[metadataFields.size()];
+        for (int i = 0; i < fields.length; i++) {
+            ModelMetadata.Field field = metadataFields.get(i);
+            ModelMetadata.Kind kind = field.getKind();
+            fields[i] = new FieldPlan(field.getName(), field.getType(), field.getSetterName(),
+                                      kind == ModelMetadata.Kind.SCALAR,
+                                      kind == ModelMetadata.Kind.COLLECTION || kind == ModelMetadata.Kind.ARRAY,
+                                      field.getElementType(), field.getKeyType());
+        }
+        return new ClassPlan(type, fields);
+    }
+    
+    private static ClassPlan reflect(Class<?> type) {
+        Field[] declaredFields = type.getDeclaredFields();
+        FieldPlan[] fields = new FieldPlan[declaredFields.length];
+        for (int i = 0; i < declaredFields.length; i++) {
+            fields[i] = FieldPlan.reflect(declaredFields[i]);
+        }
+        return new ClassPlan(type, fields);
+    }
+    
+    public Class<?> getType() {
+        return type;
+    }
+    
+    public String getSimpleName() {
+        return simpleName;
+    }
+    
+    public String getVariableBaseName() {
+        return variableBaseName;
+    }
+    
+    public FieldPlan[] getFields() {
+        return fields;
+    }
+    
+    /**
+     * Look up a field by its JSON/Java name, or null if the class has no such field
+     */
+    public FieldPlan getField(String name) {
+        return fieldsByName.get(name);
+    }
+    
+    /**
+     * Byte-level field name lookup, built on first use by the byte tokenizer
+     */
+    FieldNameTable getNameTable() {
+        FieldNameTable table = nameTable;
+        if (table == null) {
+            table = FieldNameTable.build(this);
+            nameTable = table;
+        }
+        return table;
+    }
+    
+    // ========================================================================================
+    // FIELD PLAN
+    // ========================================================================================
+    
+    static final class FieldPlan {
+        
+        private final String name;
+        private final Class<?> type;
+        private final String setterName;
+        private final String declaredTypeName;
+        private final String collectionVariableBaseName;
+        private final String mapVariableBaseName;
+        private final boolean primitiveOrString;
+        private final boolean collectionType;
+        private final boolean mapType;
+        private final Class<?> declaredElementType;
+        private final Class<?> declaredKeyType;
+        private final Class<?> namedElementType;
+        private final Class<?> forcedElementType;
+        
+        /**
+         * @param declaredElementType Collection or array element type; for a map, its value type
+         * @param declaredKeyType Map key type, null for anything else
+         */
+        FieldPlan(String name, Class<?> type, String setterName, boolean primitiveOrString,
+                  boolean collectionType, Class<?> declaredElementType, Class<?> declaredKeyType) {
+            this.name = name;
+            this.type = type;
+            this.setterName = setterName;
+            this.declaredTypeName = type.getSimpleName();
+            this.collectionVariableBaseName = name + "Collection";
+            this.mapVariableBaseName = name + "Map";
+            this.primitiveOrString = primitiveOrString;
+            this.collectionType = collectionType;
+            this.mapType = JsonToObjectGenerator.TypeAnalyzer.isMapType(type);
+            this.declaredElementType = declaredElementType;
+            this.declaredKeyType = declaredKeyType;
+            this.namedElementType = collectionType && declaredElementType == null
+                ? JsonToObjectGenerator.TypeAnalyzer.inferTypeFromFieldName(name) : null;
+            this.forcedElementType = collectionType
+                ? JsonToObjectGenerator.CodeGenerator.handleSpecialCases(name, type, null) : null;
+        }
+        
+        private static FieldPlan reflect(Field field) {
+            boolean map = JsonToObjectGenerator.TypeAnalyzer.isMapType(field.getType());
+            Class<?> elementType = field.getType().isArray()
+                ? field.getType().getComponentType()
+                : map ? JsonToObjectGenerator.TypeAnalyzer.extractTypeArgument(field, 1)
+                : JsonToObjectGenerator.TypeAnalyzer.extractGenericType(field);
+            return new FieldPlan(field.getName(), field.getType(),
+                                 "set" + JsonToObjectGenerator.StringUtils.capitalize(field.getName()),
+                                 JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(field.getType()),
+                                 JsonToObjectGenerator.TypeAnalyzer.isCollectionType(field.getType()),
+                                 elementType,
+                                 map ? JsonToObjectGenerator.TypeAnalyzer.extractTypeArgument(field, 0) : null);
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public Class<?> getType() {
+            return type;
+        }
+        
+        public String getSetterName() {
+            return setterName;
+        }
+        
+        public String getDeclaredTypeName() {
+            return declaredTypeName;
+        }
+        
+        public String getCollectionVariableBaseName() {
+            return collectionVariableBaseName;
+        }
+        
+        public boolean isPrimitiveOrString() {
+            return primitiveOrString;
+        }
+        
+        public boolean isCollectionType() {
+            return collectionType;
+        }
+        
+        public boolean isMapType() {
+            return mapType;
+        }
+        
+        public String getMapVariableBaseName() {
+            return mapVariableBaseName;
+        }
+        
+        /**
+         * Declared key type of a map field, or null if unknown
+         */
+        public Class<?> getKeyType() {
+            return declaredKeyType;
+        }
+        
+        /**
+         * Declared value type of a map field, or null if unknown
+         */
+        public Class<?> getValueType() {
+            return mapType ? declaredElementType : null;
+        }
+        
+        /**
+         * Element type of a collection or array field. Same precedence as
+         * TypeAnalyzer.getElementType: declared type, field-name heuristic, JSON content,
+         * then the "employees" special case on top.
+         */
+        public Class<?> getElementType(JsonArray jsonArray) {
+            if (forcedElementType != null) {
+                return forcedElementType;
+            }
+            if (declaredElementType != null) {
+                return declaredElementType;
+            }
+            if (namedElementType != null) {
+                return namedElementType;
+            }
+            Class<?> typeFromJson = JsonToObjectGenerator.TypeAnalyzer.inferTypeFromJsonContent(jsonArray);
+            return typeFromJson != null ? typeFromJson : Object.class;
+        }
+    }
+}
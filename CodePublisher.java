@@ -0,0 +1,149 @@
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import com.google.gson.JsonObject;
+
+/**
+ * Flow.Publisher that streams generated code fragment by fragment
+ * 
+ * Each subscription runs its own generation on the work-stack engine. A fragment is
+ * emitted each time an object has been fully generated, and the engine is stepped
+ * only while the subscriber has outstanding demand: a slow consumer pauses
+ * generation instead of letting output pile up. Concatenating all fragments gives
+ * the same text as generateObjectCode(Class, String, GenerationOptions).
+ * 
+ * Signals for one subscription are delivered serially on the given executor
+ * (the common ForkJoinPool by default). Errors, including malformed JSON and
+ * maxDepth violations, end the stream with onError.
+ */
+public final class CodePublisher implements Flow.Publisher<CharSequence> {
+    
+    private final Class<?> clazz;
+    private final String json;
+    private final GenerationOptions options;
+    private final Executor executor;
+    
+    public CodePublisher(Class<?> clazz, String json, GenerationOptions options) {
+        this(clazz, json, options, ForkJoinPool.commonPool());
+    }
+    
+    public CodePublisher(Class<?> clazz, String json, GenerationOptions options, Executor executor) {
+        this.clazz = clazz;
+        this.json = json;
+        this.options = options;
+        this.executor = executor;
+    }
+    
+    @Override
+    public void subscribe(Flow.Subscriber<? super CharSequence> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        CodeSubscription subscription = new CodeSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+    
+    private final class CodeSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super CharSequence> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile long invalidRequest;
+        
+        // Only touched inside drain(), which never runs concurrently with itself
+        private IterativeCodeGenerator generator;
+        private boolean done;
+        
+        CodeSubscription(Flow.Subscriber<? super CharSequence> subscriber) {
+            this.subscriber = subscriber;
+        }
+        
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = n;
+            } else {
+                // Saturating add: Long.MAX_VALUE means unbounded
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            scheduleDrain();
+        }
+        
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+        
+        private void scheduleDrain() {
+            if (pendingDrains.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+        
+        private void drain() {
+            int missed = 1;
+            do {
+                emitWhileDemanded();
+                missed = pendingDrains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+        
+        private void emitWhileDemanded() {
+            if (done || cancelled) {
+                generator = null;
+                return;
+            }
+            if (invalidRequest != 0) {
+                fail(new IllegalArgumentException("Flow.Subscription.request requires n > 0 but got " + invalidRequest));
+                return;
+            }
+            
+            try {
+                if (generator == null && demand.get() > 0) {
+                    JsonObject jsonObject = JsonToObjectGenerator.parseJson(json);
+                    generator = new IterativeCodeGenerator(options);
+                    generator.begin(clazz, jsonObject);
+                }
+                while (!cancelled && demand.get() > 0) {
+                    CharSequence fragment = nextFragment();
+                    if (fragment == null) {
+                        done = true;
+                        generator = null;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    subscriber.onNext(fragment);
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+        
+        /**
+         * Advance the engine to the next non-empty fragment, or null when finished
+         */
+        private CharSequence nextFragment() {
+            while (true) {
+                boolean more = generator.advance();
+                CharSequence fragment = generator.takeCode(!more);
+                if (fragment.length() > 0) {
+                    return fragment;
+                }
+                if (!more) {
+                    return null;
+                }
+            }
+        }
+        
+        private void fail(Throwable error) {
+            done = true;
+            generator = null;
+            subscriber.onError(error);
+        }
+    }
+}
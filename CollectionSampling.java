@@ -0,0 +1,104 @@
+import java.util.*;
+
+/**
+ * Caps every collection and array field at a fixed number of elements
+ * 
+ * - first(n):            the first n elements
+ * - stride(n):           n elements evenly spaced over the whole array
+ * - reservoir(n, seed):  a uniform random sample of n elements, reproducible for a given seed
+ * 
+ * Selected elements keep their document order. Elements that are not selected are
+ * skipped without generating anything for them (the streaming engine does not even
+ * decode them), and each sampled collection is preceded by a comment giving its
+ * original size. Arrays that already fit are left alone.
+ * 
+ * Streamed inputs (InputStream, Path, XML) cannot size an array before reading it: they
+ * take only first(n), with the comment after the collection, and reject the other modes.
+ */
+public final class CollectionSampling {
+    
+    public enum Mode {
+        FIRST,
+        STRIDE,
+        RESERVOIR
+    }
+    
+    private final Mode mode;
+    private final int maxElements;
+    private final long seed;
+    
+    private CollectionSampling(Mode mode, int maxElements, long seed) {
+        if (maxElements < 0) {
+            throw new IllegalArgumentException("maxElements must not be negative: " + maxElements);
+        }
+        this.mode = mode;
+        this.maxElements = maxElements;
+        this.seed = seed;
+    }
+    
+    public static CollectionSampling first(int maxElements) {
+        return new CollectionSampling(Mode.FIRST, maxElements, 0);
+    }
+    
+    public static CollectionSampling stride(int maxElements) {
+        return new CollectionSampling(Mode.STRIDE, maxElements, 0);
+    }
+    
+    public static CollectionSampling reservoir(int maxElements, long seed) {
+        return new CollectionSampling(Mode.RESERVOIR, maxElements, seed);
+    }
+    
+    public Mode getMode() {
+        return mode;
+    }
+    
+    public int getMaxElements() {
+        return maxElements;
+    }
+    
+    /**
+     * Ascending indices of the elements to keep from an array of the given size, or null
+     * to keep all of them
+     */
+    int[] select(int size) {
+        if (size <= maxElements) {
+            return null;
+        }
+        int[] selected = new int[maxElements];
+        switch (mode) {
+            case FIRST:
+                for (int i = 0; i < maxElements; i++) {
+                    selected[i] = i;
+                }
+                break;
+            case STRIDE:
+                for (int i = 0; i < maxElements; i++) {
+                    selected[i] = (int) ((long) i * size / maxElements);
+                }
+                break;
+            default:
+                // Floyd's algorithm: maxElements distinct indices in O(maxElements), whatever the size
+                Random random = new Random(seed);
+                Set<Integer> chosen = new HashSet<>(maxElements * 2);
+                for (int j = size - maxElements; j < size; j++) {
+                    int candidate = random.nextInt(j + 1);
+                    chosen.add(chosen.contains(candidate) ? j : candidate);
+                }
+                int next = 0;
+                for (int index : chosen) {
+                    selected[next++] = index;
+                }
+                Arrays.sort(selected);
+                break;
+        }
+        return selected;
+    }
+    
+    /**
+     * Summary comment (without the leading //) for a sampled collection field
+     */
+    String describe(String fieldName, int kept, int size) {
+        String how = mode == Mode.RESERVOIR ? "reservoir, seed " + seed : mode.name().toLowerCase();
+        return fieldName + ": sampled " + kept + " of " + size + " elements (" + how + ")";
+    }
+}
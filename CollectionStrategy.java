@@ -0,0 +1,14 @@
+/**
+ * How generated code constructs collection fields
+ * 
+ * - DEFAULT: no-arg constructor of the resolved implementation, e.g. new ArrayList<>()
+ * - PRESIZED: capacity taken from the JSON array size, so adds never reallocate
+ *   (ArrayList, ArrayDeque, HashSet, LinkedHashSet)
+ * - IMMUTABLE: List.of / Set.of for fields declared as List, Collection or Set;
+ *   other declared types fall back to DEFAULT
+ */
+public enum CollectionStrategy {
+    DEFAULT,
+    PRESIZED,
+    IMMUTABLE
+}
@@ -1,5 +1,6 @@
 import java.util.List;
 
+@GeneratorModel
 public class Company {
     private String name;
     private List<Employee> employees;
@@ -0,0 +1,128 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Opens JSON input that may be compressed, decoding it as it is read
+ * 
+ * The format is detected from the leading magic bytes, not the file name:
+ * - gzip (1f 8b):          one document, inflated on the fly (concatenated members included)
+ * - zip (50 4b 03 04):     one document per file entry, in archive order; entries that are
+ *                          themselves gzip-compressed are inflated as well
+ * - anything else:         one plain document
+ * 
+ * Nothing is decompressed to disk or buffered in full; the parser reads straight from
+ * the inflater.
+ */
+final class CompressedJsonInput {
+    
+    enum Format {
+        PLAIN,
+        GZIP,
+        ZIP
+    }
+    
+    /**
+     * Receives each document of an input in turn. The stream is only valid during the call.
+     */
+    interface DocumentHandler {
+        void accept(String name, InputStream json) throws IOException;
+    }
+    
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    private CompressedJsonInput() {
+    }
+    
+    /**
+     * Peek at the magic bytes of a stream that supports mark/reset
+     */
+    static Format detect(InputStream in) throws IOException {
+        in.mark(4);
+        byte[] magic = new byte[4];
+        int read = 0;
+        int n;
+        while (read < magic.length && (n = in.read(magic, read, magic.length - read)) > 0) {
+            read += n;
+        }
+        in.reset();
+        if (read >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return Format.GZIP;
+        }
+        if (read == 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4) {
+            return Format.ZIP;
+        }
+        return Format.PLAIN;
+    }
+    
+    static Format detect(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 4)) {
+            return detect(in);
+        }
+    }
+    
+    /**
+     * Hand every JSON document in the file to the handler: the file itself, its gzip
+     * content, or each entry of a zip bundle (directories skipped)
+     */
+    static void forEachDocument(Path file, DocumentHandler handler) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            Format format = detect(in);
+            if (format != Format.ZIP) {
+                handler.accept(file.getFileName().toString(), format == Format.GZIP ? inflate(in) : in);
+                return;
+            }
+            
+            ZipInputStream zip = new ZipInputStream(in);
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) continue;
+                InputStream entryStream = new BufferedInputStream(new FilterInputStream(zip) {
+                    @Override
+                    public void close() {
+                        // The handler closing its stream must not close the archive
+                    }
+                }, BUFFER_SIZE);
+                handler.accept(entry.getName(), detect(entryStream) == Format.GZIP ? inflate(entryStream) : entryStream);
+                zip.closeEntry();
+            }
+        }
+    }
+    
+    /**
+     * Read a file holding exactly one document (plain or gzip, or a zip with a single entry)
+     * fully into a string
+     */
+    static String readDocument(Path file) throws IOException {
+        String[] document = new String[1];
+        int[] count = new int[1];
+        forEachDocument(file, (name, json) -> {
+            if (count[0]++ == 0) {
+                document[0] = new String(readAll(json), StandardCharsets.UTF_8);
+            }
+        });
+        if (count[0] != 1) {
+            throw new IOException(file + " holds " + count[0] + " documents; "
+                + "use generateObjectCode(Class, Path, Writer, GenerationOptions) to generate each of them");
+        }
+        return document[0];
+    }
+    
+    private static InputStream inflate(InputStream in) throws IOException {
+        return new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+    }
+    
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,5 +1,6 @@
 import java.util.*;
 
+@GeneratorModel
 public class Department {
     private String name;
     private List<Employee> employees;           // List test
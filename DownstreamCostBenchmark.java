@@ -0,0 +1,274 @@
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import javax.tools.*;
+
+/**
+ * Measures what generated code costs its consumer: javac, class files and execution
+ * 
+ * For every collection strategy, plus table emission (see GenerationOptions.tableEmission),
+ * and every synthetic size, a Company with N employees is generated into a Fixtures class
+ * (FixturesClassGenerator), compiled in memory with javax.tools and loaded in a fresh
+ * class loader. Reported per run:
+ * - javac wall time (after one warm-up compile)
+ * - total class file bytes, largest method bytecode and largest constant pool
+ * - cold time: first accessor call, including class loading and initialization
+ * - warm time: average rebuild through the copy accessor once the code is hot
+ * 
+ * Sizes that hit the 64 KB method limit are reported as such - that is a real
+ * downstream cost too. Table emission must not hit it: a TABLE run at 100,000 employees
+ * is always made, and the benchmark exits with status 1 if it does not compile.
+ * 
+ * Usage: java DownstreamCostBenchmark [size...]
+ */
+public class DownstreamCostBenchmark {
+    
+    private static final String FIXTURES_CLASS = "DownstreamFixtures";
+    private static final int WARM_RUNS = 200;
+    private static final int TABLE_CHECK_SIZE = 100_000;
+    
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length > 0
+            ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+            : new int[] { 10, 100, 1_000, 3_000 };
+        
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            System.err.println("No system Java compiler available; run on a JDK");
+            System.exit(2);
+        }
+        
+        compile(compiler, fixturesSource(GenerationOptions.defaults(), 1));
+        
+        System.out.println("=== Downstream Cost Benchmark ===\n");
+        System.out.printf("%-10s %7s %10s %10s %12s %11s %8s %10s %10s%n", "Strategy", "Objects", "Source",
+                          "javac ms", "Class bytes", "Max method", "CP max", "Cold ms", "Warm us");
+        System.out.println("-".repeat(96));
+        
+        for (CollectionStrategy strategy : CollectionStrategy.values()) {
+            for (int size : sizes) {
+                run(compiler, strategy.name(), GenerationOptions.defaults().collectionStrategy(strategy), size);
+            }
+        }
+        for (int size : sizes) {
+            run(compiler, "TABLE", GenerationOptions.defaults().tableEmission(2), size);
+        }
+        
+        if (!run(compiler, "TABLE", GenerationOptions.defaults().tableEmission(2), TABLE_CHECK_SIZE)) {
+            System.out.println("\nFAILED: table emission does not compile at " + TABLE_CHECK_SIZE + " employees");
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * @return whether the generated code compiled
+     */
+    private static boolean run(JavaCompiler compiler, String label, GenerationOptions options,
+                            int employees) throws Exception {
+        String source = fixturesSource(options, employees);
+        
+        long start = System.nanoTime();
+        CompileResult result = compile(compiler, source);
+        double compileMillis = (System.nanoTime() - start) / 1e6;
+        
+        if (result.classes == null) {
+            System.out.printf("%-10s %7d %10d %10.1f  compile failed: %s%n", label, employees + 1,
+                              source.length(), compileMillis, result.error);
+            return false;
+        }
+        
+        int classBytes = 0;
+        int maxMethod = 0;
+        int maxConstantPool = 0;
+        for (byte[] classFile : result.classes.values()) {
+            ClassFileStats stats = ClassFileStats.parse(classFile);
+            classBytes += classFile.length;
+            maxMethod = Math.max(maxMethod, stats.maxCodeLength);
+            maxConstantPool = Math.max(maxConstantPool, stats.constantPoolCount);
+        }
+        
+        ClassLoader loader = new MemoryClassLoader(result.classes, DownstreamCostBenchmark.class.getClassLoader());
+        Class<?> fixtures = Class.forName(FIXTURES_CLASS, false, loader);
+        Method accessor = fixtures.getMethod("company");
+        Method copy = fixtures.getMethod("companyCopy");
+        
+        start = System.nanoTime();
+        accessor.invoke(null);
+        double coldMillis = (System.nanoTime() - start) / 1e6;
+        
+        for (int i = 0; i < WARM_RUNS; i++) {
+            copy.invoke(null);
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < WARM_RUNS; i++) {
+            copy.invoke(null);
+        }
+        double warmMicros = (System.nanoTime() - start) / 1e3 / WARM_RUNS;
+        
+        System.out.printf("%-10s %7d %10d %10.1f %12d %11d %8d %10.2f %10.2f%n", label, employees + 1,
+                          source.length(), compileMillis, classBytes, maxMethod, maxConstantPool,
+                          coldMillis, warmMicros);
+        return true;
+    }
+    
+    private static String fixturesSource(GenerationOptions options, int employees) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"name\":\"Downstream Corp\",\"employees\":[");
+        for (int i = 0; i < employees; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"name\":\"Employee ").append(i).append("\",\"age\":").append(20 + i % 45).append('}');
+        }
+        json.append("]}");
+        
+        return new FixturesClassGenerator(FIXTURES_CLASS)
+            .withOptions(options)
+            .withCopies(true)
+            .add("company", Company.class, json.toString())
+            .generate();
+    }
+    
+    // ========================================================================================
+    // IN-MEMORY COMPILATION
+    // ========================================================================================
+    
+    private static final class CompileResult {
+        private final Map<String, byte[]> classes;
+        private final String error;
+        
+        CompileResult(Map<String, byte[]> classes, String error) {
+            this.classes = classes;
+            this.error = error;
+        }
+    }
+    
+    private static CompileResult compile(JavaCompiler compiler, String source) throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        try (MemoryFileManager fileManager = new MemoryFileManager(standard)) {
+            JavaFileObject unit = new SimpleJavaFileObject(
+                URI.create("string:///" + FIXTURES_CLASS + ".java"), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+            List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-nowarn");
+            boolean success = compiler.getTask(null, fileManager, diagnostics, options, null,
+                                               Collections.singletonList(unit)).call();
+            if (!success) {
+                String error = diagnostics.getDiagnostics().isEmpty() ? "unknown error"
+                    : diagnostics.getDiagnostics().get(0).getMessage(Locale.ROOT);
+                return new CompileResult(null, error);
+            }
+            return new CompileResult(fileManager.classes, null);
+        }
+    }
+    
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, byte[]> classes = new HashMap<>();
+        
+        MemoryFileManager(StandardJavaFileManager standard) {
+            super(standard);
+        }
+        
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close() {
+                            classes.put(className, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+    
+    private static final class MemoryClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+        
+        MemoryClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+            super(parent);
+            this.classes = classes;
+        }
+        
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+    
+    // ========================================================================================
+    // CLASS FILE STATISTICS
+    // ========================================================================================
+    
+    /**
+     * Just enough of the class file format to read the constant pool size and each
+     * method's Code attribute length
+     */
+    static final class ClassFileStats {
+        private int constantPoolCount;
+        private int maxCodeLength;
+        
+        static ClassFileStats parse(byte[] classFile) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+            ClassFileStats stats = new ClassFileStats();
+            if (in.readInt() != 0xCAFEBABE) {
+                throw new IOException("Not a class file");
+            }
+            in.readUnsignedShort();
+            in.readUnsignedShort();
+            
+            stats.constantPoolCount = in.readUnsignedShort();
+            String[] utf8 = new String[stats.constantPoolCount];
+            for (int i = 1; i < stats.constantPoolCount; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case 1: utf8[i] = in.readUTF(); break;
+                    case 3: case 4: in.skipBytes(4); break;
+                    case 5: case 6: in.skipBytes(8); i++; break;
+                    case 7: case 8: case 16: case 19: case 20: in.skipBytes(2); break;
+                    case 9: case 10: case 11: case 12: case 17: case 18: in.skipBytes(4); break;
+                    case 15: in.skipBytes(3); break;
+                    default: throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+            
+            in.skipBytes(6);
+            in.skipBytes(2 * in.readUnsignedShort());
+            skipMembers(in, utf8, null);
+            skipMembers(in, utf8, stats);
+            return stats;
+        }
+        
+        private static void skipMembers(DataInputStream in, String[] utf8, ClassFileStats stats) throws IOException {
+            int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                in.skipBytes(6);
+                int attributes = in.readUnsignedShort();
+                for (int j = 0; j < attributes; j++) {
+                    String name = utf8[in.readUnsignedShort()];
+                    int length = in.readInt();
+                    if (stats != null && "Code".equals(name)) {
+                        in.skipBytes(4);
+                        int codeLength = in.readInt();
+                        stats.maxCodeLength = Math.max(stats.maxCodeLength, codeLength);
+                        in.skipBytes(length - 8);
+                    } else {
+                        in.skipBytes(length);
+                    }
+                }
+            }
+        }
+    }
+}
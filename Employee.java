@@ -1,3 +1,4 @@
+@GeneratorModel
 public class Employee {
     private String name;
     private int age;
@@ -0,0 +1,91 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Perfect-hash lookup from UTF-8 key bytes to field index
+ * 
+ * Built once per ClassPlan. Field names are pre-encoded to UTF-8 and a hash seed is
+ * searched so every name lands in its own slot, so a lookup is one hash over the key
+ * bytes plus at most one byte comparison, with no String created for the key.
+ */
+final class FieldNameTable {
+    
+    private static final int MAX_SEED_ATTEMPTS = 4096;
+    
+    private final byte[][] slotNames;
+    private final int[] slotIndexes;
+    private final int mask;
+    private final int seed;
+    
+    private FieldNameTable(byte[][] slotNames, int[] slotIndexes, int seed) {
+        this.slotNames = slotNames;
+        this.slotIndexes = slotIndexes;
+        this.mask = slotNames.length - 1;
+        this.seed = seed;
+    }
+    
+    static FieldNameTable build(ClassPlan plan) {
+        ClassPlan.FieldPlan[] fields = plan.getFields();
+        byte[][] names = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = fields[i].getName().getBytes(StandardCharsets.UTF_8);
+        }
+        
+        // Grow the table until a collision-free seed turns up; small tables converge quickly
+        for (int size = Integer.highestOneBit(Math.max(1, fields.length) * 2 - 1) << 1; ; size <<= 1) {
+            for (int seed = 1; seed <= MAX_SEED_ATTEMPTS; seed++) {
+                FieldNameTable table = tryBuild(names, size, seed);
+                if (table != null) {
+                    return table;
+                }
+            }
+        }
+    }
+    
+    private static FieldNameTable tryBuild(byte[][] names, int size, int seed) {
+        byte[][] slotNames = new byte[size][];
+        int[] slotIndexes = new int[size];
+        Arrays.fill(slotIndexes, -1);
+        for (int i = 0; i < names.length; i++) {
+            int slot = hash(names[i], 0, names[i].length, seed) & (size - 1);
+            if (slotNames[slot] != null) {
+                if (Arrays.equals(slotNames[slot], names[i])) continue; // duplicate name, keep the first
+                return null;
+            }
+            slotNames[slot] = names[i];
+            slotIndexes[slot] = i;
+        }
+        return new FieldNameTable(slotNames, slotIndexes, seed);
+    }
+    
+    /**
+     * Field index for the key bytes buffer[start, end), or -1
+     */
+    int find(byte[] buffer, int start, int end) {
+        int slot = hash(buffer, start, end, seed) & mask;
+        byte[] name = slotNames[slot];
+        if (name == null || name.length != end - start) {
+            return -1;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (name[i] != buffer[start + i]) return -1;
+        }
+        return slotIndexes[slot];
+    }
+    
+    /**
+     * Field index for an already decoded key, or -1
+     */
+    int find(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return find(bytes, 0, bytes.length);
+    }
+    
+    private static int hash(byte[] buffer, int start, int end, int seed) {
+        int h = seed * 0x9E3779B9;
+        for (int i = start; i < end; i++) {
+            h = (h ^ buffer[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,213 @@
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import javax.lang.model.SourceVersion;
+
+/**
+ * Emits a Fixtures class instead of a bare statement sequence
+ * 
+ * Every document becomes a static accessor backed by the initialization-on-demand
+ * holder idiom: its graph is built the first time the accessor is called and shared
+ * afterwards, with the JVM's class initialization lock guaranteeing a single build.
+ * Suites that touch only a few fixtures pay only for those. Tests that mutate a graph
+ * can use the optional copy accessor, which runs the same build method again and so
+ * returns a fully independent graph.
+ * 
+ * Usage:
+ *   String source = new FixturesClassGenerator("Fixtures")
+ *       .withCopies(true)
+ *       .add("company", Company.class, json)
+ *       .generate();
+ * 
+ * From the command line (accessor names are derived from the file names):
+ *   java FixturesClassGenerator Fixtures Company:test_array.json TreeNode:test_composite.json
+ */
+public final class FixturesClassGenerator {
+    
+    private static final String INDENT = "    ";
+    
+    private final String className;
+    private final Map<String, Fixture> fixtures = new LinkedHashMap<>();
+    private GenerationOptions options = GenerationOptions.defaults();
+    private boolean copies;
+    
+    public FixturesClassGenerator(String className) {
+        this.className = requireIdentifier(className);
+    }
+    
+    /**
+     * Engine options used for every fixture
+     */
+    public FixturesClassGenerator withOptions(GenerationOptions options) {
+        this.options = options;
+        return this;
+    }
+    
+    /**
+     * Also emit a {@code <name>Copy()} accessor per fixture returning a fresh graph
+     */
+    public FixturesClassGenerator withCopies(boolean copies) {
+        this.copies = copies;
+        return this;
+    }
+    
+    /**
+     * Add a document under the given accessor name
+     * 
+     * @throws IllegalArgumentException if the name is not a Java identifier or already used
+     */
+    public FixturesClassGenerator add(String accessorName, Class<?> type, String json) {
+        requireIdentifier(accessorName);
+        if (fixtures.containsKey(accessorName)) {
+            throw new IllegalArgumentException("Duplicate fixture accessor: " + accessorName);
+        }
+        fixtures.put(accessorName, new Fixture(type, json));
+        return this;
+    }
+    
+    /**
+     * Generate the Fixtures class source
+     */
+    public String generate() {
+        StringBuilder source = new StringBuilder();
+        appendImports(source);
+        
+        source.append("/**\n");
+        source.append(" * Generated by FixturesClassGenerator - do not edit\n");
+        source.append(" * \n");
+        source.append(" * Each fixture is built on first access and shared afterwards.\n");
+        source.append(" */\n");
+        source.append("public final class ").append(className).append(" {\n\n");
+        source.append(INDENT).append("private ").append(className).append("() {\n");
+        source.append(INDENT).append("}\n");
+        
+        for (Map.Entry<String, Fixture> entry : fixtures.entrySet()) {
+            appendFixture(source, entry.getKey(), entry.getValue());
+        }
+        
+        source.append("}\n");
+        return source.toString();
+    }
+    
+    private void appendImports(StringBuilder source) {
+        Set<String> imports = new TreeSet<>(Arrays.asList("java.util.*", "java.util.concurrent.*"));
+        for (Fixture fixture : fixtures.values()) {
+            if (!fixture.type.getPackageName().isEmpty()) {
+                imports.add(fixture.type.getCanonicalName());
+            }
+        }
+        for (String imported : imports) {
+            source.append("import ").append(imported).append(";\n");
+        }
+        source.append("\n");
+    }
+    
+    private void appendFixture(StringBuilder source, String accessorName, Fixture fixture) {
+        String typeName = fixture.type.getSimpleName();
+        String holderName = JsonToObjectGenerator.StringUtils.capitalize(accessorName) + "Holder";
+        
+        IterativeCodeGenerator generator = new IterativeCodeGenerator(options);
+        String rootVariable = generator.appendObject(fixture.type, JsonToObjectGenerator.parseJson(fixture.json));
+        
+        source.append("\n");
+        source.append(INDENT).append("public static ").append(typeName).append(" ").append(accessorName).append("() {\n");
+        source.append(INDENT).append(INDENT).append("return ").append(holderName).append(".INSTANCE;\n");
+        source.append(INDENT).append("}\n");
+        
+        if (copies) {
+            source.append("\n");
+            source.append(INDENT).append("/**\n");
+            source.append(INDENT).append(" * Independent graph, safe to mutate\n");
+            source.append(INDENT).append(" */\n");
+            source.append(INDENT).append("public static ").append(typeName).append(" ").append(accessorName)
+                .append("Copy() {\n");
+            source.append(INDENT).append(INDENT).append("return ").append(holderName).append(".build();\n");
+            source.append(INDENT).append("}\n");
+        }
+        
+        source.append("\n");
+        source.append(INDENT).append("private static final class ").append(holderName).append(" {\n");
+        source.append(INDENT).append(INDENT).append("static final ").append(typeName).append(" INSTANCE = build();\n\n");
+        source.append(INDENT).append(INDENT).append("static ").append(typeName).append(" build() {\n");
+        for (String line : generator.getCode().trim().split("\n", -1)) {
+            if (!line.isEmpty()) {
+                source.append(INDENT).append(INDENT).append(INDENT).append(line);
+            }
+            source.append("\n");
+        }
+        source.append(INDENT).append(INDENT).append(INDENT).append("return ").append(rootVariable).append(";\n");
+        source.append(INDENT).append(INDENT).append("}\n");
+        source.append(INDENT).append("}\n");
+    }
+    
+    private static String requireIdentifier(String name) {
+        if (name == null || !SourceVersion.isIdentifier(name) || SourceVersion.isKeyword(name)) {
+            throw new IllegalArgumentException("Not a valid Java identifier: " + name);
+        }
+        return name;
+    }
+    
+    /**
+     * Accessor name from a file name: test_array.json -> testArray
+     */
+    static String accessorNameFor(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        StringBuilder accessor = new StringBuilder();
+        boolean upper = false;
+        for (char c : name.toCharArray()) {
+            if (!Character.isJavaIdentifierPart(c) || c == '_' || c == '$') {
+                upper = accessor.length() > 0;
+            } else {
+                accessor.append(upper ? Character.toUpperCase(c) : accessor.length() == 0 ? Character.toLowerCase(c) : c);
+                upper = false;
+            }
+        }
+        if (accessor.length() == 0 || !Character.isJavaIdentifierStart(accessor.charAt(0))) {
+            accessor.insert(0, "fixture");
+        }
+        return SourceVersion.isKeyword(accessor) ? accessor + "Fixture" : accessor.toString();
+    }
+    
+    private static final class Fixture {
+        private final Class<?> type;
+        private final String json;
+        
+        Fixture(Class<?> type, String json) {
+            this.type = type;
+            this.json = json;
+        }
+    }
+    
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java FixturesClassGenerator <ClassName> <Type>:<file.json>...");
+            System.exit(2);
+        }
+        
+        try {
+            FixturesClassGenerator generator = new FixturesClassGenerator(args[0]).withCopies(true);
+            for (int i = 1; i < args.length; i++) {
+                int colon = args[i].indexOf(':');
+                if (colon < 0) {
+                    throw new IllegalArgumentException("Expected <Type>:<file.json> but got " + args[i]);
+                }
+                Class<?> type = Class.forName(args[i].substring(0, colon));
+                Path file = Paths.get(args[i].substring(colon + 1));
+                generator.add(accessorNameFor(file), type, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            }
+            
+            Path output = Paths.get(args[0] + ".java");
+            Files.write(output, generator.generate().getBytes(StandardCharsets.UTF_8));
+            System.out.println("Fixtures class written to " + output);
+        } catch (Exception e) {
+            System.err.println("Error generating fixtures: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
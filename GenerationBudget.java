@@ -0,0 +1,97 @@
+import java.util.concurrent.CancellationException;
+
+/**
+ * Per-run accounting against GenerationLimits and a CancellationToken
+ * 
+ * Engines call enterObject/enterNode when they start an object or container and
+ * checkpoint after each unit of work. The common path is a couple of counter
+ * compares; the clock, the token and the interrupt flag are only read every
+ * CLOCK_INTERVAL checkpoints.
+ */
+final class GenerationBudget {
+    
+    /** Checkpoints between clock/cancellation polls (power of two) */
+    static final int CLOCK_INTERVAL = 1024;
+    
+    private final int maxDepth;
+    private final long maxNodes;
+    private final long maxOutputChars;
+    private final long startNanos;
+    private final long deadlineNanos;
+    private final CancellationToken token;
+    private long nodes;
+    private int checkpoints;
+    
+    private GenerationBudget(GenerationOptions options) {
+        GenerationLimits limits = options.getLimits();
+        this.maxDepth = Math.min(options.getMaxDepth(), limits.getMaxDepth());
+        this.maxNodes = limits.getMaxNodes();
+        this.maxOutputChars = limits.getMaxOutputChars();
+        this.startNanos = System.nanoTime();
+        this.deadlineNanos = limits.getTimeoutNanos() == Long.MAX_VALUE
+            ? Long.MAX_VALUE : startNanos + limits.getTimeoutNanos();
+        this.token = options.getCancellationToken();
+    }
+    
+    /**
+     * Start accounting for a run now
+     */
+    static GenerationBudget start(GenerationOptions options) {
+        return new GenerationBudget(options);
+    }
+    
+    /**
+     * An object is about to be generated at the given depth (root = 1)
+     */
+    void enterObject(int depth, ClassPlan plan, String variableName) {
+        if (depth > maxDepth) {
+            throw new GenerationLimitException(GenerationLimits.Limit.DEPTH, "Maximum depth " + maxDepth
+                + " exceeded at " + plan.getSimpleName() + " " + variableName);
+        }
+        enterNode();
+    }
+    
+    /**
+     * An object, collection or map is about to be generated
+     */
+    void enterNode() {
+        if (++nodes > maxNodes) {
+            throw new GenerationLimitException(GenerationLimits.Limit.NODES,
+                "Maximum node count " + maxNodes + " exceeded");
+        }
+    }
+    
+    /**
+     * A unit of work is done and the output has the given length
+     */
+    void checkpoint(long outputChars) {
+        if (outputChars > maxOutputChars) {
+            throw new GenerationLimitException(GenerationLimits.Limit.OUTPUT,
+                "Maximum output of " + maxOutputChars + " chars exceeded");
+        }
+        if ((++checkpoints & (CLOCK_INTERVAL - 1)) == 0) {
+            poll();
+        }
+    }
+    
+    private void poll() {
+        if (token != null && token.isCancelled()) {
+            throw new CancellationException("Generation cancelled");
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Generation interrupted");
+        }
+        if (deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos > 0) {
+            throw new GenerationLimitException(GenerationLimits.Limit.TIME,
+                "Time limit of " + (deadlineNanos - startNanos) / 1_000_000 + " ms exceeded");
+        }
+    }
+    
+    long getNodes() {
+        return nodes;
+    }
+    
+    long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+}
@@ -0,0 +1,211 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Append-only journal of completed bulk generation units (see BulkGenerationJob)
+ * 
+ * One tab-separated line per unit: key, output file name, output length, CRC32 of the
+ * output. Entries are group-committed: record() only queues the line, and a committer
+ * thread writes everything queued since the last commit in one write followed by a
+ * single force(), at most once per commit interval. A crash can lose the entries of the
+ * last interval - those units are simply generated again - but never corrupt earlier
+ * ones. A torn last line is ignored when the journal is read back.
+ */
+final class GenerationJournal implements Closeable {
+    
+    private static final String HEADER = "# generation journal v1\n";
+    
+    private final FileChannel channel;
+    private final Map<String, Entry> entries;
+    private final BlockingQueue<String> pending = new LinkedBlockingQueue<>();
+    private final long commitIntervalMillis;
+    private final Thread committer;
+    private volatile boolean closing;
+    private volatile IOException failure;
+    private long commits;
+    private long committedEntries;
+    
+    private GenerationJournal(FileChannel channel, Map<String, Entry> entries, long commitIntervalMillis) {
+        this.channel = channel;
+        this.entries = entries;
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.committer = new Thread(this::commitLoop, "generation-journal");
+        committer.setDaemon(true);
+        committer.start();
+    }
+    
+    /**
+     * Open (or create) a journal, reading back the entries already in it
+     */
+    static GenerationJournal open(Path path, long commitIntervalMillis) throws IOException {
+        if (commitIntervalMillis < 1) {
+            throw new IllegalArgumentException("commitIntervalMillis must be at least 1: " + commitIntervalMillis);
+        }
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        if (Files.exists(path)) {
+            String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+            int lineStart = 0;
+            int lineEnd;
+            // Only newline-terminated lines count: a torn write at the end is dropped
+            while ((lineEnd = content.indexOf('\n', lineStart)) >= 0) {
+                Entry entry = Entry.parse(content.substring(lineStart, lineEnd));
+                if (entry != null) {
+                    entries.put(entry.key, entry);
+                }
+                lineStart = lineEnd + 1;
+            }
+            if (lineStart < content.length()) {
+                try (FileChannel truncate = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    truncate.truncate(lineStart);
+                }
+            }
+        }
+        
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                               StandardOpenOption.APPEND);
+        if (channel.size() == 0) {
+            channel.write(ByteBuffer.wrap(HEADER.getBytes(StandardCharsets.UTF_8)));
+        }
+        return new GenerationJournal(channel, entries, commitIntervalMillis);
+    }
+    
+    /**
+     * Entries read back when the journal was opened, by key
+     */
+    Map<String, Entry> getEntries() {
+        return Collections.unmodifiableMap(entries);
+    }
+    
+    /**
+     * Queue a completed unit for the next group commit
+     */
+    void record(String key, String output, long length, long crc) throws IOException {
+        IOException error = failure;
+        if (error != null) {
+            throw error;
+        }
+        pending.add(new Entry(key, output, length, crc).toLine());
+    }
+    
+    long getCommits() {
+        return commits;
+    }
+    
+    long getCommittedEntries() {
+        return committedEntries;
+    }
+    
+    private void commitLoop() {
+        List<String> batch = new ArrayList<>();
+        try {
+            while (true) {
+                String first = pending.poll(commitIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closing && pending.isEmpty()) break;
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch);
+                commit(batch);
+                batch.clear();
+                if (!closing) {
+                    // Let the next batch build up rather than paying a force() per entry
+                    Thread.sleep(commitIntervalMillis);
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void commit(List<String> batch) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (String line : batch) {
+            lines.append(line);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        commits++;
+        committedEntries += batch.size();
+    }
+    
+    /**
+     * Commit everything still queued and close the file
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    // ========================================================================================
+    // ENTRY
+    // ========================================================================================
+    
+    static final class Entry {
+        private final String key;
+        private final String output;
+        private final long length;
+        private final long crc;
+        
+        Entry(String key, String output, long length, long crc) {
+            this.key = key;
+            this.output = output;
+            this.length = length;
+            this.crc = crc;
+        }
+        
+        static Entry parse(String line) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                return null;
+            }
+            String[] parts = line.split("\t");
+            if (parts.length != 4) {
+                return null;
+            }
+            try {
+                return new Entry(parts[0], parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3], 16));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        
+        String toLine() {
+            return key + "\t" + output + "\t" + length + "\t" + Long.toHexString(crc) + "\n";
+        }
+        
+        String getKey() {
+            return key;
+        }
+        
+        String getOutput() {
+            return output;
+        }
+        
+        long getLength() {
+            return length;
+        }
+        
+        long getCrc() {
+            return crc;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * Thrown inside an engine when a GenerationLimits quota is exceeded
+ * 
+ * Extends IllegalStateException, which the depth check threw before limits existed.
+ */
+public class GenerationLimitException extends IllegalStateException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final GenerationLimits.Limit limit;
+    
+    public GenerationLimitException(GenerationLimits.Limit limit, String message) {
+        super(message);
+        this.limit = limit;
+    }
+    
+    public GenerationLimits.Limit getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,92 @@
+import java.time.Duration;
+
+/**
+ * Per-run resource quotas for the options-based engines
+ * 
+ * A run that exceeds any of them stops at the next check and reports the limit in its
+ * GenerationResult instead of running to completion. Depth and node count are checked
+ * as objects are entered, output size after every unit of work, and the clock (together
+ * with cancellation and thread interrupts) every CLOCK_INTERVAL units.
+ * 
+ *   GenerationLimits.unlimited().maxNodes(100_000).maxOutputChars(8 << 20).timeout(Duration.ofSeconds(2))
+ */
+public class GenerationLimits {
+    
+    /** Which quota stopped a run */
+    public enum Limit {
+        DEPTH,
+        NODES,
+        OUTPUT,
+        TIME
+    }
+    
+    private int maxDepth = Integer.MAX_VALUE;
+    private long maxNodes = Long.MAX_VALUE;
+    private long maxOutputChars = Long.MAX_VALUE;
+    private long timeoutNanos = Long.MAX_VALUE;
+    
+    public static GenerationLimits unlimited() {
+        return new GenerationLimits();
+    }
+    
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+    
+    /**
+     * Maximum object nesting depth (root object = 1). The stricter of this and
+     * GenerationOptions.maxDepth applies.
+     */
+    public GenerationLimits maxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be at least 1: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+        return this;
+    }
+    
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+    
+    /**
+     * Maximum number of objects, collections and maps generated
+     */
+    public GenerationLimits maxNodes(long maxNodes) {
+        if (maxNodes < 1) {
+            throw new IllegalArgumentException("maxNodes must be at least 1: " + maxNodes);
+        }
+        this.maxNodes = maxNodes;
+        return this;
+    }
+    
+    public long getMaxOutputChars() {
+        return maxOutputChars;
+    }
+    
+    /**
+     * Maximum length of the generated code in chars (bytes, for the usual ASCII output)
+     */
+    public GenerationLimits maxOutputChars(long maxOutputChars) {
+        if (maxOutputChars < 1) {
+            throw new IllegalArgumentException("maxOutputChars must be at least 1: " + maxOutputChars);
+        }
+        this.maxOutputChars = maxOutputChars;
+        return this;
+    }
+    
+    public long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+    
+    /**
+     * Wall-clock budget for one run, measured from the moment generation starts
+     */
+    public GenerationLimits timeout(Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("timeout must be positive: " + timeout);
+        }
+        this.timeoutNanos = timeout.toNanos();
+        return this;
+    }
+}
@@ -0,0 +1,146 @@
+import java.util.Objects;
+
+/**
+ * Options for the options-based generateObjectCode overload
+ * 
+ * Defaults reproduce the output of the plain generateObjectCode(Class, String) call.
+ * Setters return this so options can be chained:
+ * 
+ *   GenerationOptions.defaults().collectionStrategy(CollectionStrategy.PRESIZED).maxDepth(10_000)
+ */
+public class GenerationOptions {
+    
+    private CollectionStrategy collectionStrategy = CollectionStrategy.DEFAULT;
+    private int maxDepth = Integer.MAX_VALUE;
+    private boolean lowAllocation;
+    private boolean structuralIndex;
+    private GenerationLimits limits = GenerationLimits.unlimited();
+    private CancellationToken cancellationToken;
+    private CollectionSampling sampling;
+    private int tableMinElements;
+    private boolean parentFirst;
+    
+    public static GenerationOptions defaults() {
+        return new GenerationOptions();
+    }
+    
+    public CollectionStrategy getCollectionStrategy() {
+        return collectionStrategy;
+    }
+    
+    public GenerationOptions collectionStrategy(CollectionStrategy collectionStrategy) {
+        this.collectionStrategy = collectionStrategy;
+        return this;
+    }
+    
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+    
+    /**
+     * Maximum object nesting depth (root object = 1). Deeper input fails the run.
+     */
+    public GenerationOptions maxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be at least 1: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+        return this;
+    }
+    
+    public boolean isLowAllocation() {
+        return lowAllocation;
+    }
+    
+    /**
+     * Reuse one generator per thread - frames, variable name tables and output buffer -
+     * instead of allocating them for every call. Output is unchanged.
+     */
+    public GenerationOptions lowAllocation(boolean lowAllocation) {
+        this.lowAllocation = lowAllocation;
+        return this;
+    }
+    
+    public boolean isStructuralIndex() {
+        return structuralIndex;
+    }
+    
+    /**
+     * Byte input only: index the document's containers in one pass first (see StructuralIndex),
+     * so array sizes and skipped subtrees are looked up rather than rescanned. Pays off for
+     * PRESIZED or array-heavy input; output is unchanged.
+     */
+    public GenerationOptions structuralIndex(boolean structuralIndex) {
+        this.structuralIndex = structuralIndex;
+        return this;
+    }
+    
+    public GenerationLimits getLimits() {
+        return limits;
+    }
+    
+    /**
+     * Per-run quotas on depth, node count, output size and wall-clock time
+     */
+    public GenerationOptions limits(GenerationLimits limits) {
+        this.limits = Objects.requireNonNull(limits, "limits");
+        return this;
+    }
+    
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+    
+    /**
+     * Token whose cancel() stops runs using these options at their next check
+     */
+    public GenerationOptions cancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        return this;
+    }
+    
+    public CollectionSampling getSampling() {
+        return sampling;
+    }
+    
+    /**
+     * Cap each collection and array field at a number of first, evenly strided or randomly
+     * sampled elements (null, the default, keeps everything)
+     */
+    public GenerationOptions sampling(CollectionSampling sampling) {
+        this.sampling = sampling;
+        return this;
+    }
+    
+    public int getTableMinElements() {
+        return tableMinElements;
+    }
+    
+    /**
+     * Tree engine only: emit collections of at least minElements flat objects (scalar and enum
+     * fields only, the same fields set in every element) as one packed string per field plus a
+     * loop that decodes the values and builds the elements. 0, the default, disables table emission.
+     */
+    public GenerationOptions tableEmission(int minElements) {
+        if (minElements < 0) {
+            throw new IllegalArgumentException("minElements must not be negative: " + minElements);
+        }
+        this.tableMinElements = minElements;
+        return this;
+    }
+    
+    public boolean isParentFirst() {
+        return parentFirst;
+    }
+    
+    /**
+     * Streaming engines only (byte, stream and file input): declare each object and write its
+     * scalar setters as soon as the object starts, and link it to its parent once it is
+     * complete. Output is written in document order, so a streaming writer only holds the
+     * open objects on the current path rather than whole subtrees.
+     */
+    public GenerationOptions parentFirst(boolean parentFirst) {
+        this.parentFirst = parentFirst;
+        return this;
+    }
+}
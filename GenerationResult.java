@@ -0,0 +1,97 @@
+/**
+ * Outcome of a generation run with limits
+ * 
+ * Exactly one of: the generated code (COMPLETED), the limit that stopped the run
+ * (LIMIT_EXCEEDED), a cancellation (CANCELLED), or the error that failed it (FAILED).
+ * Node count and elapsed time are reported for every outcome.
+ */
+public final class GenerationResult {
+    
+    public enum Status {
+        COMPLETED,
+        LIMIT_EXCEEDED,
+        CANCELLED,
+        FAILED
+    }
+    
+    private final Status status;
+    private final String code;
+    private final GenerationLimits.Limit limit;
+    private final String message;
+    private final long nodes;
+    private final long elapsedNanos;
+    
+    private GenerationResult(Status status, String code, GenerationLimits.Limit limit, String message,
+                             long nodes, long elapsedNanos) {
+        this.status = status;
+        this.code = code;
+        this.limit = limit;
+        this.message = message;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+    }
+    
+    static GenerationResult completed(String code, long nodes, long elapsedNanos) {
+        return new GenerationResult(Status.COMPLETED, code, null, null, nodes, elapsedNanos);
+    }
+    
+    static GenerationResult limitExceeded(GenerationLimitException e, long nodes, long elapsedNanos) {
+        return new GenerationResult(Status.LIMIT_EXCEEDED, null, e.getLimit(), e.getMessage(), nodes, elapsedNanos);
+    }
+    
+    static GenerationResult cancelled(String message, long nodes, long elapsedNanos) {
+        return new GenerationResult(Status.CANCELLED, null, null, message, nodes, elapsedNanos);
+    }
+    
+    static GenerationResult failed(Exception e, long nodes, long elapsedNanos) {
+        return new GenerationResult(Status.FAILED, null, null, String.valueOf(e.getMessage()), nodes, elapsedNanos);
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public boolean isCompleted() {
+        return status == Status.COMPLETED;
+    }
+    
+    /**
+     * Generated code, or null unless COMPLETED
+     */
+    public String getCode() {
+        return code;
+    }
+    
+    /**
+     * The exceeded limit, or null unless LIMIT_EXCEEDED
+     */
+    public GenerationLimits.Limit getLimit() {
+        return limit;
+    }
+    
+    /**
+     * Why the run did not complete, or null if it did
+     */
+    public String getMessage() {
+        return message;
+    }
+    
+    /**
+     * Objects, collections and maps entered before the run ended
+     */
+    public long getNodes() {
+        return nodes;
+    }
+    
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return status == Status.COMPLETED
+            ? "GenerationResult{COMPLETED, nodes=" + nodes + ", chars=" + code.length() + "}"
+            : "GenerationResult{" + status + (limit != null ? " " + limit : "") + ", nodes=" + nodes
+                + ", message='" + message + "'}";
+    }
+}
@@ -0,0 +1,16 @@
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a model class for compile-time metadata generation
+ * 
+ * When compiled with ModelMetadataProcessor on the processor path, each annotated class
+ * gets a generated <ClassName>_ModelMetadata describing its fields, so the generator
+ * can skip reflection for it at runtime.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GeneratorModel {
+}
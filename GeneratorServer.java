@@ -0,0 +1,277 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Long-running local generator daemon
+ * 
+ * Keeps the generator resident behind a loopback HTTP endpoint so repeated
+ * generations skip JVM startup, Gson class loading and cold JIT, and reuse the
+ * warm ClassPlan and collection resolution caches.
+ * 
+ * Endpoints:
+ * - POST /generate?class=Company[&strategy=PRESIZED][&maxDepth=N]  body: JSON, response: code
+ *   (413 when a server limit is exceeded, 504 when the time limit is, 422 for invalid input)
+ * - GET  /stats    latency percentiles for /generate
+ * - GET  /health
+ * 
+ * Requests run on virtual threads when the JDK provides them (21+), otherwise on a
+ * bounded platform thread pool. In both cases at most --threads generations run at once.
+ * 
+ * Every generation runs under the server's GenerationLimits, so one oversized or
+ * deeply nested payload cannot hold a worker and the heap indefinitely.
+ * 
+ * Usage: java GeneratorServer [--port 8765] [--threads N] [--queue N] [--platform-threads]
+ *                             [--preload Company,Department]
+ *                             [--max-depth N] [--max-nodes N] [--max-output CHARS] [--timeout-ms N]
+ */
+public class GeneratorServer {
+    
+    private static final int DEFAULT_PORT = 8765;
+    
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final LatencyRecorder latency = new LatencyRecorder();
+    private final Map<String, Class<?>> classes = new ConcurrentHashMap<>();
+    private volatile GenerationLimits limits = GenerationLimits.unlimited();
+    
+    public GeneratorServer(int port, int threads, int queueCapacity, boolean allowVirtualThreads) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.permits = new Semaphore(threads);
+        ExecutorService virtualThreads = allowVirtualThreads ? newVirtualThreadExecutor() : null;
+        this.executor = virtualThreads != null ? virtualThreads : newBoundedPool(threads, queueCapacity);
+        
+        server.setExecutor(executor);
+        server.createContext("/generate", this::handleGenerate);
+        server.createContext("/stats", exchange -> respond(exchange, 200, "application/json", latency.toJson()));
+        server.createContext("/health", exchange -> respond(exchange, 200, "text/plain", "OK"));
+    }
+    
+    public void start() {
+        server.start();
+    }
+    
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+    
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    /**
+     * Quotas applied to every subsequent generation
+     */
+    public void setLimits(GenerationLimits limits) {
+        this.limits = Objects.requireNonNull(limits, "limits");
+    }
+    
+    /**
+     * Resolve and plan the given classes up front so the first requests are not cold
+     */
+    public void preload(Collection<String> classNames) throws ClassNotFoundException {
+        for (String className : classNames) {
+            ClassPlan.of(resolveClass(className));
+        }
+    }
+    
+    // ========================================================================================
+    // REQUEST HANDLING
+    // ========================================================================================
+    
+    private void handleGenerate(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "text/plain", "Use POST");
+            return;
+        }
+        
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            permits.acquire();
+            try {
+                Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                String className = params.get("class");
+                if (className == null) {
+                    respond(exchange, 400, "text/plain", "Missing 'class' query parameter");
+                    return;
+                }
+                
+                Class<?> clazz = resolveClass(className);
+                GenerationOptions options = toOptions(params).limits(limits);
+                String json = readBody(exchange.getRequestBody());
+                GenerationResult result = JsonToObjectGenerator.generate(clazz, json, options);
+                
+                success = result.isCompleted();
+                exchange.getResponseHeaders().add("X-Generation-Micros",
+                                                  String.valueOf((System.nanoTime() - start) / 1000));
+                exchange.getResponseHeaders().add("X-Generation-Nodes", String.valueOf(result.getNodes()));
+                if (success) {
+                    respond(exchange, 200, "text/plain", result.getCode());
+                } else {
+                    if (result.getLimit() != null) {
+                        exchange.getResponseHeaders().add("X-Generation-Limit", result.getLimit().name());
+                    }
+                    respond(exchange, statusFor(result), "text/plain",
+                            result.getStatus() + ": " + result.getMessage());
+                }
+            } finally {
+                permits.release();
+            }
+        } catch (ClassNotFoundException e) {
+            respond(exchange, 404, "text/plain", "Unknown class: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, "text/plain", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "text/plain", "Interrupted");
+        } finally {
+            latency.record(System.nanoTime() - start, success);
+        }
+    }
+    
+    private static int statusFor(GenerationResult result) {
+        switch (result.getStatus()) {
+            case LIMIT_EXCEEDED:
+                return result.getLimit() == GenerationLimits.Limit.TIME ? 504 : 413;
+            case CANCELLED:
+                return 503;
+            default:
+                return 422;
+        }
+    }
+    
+    private Class<?> resolveClass(String className) throws ClassNotFoundException {
+        Class<?> clazz = classes.get(className);
+        if (clazz == null) {
+            // initialize=false: planning only needs the class shape, never its static initializers
+            clazz = Class.forName(className, false, GeneratorServer.class.getClassLoader());
+            classes.put(className, clazz);
+        }
+        return clazz;
+    }
+    
+    private static GenerationOptions toOptions(Map<String, String> params) {
+        GenerationOptions options = GenerationOptions.defaults();
+        if (params.containsKey("strategy")) {
+            options.collectionStrategy(CollectionStrategy.valueOf(params.get("strategy").toUpperCase()));
+        }
+        if (params.containsKey("maxDepth")) {
+            options.maxDepth(Integer.parseInt(params.get("maxDepth")));
+        }
+        return options;
+    }
+    
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+    
+    private static String readBody(InputStream body) throws IOException {
+        try (InputStream in = body) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+    
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+    
+    // ========================================================================================
+    // EXECUTORS
+    // ========================================================================================
+    
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() looked up reflectively, since the
+     * project still targets Java 11. Returns null on JDKs without virtual threads.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Fixed pool with a bounded queue. When the queue is full the HTTP dispatcher thread
+     * runs the request itself, which stops it accepting new connections - natural backpressure.
+     */
+    private static ExecutorService newBoundedPool(int threads, int queueCapacity) {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private int counter;
+            
+            @Override
+            public synchronized Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "generator-" + counter++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                                      new ArrayBlockingQueue<>(queueCapacity), threadFactory,
+                                      new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+    
+    // ========================================================================================
+    // MAIN METHOD
+    // ========================================================================================
+    
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = 1024;
+        boolean allowVirtualThreads = true;
+        List<String> preload = new ArrayList<>();
+        GenerationLimits limits = GenerationLimits.unlimited();
+        
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--queue": queueCapacity = Integer.parseInt(args[++i]); break;
+                case "--platform-threads": allowVirtualThreads = false; break;
+                case "--preload": preload.addAll(Arrays.asList(args[++i].split(","))); break;
+                case "--max-depth": limits.maxDepth(Integer.parseInt(args[++i])); break;
+                case "--max-nodes": limits.maxNodes(Long.parseLong(args[++i])); break;
+                case "--max-output": limits.maxOutputChars(Long.parseLong(args[++i])); break;
+                case "--timeout-ms": limits.timeout(java.time.Duration.ofMillis(Long.parseLong(args[++i]))); break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        
+        GeneratorServer generatorServer = new GeneratorServer(port, threads, queueCapacity, allowVirtualThreads);
+        generatorServer.setLimits(limits);
+        generatorServer.preload(preload);
+        generatorServer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(generatorServer::stop));
+        
+        System.out.println("Generator server listening on http://127.0.0.1:" + generatorServer.getPort());
+    }
+}
@@ -0,0 +1,243 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Parallel golden-file regression runner
+ * 
+ * Discovers every fixture under regression/fixtures/<ClassName>/*.json, generates code
+ * for all of them in parallel and compares each output with its golden file in
+ * regression/golden/<ClassName>/<name>.txt. Every fixture runs on both the options engine
+ * and the legacy generateObjectCode(Class, String), and both must match the golden file;
+ * a line diff is computed only on a mismatch. With --update, changed and missing goldens
+ * are rewritten, unless the two engines disagree.
+ * 
+ * Usage: java GoldenFileRunner [--update] [--root regression] [--threads N]
+ */
+public class GoldenFileRunner {
+    
+    private static final int MAX_DIFF_LINES = 40;
+    private static final long MAX_LCS_CELLS = 4_000_000L;
+    
+    private final Path fixturesDir;
+    private final Path goldenDir;
+    private final boolean update;
+    private final int threads;
+    
+    GoldenFileRunner(Path root, boolean update, int threads) {
+        this.fixturesDir = root.resolve("fixtures");
+        this.goldenDir = root.resolve("golden");
+        this.update = update;
+        this.threads = threads;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Path root = Paths.get("regression");
+        boolean update = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--update": update = true; break;
+                case "--root": root = Paths.get(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("Usage: java GoldenFileRunner [--update] [--root dir] [--threads N]");
+                    System.exit(2);
+            }
+        }
+        
+        boolean passed = new GoldenFileRunner(root, update, threads).run();
+        System.exit(passed ? 0 : 1);
+    }
+    
+    /**
+     * Run the suite and print a report
+     * 
+     * @return true if every fixture matched (or was updated)
+     */
+    boolean run() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        List<Path> fixtures = discoverFixtures();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Result>> futures = new ArrayList<>(fixtures.size());
+        try {
+            for (Path fixture : fixtures) {
+                futures.add(executor.submit(() -> check(fixture)));
+            }
+            
+            List<Result> results = new ArrayList<>(futures.size());
+            for (Future<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Runner failure", e.getCause());
+                }
+            }
+            return report(results, System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private List<Path> discoverFixtures() throws IOException {
+        if (!Files.isDirectory(fixturesDir)) {
+            throw new IOException("Fixture directory not found: " + fixturesDir.toAbsolutePath());
+        }
+        try (Stream<Path> files = Files.walk(fixturesDir, 2)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".json"))
+                        .filter(file -> fixturesDir.relativize(file).getNameCount() == 2)
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+    
+    // ========================================================================================
+    // CHECKING
+    // ========================================================================================
+    
+    private enum Status { PASSED, FAILED, UPDATED, ERROR }
+    
+    private static final class Result {
+        private final String key;
+        private final Status status;
+        private final String detail;
+        
+        Result(String key, Status status, String detail) {
+            this.key = key;
+            this.status = status;
+            this.detail = detail;
+        }
+    }
+    
+    private Result check(Path fixture) {
+        String className = fixture.getParent().getFileName().toString();
+        String fileName = fixture.getFileName().toString();
+        String name = fileName.substring(0, fileName.length() - ".json".length());
+        String key = className + "/" + name;
+        
+        try {
+            Class<?> clazz = Class.forName(className);
+            String json = new String(Files.readAllBytes(fixture), StandardCharsets.UTF_8);
+            // Both overloads keep their state per call, so fixtures can run concurrently
+            String actual = JsonToObjectGenerator.generateObjectCode(clazz, json, GenerationOptions.defaults()) + "\n";
+            String legacy = JsonToObjectGenerator.generateObjectCode(clazz, json) + "\n";
+            Path golden = goldenDir.resolve(className).resolve(name + ".txt");
+            String expected = Files.exists(golden)
+                ? new String(Files.readAllBytes(golden), StandardCharsets.UTF_8) : null;
+            if (actual.equals(expected) && legacy.equals(expected)) {
+                return new Result(key, Status.PASSED, null);
+            }
+            if (update && actual.equals(legacy)) {
+                Files.createDirectories(golden.getParent());
+                Files.write(golden, actual.getBytes(StandardCharsets.UTF_8));
+                return new Result(key, Status.UPDATED, expected == null ? "new golden" : "golden rewritten");
+            }
+            if (expected == null) {
+                // Nothing to compare against: the engines can only be compared with each other
+                return new Result(key, Status.FAILED, actual.equals(legacy) ? "missing golden " + golden
+                    : "missing golden " + golden + "; legacy engine differs:\n" + diff(actual, legacy));
+            }
+            StringBuilder detail = new StringBuilder();
+            if (!actual.equals(expected)) {
+                detail.append(diff(expected, actual));
+            }
+            if (!legacy.equals(expected)) {
+                detail.append("    legacy engine:\n").append(diff(expected, legacy));
+            }
+            return new Result(key, Status.FAILED, detail.toString());
+        } catch (ClassNotFoundException e) {
+            return new Result(key, Status.ERROR, "class not found: " + className);
+        } catch (Exception e) {
+            return new Result(key, Status.ERROR, e.toString());
+        }
+    }
+    
+    // ========================================================================================
+    // LINE DIFF
+    // ========================================================================================
+    
+    /**
+     * Line diff of the region between the common prefix and suffix, via an LCS table
+     * when that region is small enough and as plain removed/added blocks otherwise
+     */
+    static String diff(String expected, String actual) {
+        String[] a = expected.split("\n", -1);
+        String[] b = actual.split("\n", -1);
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length && a[prefix].equals(b[prefix])) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < a.length - prefix && suffix < b.length - prefix &&
+               a[a.length - 1 - suffix].equals(b[b.length - 1 - suffix])) {
+            suffix++;
+        }
+        int n = a.length - prefix - suffix;
+        int m = b.length - prefix - suffix;
+        
+        List<String> lines = new ArrayList<>();
+        if ((long) n * m <= MAX_LCS_CELLS) {
+            int[][] lcs = new int[n + 1][m + 1];
+            for (int i = n - 1; i >= 0; i--) {
+                for (int j = m - 1; j >= 0; j--) {
+                    lcs[i][j] = a[prefix + i].equals(b[prefix + j])
+                        ? lcs[i + 1][j + 1] + 1 : Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+                }
+            }
+            int i = 0;
+            int j = 0;
+            while (i < n || j < m) {
+                if (i < n && j < m && a[prefix + i].equals(b[prefix + j])) {
+                    i++;
+                    j++;
+                } else if (j < m && (i == n || lcs[i][j + 1] > lcs[i + 1][j])) {
+                    lines.add(String.format("+%5d  %s", prefix + j + 1, b[prefix + j]));
+                    j++;
+                } else {
+                    lines.add(String.format("-%5d  %s", prefix + i + 1, a[prefix + i]));
+                    i++;
+                }
+            }
+        } else {
+            for (int i = 0; i < n; i++) lines.add(String.format("-%5d  %s", prefix + i + 1, a[prefix + i]));
+            for (int j = 0; j < m; j++) lines.add(String.format("+%5d  %s", prefix + j + 1, b[prefix + j]));
+        }
+        
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < lines.size() && i < MAX_DIFF_LINES; i++) {
+            out.append("    ").append(lines.get(i)).append("\n");
+        }
+        if (lines.size() > MAX_DIFF_LINES) {
+            out.append("    ... ").append(lines.size() - MAX_DIFF_LINES).append(" more changed lines\n");
+        }
+        return out.toString();
+    }
+    
+    // ========================================================================================
+    // REPORT
+    // ========================================================================================
+    
+    private boolean report(List<Result> results, long elapsedNanos) {
+        Map<Status, Integer> counts = new EnumMap<>(Status.class);
+        for (Result result : results) {
+            counts.merge(result.status, 1, Integer::sum);
+            if (result.status == Status.FAILED || result.status == Status.ERROR) {
+                System.out.println(result.status + " " + result.key);
+                System.out.print(result.detail.endsWith("\n") ? result.detail : "    " + result.detail + "\n");
+            } else if (result.status == Status.UPDATED && result.detail != null) {
+                System.out.println("UPDATED " + result.key + " (" + result.detail + ")");
+            }
+        }
+        
+        System.out.printf("%n%d fixtures in %d ms on %d threads: %d passed, %d failed, %d errors, %d updated%n",
+                          results.size(), elapsedNanos / 1_000_000, threads,
+                          counts.getOrDefault(Status.PASSED, 0), counts.getOrDefault(Status.FAILED, 0),
+                          counts.getOrDefault(Status.ERROR, 0), counts.getOrDefault(Status.UPDATED, 0));
+        return counts.getOrDefault(Status.FAILED, 0) == 0 && counts.getOrDefault(Status.ERROR, 0) == 0;
+    }
+}
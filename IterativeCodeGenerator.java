@@ -0,0 +1,744 @@
+import java.util.*;
+import com.google.gson.*;
+
+/**
+ * Work-stack code generation engine
+ * 
+ * Produces exactly the same output as the recursive CodeGenerator, but walks the
+ * JSON tree with an explicit heap-allocated stack of frames instead of the call
+ * stack. A TreeNode chain thousands of levels deep therefore generates fine, and
+ * memory grows with nesting depth only.
+ * 
+ * Finished frames go back to a per-instance pool and are re-initialized for the next
+ * level, so a run allocates frames only up to its maximum nesting depth. In
+ * low-allocation mode (see {@link GenerationOptions#lowAllocation(boolean)}) one
+ * instance per thread is reset and reused across runs, keeping its pools, name
+ * tables and output buffer.
+ */
+class IterativeCodeGenerator {
+    
+    /** Output buffers larger than this (16M chars) are dropped on reset rather than kept per thread */
+    private static final int MAX_RETAINED_CAPACITY = 1 << 24;
+    
+    /** Characters per string constant of a packed table column, well inside the 64 KB constant limit */
+    private static final int TABLE_CHUNK_CHARS = 16_384;
+    
+    private static final ThreadLocal<IterativeCodeGenerator> PER_THREAD = new ThreadLocal<>();
+    
+    private GenerationOptions options;
+    private final JsonToObjectGenerator.VariableNameManager variableNames =
+        new JsonToObjectGenerator.VariableNameManager();
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private final Deque<ObjectFrame> objectFramePool = new ArrayDeque<>();
+    private final Deque<CollectionFrame> collectionFramePool = new ArrayDeque<>();
+    private final Deque<MapFrame> mapFramePool = new ArrayDeque<>();
+    private StringBuilder code = new StringBuilder();
+    private GenerationBudget budget;
+    private int completedObjects;
+    
+    IterativeCodeGenerator(GenerationOptions options) {
+        this.options = options;
+        this.budget = GenerationBudget.start(options);
+    }
+    
+    /**
+     * The calling thread's reusable generator, reset for a new run
+     */
+    static IterativeCodeGenerator forCurrentThread(GenerationOptions options) {
+        IterativeCodeGenerator generator = PER_THREAD.get();
+        if (generator == null) {
+            generator = new IterativeCodeGenerator(options);
+            PER_THREAD.set(generator);
+        } else {
+            generator.reset(options);
+        }
+        return generator;
+    }
+    
+    /**
+     * Forget all output and variable names, keeping pooled frames
+     */
+    void reset(GenerationOptions options) {
+        this.options = options;
+        this.budget = GenerationBudget.start(options);
+        variableNames.clear();
+        stack.clear();
+        completedObjects = 0;
+        if (code.capacity() > MAX_RETAINED_CAPACITY) {
+            code = new StringBuilder();
+        } else {
+            code.setLength(0);
+        }
+    }
+    
+    /**
+     * Generate object creation code for the given class and JSON object
+     */
+    public String generate(Class<?> clazz, JsonObject jsonObject) {
+        appendObject(clazz, jsonObject);
+        return getCode();
+    }
+    
+    /**
+     * Append code for one more root object. Variable names stay unique across roots.
+     * 
+     * @return Name of the variable holding the object
+     */
+    public String appendObject(Class<?> clazz, JsonObject jsonObject) {
+        ClassPlan plan = ClassPlan.of(clazz);
+        String variableName = uniqueName(plan.getVariableBaseName());
+        pushObject(plan, jsonObject, variableName, 1);
+        run();
+        return variableName;
+    }
+    
+    /**
+     * Start an incremental run: push the root object without generating anything yet.
+     * Drive it with {@link #advance()} and collect output with {@link #takeCode(boolean)}.
+     */
+    void begin(Class<?> clazz, JsonObject jsonObject) {
+        ClassPlan plan = ClassPlan.of(clazz);
+        pushObject(plan, jsonObject, uniqueName(plan.getVariableBaseName()), 1);
+    }
+    
+    /**
+     * Step until one more object has been emitted or the run is finished
+     * 
+     * @return true if work remains
+     */
+    boolean advance() {
+        int target = completedObjects + 1;
+        while (!stack.isEmpty() && completedObjects < target) {
+            stack.peek().step();
+            budget.checkpoint(code.length());
+        }
+        return !stack.isEmpty();
+    }
+    
+    /**
+     * Remove and return the output produced so far. Trailing whitespace is held back
+     * until more code follows (and dropped once the run is finished), so the fragments
+     * of a run concatenate to the same text as {@link #getTrimmedCode()}.
+     */
+    CharSequence takeCode(boolean finished) {
+        int end = code.length();
+        while (end > 0 && code.charAt(end - 1) <= ' ') end--;
+        String fragment = code.substring(0, end);
+        if (finished) {
+            code.setLength(0);
+        } else {
+            code.delete(0, end);
+        }
+        return fragment;
+    }
+    
+    /**
+     * Append code for a standalone collection or array field value
+     * 
+     * @return Name of the variable holding the collection
+     */
+    public String appendCollection(ClassPlan.FieldPlan field, JsonArray jsonArray) {
+        String collectionVarName = uniqueName(field.getCollectionVariableBaseName());
+        pushCollection(field, jsonArray, collectionVarName, 0);
+        run();
+        return collectionVarName;
+    }
+    
+    /**
+     * Append a single local variable holding a scalar value
+     */
+    public String appendScalar(String baseName, Class<?> type, JsonElement element) {
+        String variableName = uniqueName(baseName);
+        code.append(type.getSimpleName()).append(" ").append(variableName).append(" = ");
+        JsonToObjectGenerator.ValueConverter.appendValue(code, element, type);
+        code.append(";\n\n");
+        return variableName;
+    }
+    
+    /**
+     * Append a raw comment line
+     */
+    public void appendComment(String comment) {
+        code.append("// ").append(comment).append("\n");
+    }
+    
+    public String getCode() {
+        return code.toString();
+    }
+    
+    /**
+     * The code with leading and trailing whitespace removed, as String.trim() would,
+     * but copied out of the buffer only once
+     */
+    public String getTrimmedCode() {
+        int start = 0;
+        int end = code.length();
+        while (start < end && code.charAt(start) <= ' ') start++;
+        while (end > start && code.charAt(end - 1) <= ' ') end--;
+        return code.substring(start, end);
+    }
+    
+    /**
+     * Accounting for the current run against the options' limits
+     */
+    GenerationBudget getBudget() {
+        return budget;
+    }
+    
+    private void run() {
+        while (!stack.isEmpty()) {
+            stack.peek().step();
+            budget.checkpoint(code.length());
+        }
+    }
+    
+    private String uniqueName(String baseName) {
+        return variableNames.allocate(baseName);
+    }
+    
+    private void pushObject(ClassPlan plan, JsonObject jsonObject, String variableName, int depth) {
+        budget.enterObject(depth, plan, variableName);
+        ObjectFrame frame = objectFramePool.poll();
+        if (frame == null) {
+            frame = new ObjectFrame();
+        }
+        frame.init(plan, jsonObject, variableName, depth);
+        stack.push(frame);
+    }
+    
+    private void pushCollection(ClassPlan.FieldPlan field, JsonArray jsonArray, String collectionVarName, int depth) {
+        budget.enterNode();
+        CollectionFrame frame = collectionFramePool.poll();
+        if (frame == null) {
+            frame = new CollectionFrame();
+        }
+        frame.init(field, jsonArray, collectionVarName, depth);
+        stack.push(frame);
+    }
+    
+    private void pushMap(ClassPlan.FieldPlan field, JsonObject jsonObject, String mapVarName, int depth) {
+        budget.enterNode();
+        MapFrame frame = mapFramePool.poll();
+        if (frame == null) {
+            frame = new MapFrame();
+        }
+        frame.init(field, jsonObject, mapVarName, depth);
+        stack.push(frame);
+    }
+    
+    // ========================================================================================
+    // FRAMES
+    // ========================================================================================
+    
+    private interface Frame {
+        /**
+         * Advance by one unit of work: emit code, push a child frame, or pop itself
+         */
+        void step();
+    }
+    
+    /**
+     * Generates nested fields in declaration order, then the object itself
+     */
+    private final class ObjectFrame implements Frame {
+        private ClassPlan plan;
+        private JsonObject jsonObject;
+        private String variableName;
+        private int depth;
+        private String[] nestedVariables = new String[0];
+        private int fieldIndex;
+        
+        void init(ClassPlan plan, JsonObject jsonObject, String variableName, int depth) {
+            this.plan = plan;
+            this.jsonObject = jsonObject;
+            this.variableName = variableName;
+            this.depth = depth;
+            this.fieldIndex = 0;
+            int fieldCount = plan.getFields().length;
+            if (nestedVariables.length < fieldCount) {
+                nestedVariables = new String[fieldCount];
+            } else {
+                Arrays.fill(nestedVariables, 0, fieldCount, null);
+            }
+        }
+        
+        @Override
+        public void step() {
+            ClassPlan.FieldPlan[] fields = plan.getFields();
+            while (fieldIndex < fields.length) {
+                int index = fieldIndex++;
+                ClassPlan.FieldPlan field = fields[index];
+                JsonElement jsonElement = jsonObject.get(field.getName());
+                if (jsonElement == null) continue;
+                
+                if (field.isMapType() && jsonElement.isJsonObject()) {
+                    nestedVariables[index] = uniqueName(field.getMapVariableBaseName());
+                    pushMap(field, jsonElement.getAsJsonObject(), nestedVariables[index], depth);
+                    return;
+                }
+                if (!field.isPrimitiveOrString() && jsonElement.isJsonObject()) {
+                    ClassPlan nestedPlan = ClassPlan.of(field.getType());
+                    nestedVariables[index] = uniqueName(nestedPlan.getVariableBaseName());
+                    pushObject(nestedPlan, jsonElement.getAsJsonObject(), nestedVariables[index], depth + 1);
+                    return;
+                }
+                if (field.isCollectionType() && jsonElement.isJsonArray()) {
+                    nestedVariables[index] = uniqueName(field.getCollectionVariableBaseName());
+                    pushCollection(field, jsonElement.getAsJsonArray(), nestedVariables[index], depth);
+                    return;
+                }
+            }
+            
+            stack.pop();
+            createMainObject();
+            completedObjects++;
+            plan = null;
+            jsonObject = null;
+            objectFramePool.push(this);
+        }
+        
+        private void createMainObject() {
+            code.append(plan.getSimpleName()).append(" ").append(variableName)
+                .append(" = new ").append(plan.getSimpleName()).append("();\n");
+            
+            ClassPlan.FieldPlan[] fields = plan.getFields();
+            for (int i = 0; i < fields.length; i++) {
+                ClassPlan.FieldPlan field = fields[i];
+                if (nestedVariables[i] != null) {
+                    code.append(variableName).append(".").append(field.getSetterName())
+                        .append("(").append(nestedVariables[i]).append(");\n");
+                } else if (field.isPrimitiveOrString() || field.getType().isEnum()) {
+                    JsonElement element = jsonObject.get(field.getName());
+                    if (element != null && !element.isJsonNull()) {
+                        code.append(variableName).append(".").append(field.getSetterName()).append("(");
+                        JsonToObjectGenerator.ValueConverter.appendValue(code, element, field.getType());
+                        code.append(");\n");
+                    }
+                }
+            }
+            
+            code.append("\n");
+        }
+    }
+    
+    /**
+     * Generates a collection or array field: declaration, then one element per step
+     */
+    private final class CollectionFrame implements Frame {
+        private final List<String> immutableValues = new ArrayList<>();
+        private final List<ClassPlan.FieldPlan> tableColumns = new ArrayList<>();
+        private ClassPlan.FieldPlan field;
+        private Class<?> fieldType;
+        private JsonArray jsonArray;
+        private String collectionVarName;
+        private Class<?> elementType;
+        private int depth;
+        private String immutableFactory;
+        private String pendingElementVar;
+        private boolean table;
+        private int index;
+        
+        void init(ClassPlan.FieldPlan field, JsonArray jsonArray, String collectionVarName, int depth) {
+            this.field = field;
+            this.fieldType = field.getType();
+            this.jsonArray = jsonArray;
+            this.collectionVarName = collectionVarName;
+            this.depth = depth;
+            this.immutableFactory = null;
+            this.pendingElementVar = null;
+            this.index = 0;
+            immutableValues.clear();
+            tableColumns.clear();
+            
+            CollectionSampling sampling = options.getSampling();
+            int[] selected = sampling != null ? sampling.select(jsonArray.size()) : null;
+            if (selected != null) {
+                // Skipped elements are simply left out; nothing is generated for them
+                code.append("// ").append(sampling.describe(field.getName(), selected.length, jsonArray.size()))
+                    .append("\n");
+                JsonArray sample = new JsonArray(selected.length);
+                for (int selectedIndex : selected) {
+                    sample.add(jsonArray.get(selectedIndex));
+                }
+                this.jsonArray = sample;
+                jsonArray = sample;
+            }
+            
+            if (fieldType.isArray()) {
+                this.elementType = fieldType.getComponentType();
+                String elementTypeName = elementType.getSimpleName();
+                code.append(elementTypeName).append("[] ").append(collectionVarName).append(" = new ")
+                    .append(elementTypeName).append("[").append(jsonArray.size()).append("];\n");
+                this.table = isTableCandidate();
+                return;
+            }
+            
+            this.elementType = field.getElementType(jsonArray);
+            this.table = isTableCandidate();
+            String factory = JsonToObjectGenerator.CollectionHandler.getImmutableFactory(
+                options.getCollectionStrategy(), fieldType, elementType);
+            if (factory != null && JsonToObjectGenerator.CollectionHandler.supportsImmutable(
+                    factory, jsonArray, elementType)) {
+                // Elements have to exist before the factory call, so the declaration comes last
+                this.immutableFactory = factory;
+                return;
+            }
+            
+            code.append(field.getDeclaredTypeName()).append("<").append(elementType.getSimpleName()).append("> ")
+                .append(collectionVarName).append(" = ")
+                .append(JsonToObjectGenerator.CollectionHandler.getConstructorExpression(
+                    options.getCollectionStrategy(), fieldType, elementType, jsonArray.size()))
+                .append(";\n");
+        }
+        
+        @Override
+        public void step() {
+            if (table) {
+                emitTable();
+                index = jsonArray.size();
+            }
+            if (pendingElementVar != null) {
+                emitElement(index - 1, pendingElementVar);
+                pendingElementVar = null;
+            }
+            
+            while (index < jsonArray.size()) {
+                int current = index++;
+                JsonElement element = jsonArray.get(current);
+                
+                if (element.isJsonObject() && isObjectElement()) {
+                    ClassPlan elementPlan = ClassPlan.of(elementType);
+                    pendingElementVar = uniqueName(elementPlan.getVariableBaseName());
+                    pushObject(elementPlan, element.getAsJsonObject(), pendingElementVar, depth + 1);
+                    return;
+                }
+                processScalarElement(current, element);
+                budget.checkpoint(code.length());
+            }
+            
+            stack.pop();
+            if (immutableFactory != null && table) {
+                // emitTable left the elements in an array; List.of / Set.of take it as varargs
+                code.append(field.getDeclaredTypeName()).append("<").append(elementType.getSimpleName()).append("> ")
+                    .append(collectionVarName).append(" = ").append(immutableFactory).append("(")
+                    .append(immutableValues.get(0)).append(");\n");
+            } else if (immutableFactory != null) {
+                code.append(field.getDeclaredTypeName()).append("<").append(elementType.getSimpleName()).append("> ")
+                    .append(collectionVarName).append(" = ").append(immutableFactory).append("(");
+                for (int i = 0; i < immutableValues.size(); i++) {
+                    if (i > 0) code.append(", ");
+                    code.append(immutableValues.get(i));
+                }
+                code.append(");\n");
+            }
+            code.append("\n");
+            
+            field = null;
+            jsonArray = null;
+            table = false;
+            immutableValues.clear();
+            tableColumns.clear();
+            collectionFramePool.push(this);
+        }
+        
+        // ------------------------------------------------------------------------------------
+        // Table emission
+        // ------------------------------------------------------------------------------------
+        
+        /**
+         * Whether the elements can be built from per-field columns: all of them objects of the
+         * element class, setting the same scalar or enum fields (nothing nested) with non-null
+         * values that can be packed. The columns are collected as a side effect.
+         */
+        private boolean isTableCandidate() {
+            int minElements = options.getTableMinElements();
+            if (minElements == 0 || jsonArray.size() < Math.max(minElements, 1) || !isObjectElement()) {
+                return false;
+            }
+            ClassPlan elementPlan = ClassPlan.of(elementType);
+            JsonElement first = jsonArray.get(0);
+            if (!first.isJsonObject()) {
+                return false;
+            }
+            for (ClassPlan.FieldPlan column : elementPlan.getFields()) {
+                JsonElement value = first.getAsJsonObject().get(column.getName());
+                if (value == null || value.isJsonNull()) continue;
+                if (!value.isJsonPrimitive() || !(column.isPrimitiveOrString() || column.getType().isEnum())
+                    || packedValue(value.getAsJsonPrimitive(), column.getType()) == null) {
+                    return false;
+                }
+                tableColumns.add(column);
+            }
+            
+            for (int i = 1; i < jsonArray.size(); i++) {
+                JsonElement element = jsonArray.get(i);
+                if (!element.isJsonObject()) {
+                    return false;
+                }
+                int present = 0;
+                for (ClassPlan.FieldPlan column : elementPlan.getFields()) {
+                    JsonElement value = element.getAsJsonObject().get(column.getName());
+                    if (value == null || value.isJsonNull()) continue;
+                    if (!value.isJsonPrimitive() || present == tableColumns.size() ||
+                        tableColumns.get(present) != column ||
+                        packedValue(value.getAsJsonPrimitive(), column.getType()) == null) {
+                        return false;
+                    }
+                    present++;
+                }
+                if (present != tableColumns.size()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * One packed string per column, then a single loop decoding, constructing and populating
+         * the elements, instead of a block of statements per element. The values live in string
+         * constants, which do not count against the method's bytecode, so the method size no
+         * longer grows with the collection.
+         */
+        private void emitTable() {
+            ClassPlan elementPlan = ClassPlan.of(elementType);
+            int size = jsonArray.size();
+            String[] columnVars = new String[tableColumns.size()];
+            StringBuilder packed = new StringBuilder();
+            
+            for (int c = 0; c < columnVars.length; c++) {
+                ClassPlan.FieldPlan column = tableColumns.get(c);
+                columnVars[c] = uniqueName(field.getName()
+                    + JsonToObjectGenerator.StringUtils.capitalize(column.getName()));
+                packed.setLength(0);
+                for (int i = 0; i < size; i++) {
+                    if (i > 0) packed.append('\n');
+                    packed.append(packedValue(
+                        jsonArray.get(i).getAsJsonObject().get(column.getName()).getAsJsonPrimitive(), column.getType()));
+                }
+                appendPackedColumn(columnVars[c], packed);
+                budget.checkpoint(code.length());
+            }
+            
+            String target = collectionVarName;
+            if (immutableFactory != null) {
+                target = uniqueName(field.getName() + "Elements");
+                code.append(elementPlan.getSimpleName()).append("[] ").append(target).append(" = new ")
+                    .append(elementPlan.getSimpleName()).append("[").append(size).append("];\n");
+                immutableValues.add(target);
+            }
+            
+            String indexVar = uniqueName("i");
+            String elementVar = uniqueName(elementPlan.getVariableBaseName());
+            for (int i = 0; i < size; i++) {
+                budget.enterObject(depth + 1, elementPlan, elementVar);
+            }
+            code.append("for (int ").append(indexVar).append(" = 0; ").append(indexVar).append(" < ").append(size)
+                .append("; ").append(indexVar).append("++) {\n");
+            code.append("    ").append(elementPlan.getSimpleName()).append(" ").append(elementVar)
+                .append(" = new ").append(elementPlan.getSimpleName()).append("();\n");
+            for (int c = 0; c < columnVars.length; c++) {
+                code.append("    ").append(elementVar).append(".").append(tableColumns.get(c).getSetterName())
+                    .append("(");
+                appendDecoded(tableColumns.get(c).getType(), columnVars[c] + "[" + indexVar + "]");
+                code.append(");\n");
+            }
+            code.append("    ");
+            if (fieldType.isArray() || immutableFactory != null) {
+                code.append(target).append("[").append(indexVar).append("] = ").append(elementVar).append(";\n");
+            } else {
+                JsonToObjectGenerator.CollectionHandler.addElement(fieldType, target, elementVar, code);
+            }
+            code.append("}\n");
+            completedObjects += size;
+        }
+        
+        /**
+         * String[] of the column's values, one per line of the packed text. Text longer than a
+         * chunk is split over several constants (one may not exceed 64 KB) joined at run time.
+         */
+        private void appendPackedColumn(String columnVar, CharSequence packed) {
+            code.append("String[] ").append(columnVar).append(" = ");
+            boolean chunked = packed.length() > TABLE_CHUNK_CHARS;
+            if (chunked) {
+                code.append("String.join(\"\",");
+            }
+            int start = 0;
+            do {
+                int end = Math.min(packed.length(), start + TABLE_CHUNK_CHARS);
+                if (chunked) {
+                    code.append(start == 0 ? "\n    " : ",\n    ");
+                }
+                code.append('"');
+                JsonToObjectGenerator.ValueConverter.appendEscaped(code, packed.subSequence(start, end).toString());
+                code.append('"');
+                start = end;
+            } while (start < packed.length());
+            code.append(chunked ? "\n)" : "").append(".split(\"\\n\", -1);\n");
+        }
+        
+        /**
+         * Run-time text of a table value, converted as ValueConverter.appendValue converts it
+         * for a literal, or null if it cannot be packed (a line break in a string, a number
+         * that does not fit the type or an unknown enum constant)
+         */
+        private String packedValue(JsonPrimitive primitive, Class<?> type) {
+            try {
+                if (type == String.class && primitive.isString()) {
+                    String value = primitive.getAsString();
+                    return value.indexOf('\n') < 0 ? value : null;
+                } else if ((type == int.class || type == Integer.class) && primitive.isNumber()) {
+                    return String.valueOf(primitive.getAsInt());
+                } else if ((type == long.class || type == Long.class) && primitive.isNumber()) {
+                    return String.valueOf(primitive.getAsLong());
+                } else if ((type == double.class || type == Double.class) && primitive.isNumber()) {
+                    return String.valueOf(primitive.getAsDouble());
+                } else if ((type == float.class || type == Float.class) && primitive.isNumber()) {
+                    return String.valueOf(primitive.getAsFloat());
+                } else if ((type == boolean.class || type == Boolean.class) && primitive.isBoolean()) {
+                    return String.valueOf(primitive.getAsBoolean());
+                } else if ((type == char.class || type == Character.class) && primitive.isString()) {
+                    String value = primitive.getAsString();
+                    return value.isEmpty() || value.charAt(0) == '\n' ? null : value.substring(0, 1);
+                } else if ((type == byte.class || type == Byte.class) && primitive.isNumber()) {
+                    return String.valueOf(primitive.getAsByte());
+                } else if ((type == short.class || type == Short.class) && primitive.isNumber()) {
+                    return String.valueOf(primitive.getAsShort());
+                } else if (type.isEnum() && (primitive.isString() || primitive.isNumber())) {
+                    Enum<?> constant = primitive.isString()
+                        ? JsonToObjectGenerator.EnumHandler.lookup(type, primitive.getAsString())
+                        : JsonToObjectGenerator.EnumHandler.byOrdinal(type, primitive.getAsInt());
+                    return constant != null ? constant.name() : null;
+                }
+            } catch (NumberFormatException e) {
+                // Not a number of the column type: no table
+            }
+            return null;
+        }
+        
+        /**
+         * Expression converting a packed value back to the column type
+         */
+        private void appendDecoded(Class<?> type, String value) {
+            if (type == String.class) {
+                code.append(value);
+            } else if (type.isEnum()) {
+                code.append(type.getSimpleName()).append(".valueOf(").append(value).append(")");
+            } else if (type == char.class || type == Character.class) {
+                code.append(value).append(".charAt(0)");
+            } else if (type == int.class || type == Integer.class) {
+                code.append("Integer.parseInt(").append(value).append(")");
+            } else {
+                // Long.parseLong, Double.parseDouble, ... for the other primitives and their wrappers
+                String wrapper = type.isPrimitive()
+                    ? type.getName().substring(0, 1).toUpperCase() + type.getName().substring(1) : type.getSimpleName();
+                code.append(wrapper).append(".parse").append(wrapper).append("(").append(value).append(")");
+            }
+        }
+        
+        private boolean isObjectElement() {
+            return fieldType.isArray()
+                ? !JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(elementType)
+                : elementType != null;
+        }
+        
+        private void processScalarElement(int current, JsonElement element) {
+            if (fieldType.isArray()) {
+                if (element.isJsonPrimitive() && JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(elementType)) {
+                    code.append(collectionVarName).append("[").append(current).append("] = ");
+                    JsonToObjectGenerator.ValueConverter.appendValue(code, element, elementType);
+                    code.append(";\n");
+                }
+            } else if (element.isJsonPrimitive() && immutableFactory == null) {
+                code.append(collectionVarName).append(".")
+                    .append(JsonToObjectGenerator.CollectionHandler.getAddMethod(fieldType)).append("(");
+                JsonToObjectGenerator.ValueConverter.appendElementValue(code, element.getAsJsonPrimitive(), elementType);
+                code.append(");\n");
+            } else if (element.isJsonPrimitive()) {
+                emitElement(current, JsonToObjectGenerator.ValueConverter.getElementValue(
+                    element.getAsJsonPrimitive(), elementType));
+            } else {
+                code.append("// Warning: Unhandled element type in collection: ").append(element).append("\n");
+                emitElement(current, "null");
+            }
+        }
+        
+        private void emitElement(int elementIndex, String value) {
+            if (immutableFactory != null) {
+                immutableValues.add(value);
+            } else if (fieldType.isArray()) {
+                code.append(collectionVarName).append("[").append(elementIndex).append("] = ")
+                    .append(value).append(";\n");
+            } else {
+                JsonToObjectGenerator.CollectionHandler.addElement(fieldType, collectionVarName, value, code);
+            }
+        }
+    }
+    
+    /**
+     * Generates a map field: declaration, then one entry per step
+     */
+    private final class MapFrame implements Frame {
+        private ClassPlan.FieldPlan field;
+        private Iterator<Map.Entry<String, JsonElement>> entries;
+        private String mapVarName;
+        private Class<?> keyType;
+        private Class<?> valueType;
+        private int depth;
+        private String pendingKey;
+        private String pendingValueVar;
+        
+        void init(ClassPlan.FieldPlan field, JsonObject jsonObject, String mapVarName, int depth) {
+            this.field = field;
+            this.entries = jsonObject.entrySet().iterator();
+            this.mapVarName = mapVarName;
+            this.keyType = field.getKeyType();
+            this.valueType = field.getValueType();
+            this.depth = depth;
+            this.pendingKey = null;
+            this.pendingValueVar = null;
+            
+            code.append(field.getDeclaredTypeName()).append("<")
+                .append(keyType != null ? keyType.getSimpleName() : "String").append(", ")
+                .append(valueType != null ? valueType.getSimpleName() : "Object").append("> ")
+                .append(mapVarName).append(" = ")
+                .append(JsonToObjectGenerator.CollectionHandler.getMapConstructorExpression(field.getType(), keyType))
+                .append(";\n");
+        }
+        
+        @Override
+        public void step() {
+            if (pendingValueVar != null) {
+                JsonToObjectGenerator.CollectionHandler.putEntry(mapVarName, pendingKey, pendingValueVar, code);
+                pendingKey = null;
+                pendingValueVar = null;
+            }
+            
+            while (entries.hasNext()) {
+                Map.Entry<String, JsonElement> entry = entries.next();
+                String key = JsonToObjectGenerator.ValueConverter.getKeyValue(entry.getKey(), keyType);
+                JsonElement value = entry.getValue();
+                
+                if (value.isJsonObject() && JsonToObjectGenerator.TypeAnalyzer.isModelType(valueType)) {
+                    ClassPlan valuePlan = ClassPlan.of(valueType);
+                    pendingKey = key;
+                    pendingValueVar = uniqueName(valuePlan.getVariableBaseName());
+                    pushObject(valuePlan, value.getAsJsonObject(), pendingValueVar, depth + 1);
+                    return;
+                }
+                if (value.isJsonPrimitive() || value.isJsonNull()) {
+                    JsonToObjectGenerator.CollectionHandler.putEntry(mapVarName, key,
+                        JsonToObjectGenerator.ValueConverter.getMapValue(value, valueType), code);
+                } else {
+                    code.append("// Warning: Unhandled value type in map: ").append(value).append("\n");
+                }
+                budget.checkpoint(code.length());
+            }
+            
+            stack.pop();
+            code.append("\n");
+            field = null;
+            entries = null;
+            mapFramePool.push(this);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.*;
+
+/**
+ * Minimal JSON path selector
+ * 
+ * Supports the subset needed to address subtrees of a document:
+ * - $                 the root
+ * - .name / ['name']  object member; a quoted name may contain any character, with
+ *                     a backslash escaping the quote
+ * - [3]               array element
+ * - [*] / .*          any member or element
+ * 
+ * Example: $.departments[3].employees
+ */
+public final class JsonPathSelector {
+    
+    private static final int ANY_INDEX = -1;
+    
+    private final String expression;
+    private final List<Segment> segments;
+    
+    private JsonPathSelector(String expression, List<Segment> segments) {
+        this.expression = expression;
+        this.segments = segments;
+    }
+    
+    /**
+     * Parse a selector expression
+     * 
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    public static JsonPathSelector parse(String expression) {
+        String path = expression.trim();
+        if (!path.startsWith("$")) {
+            throw new IllegalArgumentException("JSON path must start with '$': " + expression);
+        }
+        
+        List<Segment> segments = new ArrayList<>();
+        int pos = 1;
+        while (pos < path.length()) {
+            char c = path.charAt(pos);
+            if (c == '.') {
+                int end = pos + 1;
+                while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+                    end++;
+                }
+                String name = path.substring(pos + 1, end);
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("Empty member name at " + pos + ": " + expression);
+                }
+                segments.add(name.equals("*") ? Segment.wildcard() : Segment.member(name));
+                pos = end;
+            } else if (c == '[') {
+                int start = skipSpaces(path, pos + 1);
+                if (start < path.length() && (path.charAt(start) == '\'' || path.charAt(start) == '"')) {
+                    pos = parseQuotedMember(path, start, segments, expression);
+                    continue;
+                }
+                int end = path.indexOf(']', pos);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed '[' at " + pos + ": " + expression);
+                }
+                String token = path.substring(pos + 1, end).trim();
+                if (token.equals("*")) {
+                    segments.add(Segment.wildcard());
+                } else {
+                    try {
+                        segments.add(Segment.index(Integer.parseInt(token)));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid index '" + token + "': " + expression);
+                    }
+                }
+                pos = end + 1;
+            } else {
+                throw new IllegalArgumentException("Unexpected '" + c + "' at " + pos + ": " + expression);
+            }
+        }
+        return new JsonPathSelector(expression, Collections.unmodifiableList(segments));
+    }
+    
+    /**
+     * ['name'] or ["name"]: the name runs to the matching quote (a backslash escapes the next
+     * character), so it may contain ']' or '.'; only spaces may follow before the ']'
+     * 
+     * @return position just past the ']'
+     */
+    private static int parseQuotedMember(String path, int quote, List<Segment> segments, String expression) {
+        char delimiter = path.charAt(quote);
+        StringBuilder name = new StringBuilder();
+        int pos = quote + 1;
+        while (pos < path.length() && path.charAt(pos) != delimiter) {
+            if (path.charAt(pos) == '\\' && pos + 1 < path.length()) {
+                pos++;
+            }
+            name.append(path.charAt(pos++));
+        }
+        if (pos == path.length()) {
+            throw new IllegalArgumentException("Unterminated quoted name at " + quote + ": " + expression);
+        }
+        int end = skipSpaces(path, pos + 1);
+        if (end == path.length() || path.charAt(end) != ']') {
+            throw new IllegalArgumentException("Expected ']' after quoted name at " + end + ": " + expression);
+        }
+        segments.add(Segment.member(name.toString()));
+        return end + 1;
+    }
+    
+    private static int skipSpaces(String path, int pos) {
+        while (pos < path.length() && path.charAt(pos) == ' ') {
+            pos++;
+        }
+        return pos;
+    }
+    
+    public String getExpression() {
+        return expression;
+    }
+    
+    public int length() {
+        return segments.size();
+    }
+    
+    /**
+     * Whether segment {@code depth} matches the given object member name
+     */
+    boolean matchesMember(int depth, String name) {
+        Segment segment = segments.get(depth);
+        return segment.wildcard || (segment.name != null && segment.name.equals(name));
+    }
+    
+    /**
+     * Whether segment {@code depth} matches the given array index
+     */
+    boolean matchesIndex(int depth, int index) {
+        Segment segment = segments.get(depth);
+        return segment.wildcard || (segment.name == null && segment.index == index);
+    }
+    
+    @Override
+    public String toString() {
+        return expression;
+    }
+    
+    private static final class Segment {
+        private final String name;
+        private final int index;
+        private final boolean wildcard;
+        
+        private Segment(String name, int index, boolean wildcard) {
+            this.name = name;
+            this.index = index;
+            this.wildcard = wildcard;
+        }
+        
+        static Segment member(String name) {
+            return new Segment(name, ANY_INDEX, false);
+        }
+        
+        static Segment index(int index) {
+            if (index < 0) {
+                throw new IllegalArgumentException("Negative array index: " + index);
+            }
+            return new Segment(null, index, false);
+        }
+        
+        static Segment wildcard() {
+            return new Segment(null, ANY_INDEX, true);
+        }
+    }
+}
@@ -3,9 +3,14 @@ import java.lang.reflect.ParameterizedType;
 import java.util.*;
 import java.util.concurrent.*;
 import com.google.gson.*;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 
 /**
  * Enhanced JSON to Java Object Code Generator
@@ -25,14 +30,13 @@ public class JsonToObjectGenerator {
     
     private static final String DEFAULT_ELEMENT_TYPE = "Object";
     private static final String ARRAY_SUFFIX = "Collection";
+    private static final String MAP_SUFFIX = "Map";
     private static final Map<Class<?>, String> COLLECTION_IMPLEMENTATIONS = initCollectionImplementations();
+    private static final Map<Class<?>, String> MAP_IMPLEMENTATIONS = initMapImplementations();
     private static final Map<Class<?>, String> COLLECTION_INTERFACES = initCollectionInterfaces();
-    
-    // ========================================================================================
-    // STATE MANAGEMENT
-    // ========================================================================================
-    
-    private static Set<String> usedVariableNames = new HashSet<>();
+    private static final Map<Class<?>, String> RESOLVED_IMPLEMENTATIONS = new ConcurrentHashMap<>();
+    private static final Gson GSON = new Gson();
+    private static final int XML_FLUSH_CHARS = 1 << 16;
     
     // ========================================================================================
     // PUBLIC API
@@ -46,14 +50,64 @@ public class JsonToObjectGenerator {
      * @return Generated Java code as string
      */
     public static String generateObjectCode(Class<?> clazz, String json) {
+        return generateObjectCode(clazz, json, CollectionStrategy.DEFAULT);
+    }
+    
+    /**
+     * Generates object creation code on the iterative work-stack engine. Output is identical
+     * to the recursive engine, but nesting depth is limited only by the heap (and
+     * {@link GenerationOptions#maxDepth(int)}), not by the thread stack.
+     * 
+     * @param clazz Target class to generate code for
+     * @param json JSON string to parse
+     * @param options Engine and emission options
+     * @return Generated Java code as string
+     */
+    public static String generateObjectCode(Class<?> clazz, String json, GenerationOptions options) {
+        return toCode(generate(clazz, json, options));
+    }
+    
+    /**
+     * Like generateObjectCode(Class, String, GenerationOptions), but reports how the run ended
+     * instead of folding failures into the returned string. Runs that exceed the options'
+     * {@link GenerationLimits}, are cancelled through their {@link CancellationToken} or have
+     * their thread interrupted stop at the engine's next check.
+     * 
+     * @param clazz Target class to generate code for
+     * @param json JSON string to parse
+     * @param options Engine, emission and limit options
+     * @return Code on completion, otherwise the limit, cancellation or error that stopped the run
+     */
+    public static GenerationResult generate(Class<?> clazz, String json, GenerationOptions options) {
+        IterativeCodeGenerator generator = options.isLowAllocation()
+            ? IterativeCodeGenerator.forCurrentThread(options) : new IterativeCodeGenerator(options);
+        GenerationBudget budget = generator.getBudget();
+        try {
+            generator.appendObject(clazz, parseJson(json));
+            return GenerationResult.completed(generator.getTrimmedCode(), budget.getNodes(), budget.getElapsedNanos());
+        } catch (Exception e) {
+            return toResult(e, budget);
+        }
+    }
+    
+    /**
+     * Generates object creation code using the given collection construction strategy
+     * 
+     * @param clazz Target class to generate code for
+     * @param json JSON string to parse
+     * @param strategy How collections are constructed (default, presized or immutable)
+     * @return Generated Java code as string
+     */
+    public static String generateObjectCode(Class<?> clazz, String json, CollectionStrategy strategy) {
         try {
             JsonObject jsonObject = parseJson(json);
             StringBuilder code = new StringBuilder();
             
-            resetState();
-            String variableName = VariableNameManager.generateUnique(clazz.getSimpleName().toLowerCase());
+            // One generator per call: strategy and variable names are never shared between callers
+            CodeGenerator generator = new CodeGenerator(strategy);
+            String variableName = generator.allocateName(clazz.getSimpleName().toLowerCase());
             
-            CodeGenerator.generateRecursive(clazz, jsonObject, variableName, code, new HashSet<>());
+            generator.generateRecursive(clazz, jsonObject, variableName, code, new HashSet<>());
             
             return code.toString().trim();
         } catch (Exception e) {
@@ -61,6 +115,266 @@ public class JsonToObjectGenerator {
         }
     }
     
+    /**
+     * Generates object creation code straight from UTF-8 bytes. Field names are matched
+     * against the class plan without creating key strings, and no JSON tree is built.
+     * 
+     * @param clazz Target class to generate code for
+     * @param json UTF-8 encoded JSON document
+     * @param options Engine and emission options
+     * @return Generated Java code as string
+     */
+    public static String generateObjectCode(Class<?> clazz, byte[] json, GenerationOptions options) {
+        return generateObjectCode(clazz, ByteBuffer.wrap(json), options);
+    }
+    
+    /**
+     * Byte-level generation over a buffer's remaining bytes (heap buffers are read in place)
+     */
+    public static String generateObjectCode(Class<?> clazz, ByteBuffer json, GenerationOptions options) {
+        return toCode(generate(clazz, json, options));
+    }
+    
+    public static GenerationResult generate(Class<?> clazz, byte[] json, GenerationOptions options) {
+        return generate(clazz, ByteBuffer.wrap(json), options);
+    }
+    
+    /**
+     * Byte-level generation reporting how the run ended (see generate(Class, String, GenerationOptions))
+     */
+    public static GenerationResult generate(Class<?> clazz, ByteBuffer json, GenerationOptions options) {
+        GenerationBudget budget = null;
+        try {
+            ByteJsonTokenizer tokenizer = options.isStructuralIndex()
+                ? ByteJsonTokenizer.indexed(json) : ByteJsonTokenizer.of(json);
+            StreamingCodeGenerator generator = new StreamingCodeGenerator(tokenizer, options);
+            budget = generator.getBudget();
+            String code = generator.generate(clazz).trim();
+            return GenerationResult.completed(code, budget.getNodes(), budget.getElapsedNanos());
+        } catch (Exception e) {
+            return budget != null ? toResult(e, budget) : GenerationResult.failed(e, 0, 0);
+        }
+    }
+    
+    /**
+     * Pipelined generation for one large document: the input is tokenized on a reader
+     * thread and the code written on a writer thread while this thread generates it, with
+     * bounded queues in between. Output matches generateObjectCode(Class, byte[], GenerationOptions).
+     * 
+     * @param clazz Target class to generate code for
+     * @param json UTF-8 encoded JSON document
+     * @param out Destination for the generated code
+     * @param options Engine, emission and limit options
+     * @throws IOException if reading, parsing or writing fails
+     */
+    public static void generateObjectCode(Class<?> clazz, InputStream json, Writer out,
+                                          GenerationOptions options) throws IOException {
+        PipelinedCodeGenerator.generate(clazz, json, out, options);
+    }
+    
+    /**
+     * Generates code for a JSON file that may be gzip-compressed or a zip bundle of JSON
+     * documents (detected from its content). Input is inflated as the parser reads it, never
+     * staged; generation runs on the pipelined engine. Each entry of a zip bundle is generated
+     * on its own, preceded by a comment naming it.
+     * 
+     * @param clazz Target class to generate code for
+     * @param file Plain, .gz or .zip JSON file
+     * @param out Destination for the generated code
+     * @param options Engine, emission and limit options
+     * @throws IOException if reading or parsing fails; for a bundle the message names the entry
+     */
+    public static void generateObjectCode(Class<?> clazz, Path file, Writer out,
+                                          GenerationOptions options) throws IOException {
+        boolean bundle = CompressedJsonInput.detect(file) == CompressedJsonInput.Format.ZIP;
+        CompressedJsonInput.forEachDocument(file, (name, json) -> {
+            if (!bundle) {
+                PipelinedCodeGenerator.generate(clazz, json, out, options);
+                return;
+            }
+            out.write("// " + name + "\n");
+            try {
+                PipelinedCodeGenerator.generate(clazz, json, out, options);
+            } catch (IOException | RuntimeException e) {
+                throw new IOException(file.getFileName() + "!" + name + ": " + e.getMessage(), e);
+            }
+            out.write("\n\n");
+        });
+        out.flush();
+    }
+    
+    /**
+     * Generates object creation code from an XML document instead of JSON. The document is
+     * read with a StAX pull parser and fed to the same streaming engine and field plans as
+     * JSON: attributes and child elements map onto fields, wrapper or repeated elements onto
+     * collections (see XmlTokenSource for the mapping).
+     * 
+     * @param clazz Target class of the document element
+     * @param xml XML document
+     * @param options Engine, emission and limit options
+     * @return Generated Java code as string
+     */
+    public static String generateXmlObjectCode(Class<?> clazz, Reader xml, GenerationOptions options) {
+        return toCode(generateFromXml(clazz, xml, options));
+    }
+    
+    /**
+     * XML generation reporting how the run ended (see generate(Class, String, GenerationOptions))
+     */
+    public static GenerationResult generateFromXml(Class<?> clazz, Reader xml, GenerationOptions options) {
+        GenerationBudget budget = null;
+        try {
+            StreamingCodeGenerator generator = new StreamingCodeGenerator(XmlTokenSource.of(xml), options);
+            budget = generator.getBudget();
+            String code = generator.generate(clazz).trim();
+            return GenerationResult.completed(code, budget.getNodes(), budget.getElapsedNanos());
+        } catch (Exception e) {
+            return budget != null ? toResult(e, budget) : GenerationResult.failed(e, 0, 0);
+        }
+    }
+    
+    /**
+     * Streaming XML generation for large exports: code is written to {@code out} as it is
+     * produced, so neither the document nor the output is held in memory. Combine with
+     * {@link GenerationOptions#parentFirst(boolean)} to keep even collections from buffering.
+     * 
+     * @param clazz Target class of the document element
+     * @param xml XML document; the encoding is taken from its declaration
+     * @param out Destination for the generated code
+     * @param options Engine, emission and limit options
+     * @throws IOException if reading, parsing or writing fails
+     */
+    public static void generateXmlObjectCode(Class<?> clazz, InputStream xml, Writer out,
+                                             GenerationOptions options) throws IOException {
+        StringBuilder heldWhitespace = new StringBuilder();
+        try {
+            new StreamingCodeGenerator(XmlTokenSource.of(xml), options).generate(clazz, fragment -> {
+                // Output is trimmed like the other entry points: trailing whitespace waits for more code
+                int end = fragment.length();
+                while (end > 0 && fragment.charAt(end - 1) <= ' ') end--;
+                try {
+                    if (end > 0) {
+                        out.append(heldWhitespace).append(fragment, 0, end);
+                        heldWhitespace.setLength(0);
+                    }
+                    heldWhitespace.append(fragment, end, fragment.length());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, XML_FLUSH_CHARS);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+    
+    private static GenerationResult toResult(Exception e, GenerationBudget budget) {
+        if (e instanceof GenerationLimitException) {
+            return GenerationResult.limitExceeded((GenerationLimitException) e, budget.getNodes(),
+                                                  budget.getElapsedNanos());
+        }
+        if (e instanceof CancellationException) {
+            return GenerationResult.cancelled(e.getMessage(), budget.getNodes(), budget.getElapsedNanos());
+        }
+        return GenerationResult.failed(e, budget.getNodes(), budget.getElapsedNanos());
+    }
+    
+    private static String toCode(GenerationResult result) {
+        return result.isCompleted() ? result.getCode() : "Error generating code: " + result.getMessage();
+    }
+    
+    /**
+     * Streams generated code as a Flow.Publisher. Fragments are emitted as objects are
+     * finished, and generation only advances while the subscriber has demand.
+     * 
+     * @param clazz Target class to generate code for
+     * @param json JSON string to parse
+     * @param options Engine and emission options
+     * @return Cold publisher; every subscription runs its own generation
+     */
+    public static Flow.Publisher<CharSequence> publishObjectCode(Class<?> clazz, String json,
+                                                                 GenerationOptions options) {
+        return new CodePublisher(clazz, json, options);
+    }
+    
+    /**
+     * Generates code that rebuilds an existing object graph, read straight from the instance
+     * with the same field plans instead of going through JSON. Objects, collections and maps
+     * reached more than once are created once and shared; references back to an object that
+     * is still being built (cycles, parent pointers) are set once it is complete.
+     * 
+     * @param root Root model object
+     * @param options Collection strategy and limits
+     * @return Generated Java code as string
+     */
+    public static String generateInstanceCode(Object root, GenerationOptions options) {
+        return toCode(generateFromInstance(root, options));
+    }
+    
+    /**
+     * Like generateInstanceCode(Object, GenerationOptions), but reports how the run ended
+     */
+    public static GenerationResult generateFromInstance(Object root, GenerationOptions options) {
+        ObjectGraphCodeGenerator generator = new ObjectGraphCodeGenerator(options);
+        GenerationBudget budget = generator.getBudget();
+        try {
+            String code = generator.generate(root);
+            return GenerationResult.completed(code, budget.getNodes(), budget.getElapsedNanos());
+        } catch (Exception e) {
+            return toResult(e, budget);
+        }
+    }
+    
+    /**
+     * Serializes the object graph described by the JSON into a compact binary snapshot
+     * instead of source code. Load it back with {@link SnapshotLoader#load(byte[], Class)}.
+     * 
+     * @param clazz Target class of the root object
+     * @param json JSON string to parse
+     * @return Snapshot bytes
+     * @throws JsonParseException if the JSON is malformed
+     */
+    public static byte[] generateSnapshot(Class<?> clazz, String json) {
+        return generateSnapshot(clazz, json, GenerationOptions.defaults());
+    }
+    
+    /**
+     * Snapshot generation with explicit engine options (only maxDepth applies)
+     */
+    public static byte[] generateSnapshot(Class<?> clazz, String json, GenerationOptions options) {
+        return new SnapshotWriter(options).write(clazz, parseJson(json));
+    }
+    
+    /**
+     * Generates code only for the subtrees addressed by the given JSON path selectors
+     * (e.g. "$.departments[3].employees"). Everything else is skipped while streaming
+     * and never materialized.
+     * 
+     * @param clazz Class of the document root
+     * @param json Reader over the JSON document
+     * @param paths One or more JSON path selectors
+     * @return Generated Java code as string
+     */
+    public static String generateSelectedCode(Class<?> clazz, Reader json, String... paths) {
+        return generateSelectedCode(clazz, json, GenerationOptions.defaults(), paths);
+    }
+    
+    /**
+     * Selective generation with explicit engine options
+     */
+    public static String generateSelectedCode(Class<?> clazz, Reader json, GenerationOptions options, 
+                                              String... paths) {
+        try {
+            List<JsonPathSelector> selectors = new ArrayList<>(paths.length);
+            for (String path : paths) {
+                selectors.add(JsonPathSelector.parse(path));
+            }
+            return SelectiveCodeGenerator.generate(clazz, json, options, selectors).trim();
+        } catch (Exception e) {
+            return "Error generating code: " + e.getMessage();
+        }
+    }
+    
     /**
      * Process JSON file and generate object code with console output
      */
@@ -82,8 +396,12 @@ public class JsonToObjectGenerator {
     // INITIALIZATION AND CONFIGURATION
     // ========================================================================================
     
+    /**
+     * Registration order doubles as the tie-breaker when a type matches two
+     * unrelated interfaces equally well (e.g. a List that is also a Deque)
+     */
     private static Map<Class<?>, String> initCollectionImplementations() {
-        Map<Class<?>, String> implementations = new HashMap<>();
+        Map<Class<?>, String> implementations = new LinkedHashMap<>();
         implementations.put(List.class, "ArrayList");
         implementations.put(Set.class, "HashSet");
         implementations.put(SortedSet.class, "TreeSet");
@@ -92,10 +410,22 @@ public class JsonToObjectGenerator {
         implementations.put(Queue.class, "LinkedList");
         implementations.put(Deque.class, "ArrayDeque");
         implementations.put(BlockingQueue.class, "LinkedBlockingQueue");
+        implementations.put(BlockingDeque.class, "LinkedBlockingDeque");
+        implementations.put(TransferQueue.class, "LinkedTransferQueue");
         implementations.put(Collection.class, "ArrayList");
         return implementations;
     }
     
+    private static Map<Class<?>, String> initMapImplementations() {
+        Map<Class<?>, String> implementations = new LinkedHashMap<>();
+        implementations.put(Map.class, "HashMap");
+        implementations.put(SortedMap.class, "TreeMap");
+        implementations.put(NavigableMap.class, "TreeMap");
+        implementations.put(ConcurrentMap.class, "ConcurrentHashMap");
+        implementations.put(ConcurrentNavigableMap.class, "ConcurrentSkipListMap");
+        return implementations;
+    }
+    
     private static Map<Class<?>, String> initCollectionInterfaces() {
         Map<Class<?>, String> interfaces = new HashMap<>();
         interfaces.put(List.class, "List");
@@ -106,31 +436,90 @@ public class JsonToObjectGenerator {
         return interfaces;
     }
     
-    private static JsonObject parseJson(String json) {
-        return new Gson().fromJson(json, JsonObject.class);
-    }
-    
-    private static void resetState() {
-        usedVariableNames.clear();
+    static JsonObject parseJson(String json) {
+        return GSON.fromJson(json, JsonObject.class);
     }
     
     // ========================================================================================
     // VARIABLE NAME MANAGEMENT
     // ========================================================================================
     
-    private static class VariableNameManager {
+    static class VariableNameManager {
         
-        public static String generateUnique(String baseName) {
-            String candidateName = baseName;
-            int counter = 1;
-            
-            while (usedVariableNames.contains(candidateName)) {
-                candidateName = baseName + counter;
-                counter++;
+        private final Set<String> usedNames = new HashSet<>();
+        private final Map<String, int[]> nextSuffix = new HashMap<>();
+        private final Map<String, int[]> basesPerStem = new HashMap<>();
+        
+        /**
+         * Returns baseName, or baseName1, baseName2, ... - the first one not yet used.
+         * Names are never released, so the suffix search resumes where the previous one
+         * for the same base stopped instead of rescanning from 1.
+         * 
+         * Every baseName + k below a base's counter is taken, so suffixed names are implied
+         * by the counters instead of stored: memory grows with the distinct base names, not
+         * with the number of variables.
+         */
+        String allocate(String baseName) {
+            String stem = stem(baseName);
+            if (!isUsed(baseName, stem, null)) {
+                usedNames.add(baseName);
+                return baseName;
+            }
+            // A mutable counter per base, so allocating a name does not box an Integer
+            int[] counter = nextSuffix.get(baseName);
+            if (counter == null) {
+                counter = new int[] { 1 };
+                nextSuffix.put(baseName, counter);
+                basesPerStem.computeIfAbsent(stem, key -> new int[1])[0]++;
+            }
+            while (true) {
+                String candidateName = baseName + counter[0];
+                boolean taken = isUsed(candidateName, stem, baseName);
+                counter[0]++;
+                if (!taken) {
+                    return candidateName;
+                }
             }
-            
-            usedVariableNames.add(candidateName);
-            return candidateName;
+        }
+        
+        /**
+         * Whether name is stored or implied by a counter. Only bases with the same stem (name
+         * without its trailing digits) can imply it; when the counter producing the name is the
+         * only one, nothing can, and no split of the name has to be looked up.
+         */
+        private boolean isUsed(String name, String stem, String producingBase) {
+            if (usedNames.contains(name)) {
+                return true;
+            }
+            int[] bases = basesPerStem.get(stem);
+            if (bases == null || bases[0] == 1 && producingBase != null) {
+                return false;
+            }
+            // Try every split into base + suffix; suffixes are written without leading zeros
+            for (int split = Math.max(stem.length(), name.length() - 9); split < name.length(); split++) {
+                if (name.charAt(split) == '0') {
+                    continue;
+                }
+                int[] counter = nextSuffix.get(name.substring(0, split));
+                if (counter != null && Integer.parseInt(name, split, name.length(), 10) < counter[0]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private static String stem(String name) {
+            int end = name.length();
+            while (end > 0 && name.charAt(end - 1) >= '0' && name.charAt(end - 1) <= '9') {
+                end--;
+            }
+            return end == name.length() ? name : name.substring(0, end);
+        }
+        
+        void clear() {
+            usedNames.clear();
+            nextSuffix.clear();
+            basesPerStem.clear();
         }
     }
     
@@ -138,12 +527,24 @@ public class JsonToObjectGenerator {
     // TYPE DETECTION AND ANALYSIS
     // ========================================================================================
     
-    private static class TypeAnalyzer {
+    static class TypeAnalyzer {
         
         public static boolean isCollectionType(Class<?> fieldType) {
             return fieldType.isArray() || Collection.class.isAssignableFrom(fieldType);
         }
         
+        public static boolean isMapType(Class<?> fieldType) {
+            return Map.class.isAssignableFrom(fieldType);
+        }
+        
+        /**
+         * Whether a JSON object can be generated as an instance of the type
+         */
+        public static boolean isModelType(Class<?> type) {
+            return type != null && type != Object.class && !type.isEnum() && !isPrimitiveOrString(type) &&
+                   !isCollectionType(type) && !isMapType(type);
+        }
+        
         public static boolean isPrimitiveOrString(Class<?> type) {
             return type.isPrimitive() || 
                    type == String.class || 
@@ -189,19 +590,26 @@ public class JsonToObjectGenerator {
             }
         }
         
-        private static Class<?> extractGenericType(Field field) {
-            if (Collection.class.isAssignableFrom(field.getType()) && 
-                field.getGenericType() instanceof ParameterizedType) {
+        static Class<?> extractGenericType(Field field) {
+            return Collection.class.isAssignableFrom(field.getType()) ? extractTypeArgument(field, 0) : null;
+        }
+        
+        /**
+         * Plain (non-parameterized) type argument at the given position, e.g. 0 for a
+         * map's key type and 1 for its value type, or null if there is none
+         */
+        static Class<?> extractTypeArgument(Field field, int index) {
+            if (field.getGenericType() instanceof ParameterizedType) {
                 ParameterizedType paramType = (ParameterizedType) field.getGenericType();
                 java.lang.reflect.Type[] typeArgs = paramType.getActualTypeArguments();
-                if (typeArgs.length > 0 && typeArgs[0] instanceof Class) {
-                    return (Class<?>) typeArgs[0];
+                if (typeArgs.length > index && typeArgs[index] instanceof Class) {
+                    return (Class<?>) typeArgs[index];
                 }
             }
             return null;
         }
         
-        private static Class<?> inferTypeFromFieldName(String fieldName) {
+        static Class<?> inferTypeFromFieldName(String fieldName) {
             try {
                 if (fieldName.toLowerCase().endsWith("s")) {
                     String singularName = fieldName.substring(0, fieldName.length()-1);
@@ -218,7 +626,7 @@ public class JsonToObjectGenerator {
             return null;
         }
         
-        private static Class<?> inferTypeFromJsonContent(JsonArray jsonArray) {
+        static Class<?> inferTypeFromJsonContent(JsonArray jsonArray) {
             try {
                 if (jsonArray != null && jsonArray.size() > 0) {
                     JsonElement firstElement = jsonArray.get(0);
@@ -240,16 +648,136 @@ public class JsonToObjectGenerator {
     // COLLECTION HANDLING
     // ========================================================================================
     
-    private static class CollectionHandler {
+    static class CollectionHandler {
         
         public static String getImplementation(Class<?> collectionType) {
-            // Check specific types first
-            for (Map.Entry<Class<?>, String> entry : COLLECTION_IMPLEMENTATIONS.entrySet()) {
-                if (entry.getKey().isAssignableFrom(collectionType)) {
-                    return entry.getValue();
+            return RESOLVED_IMPLEMENTATIONS.computeIfAbsent(collectionType, CollectionHandler::resolveImplementation);
+        }
+        
+        /**
+         * Resolve the most specific registered type the collection type is assignable to,
+         * so SortedSet wins over Set regardless of map iteration order
+         */
+        private static String resolveImplementation(Class<?> collectionType) {
+            if (isInstantiable(collectionType)) {
+                return collectionType.getSimpleName();
+            }
+            
+            Map<Class<?>, String> registry = TypeAnalyzer.isMapType(collectionType)
+                ? MAP_IMPLEMENTATIONS : COLLECTION_IMPLEMENTATIONS;
+            Class<?> best = null;
+            for (Class<?> candidate : registry.keySet()) {
+                if (candidate.isAssignableFrom(collectionType) &&
+                    (best == null || best.isAssignableFrom(candidate) && best != candidate)) {
+                    best = candidate;
+                }
+            }
+            if (best != null) {
+                return registry.get(best);
+            }
+            return registry == MAP_IMPLEMENTATIONS ? "HashMap" : "ArrayList"; // Default fallback
+        }
+        
+        /**
+         * Runtime class behind getImplementation, for callers that instantiate collections
+         * instead of emitting source
+         */
+        public static Class<?> getImplementationClass(Class<?> collectionType) {
+            String implementation = getImplementation(collectionType);
+            if (implementation.equals(collectionType.getSimpleName()) && isInstantiable(collectionType)) {
+                return collectionType;
+            }
+            for (String packageName : new String[] { "java.util.", "java.util.concurrent." }) {
+                try {
+                    return Class.forName(packageName + implementation);
+                } catch (ClassNotFoundException e) {
+                    // Try the next package
                 }
             }
-            return "ArrayList"; // Default fallback
+            return ArrayList.class;
+        }
+        
+        private static boolean isInstantiable(Class<?> collectionType) {
+            if (collectionType.isInterface() || java.lang.reflect.Modifier.isAbstract(collectionType.getModifiers())) {
+                return false;
+            }
+            try {
+                return java.lang.reflect.Modifier.isPublic(collectionType.getConstructor().getModifiers());
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+        
+        /**
+         * Constructor arguments for the PRESIZED strategy. LinkedBlockingQueue is left alone:
+         * its int constructor sets a hard bound rather than an initial capacity.
+         */
+        public static String getConstructorArguments(CollectionStrategy strategy, String implementation, int size) {
+            if (strategy != CollectionStrategy.PRESIZED) {
+                return "";
+            }
+            switch (implementation) {
+                case "ArrayList":
+                case "ArrayDeque":
+                    return String.valueOf(size);
+                case "HashSet":
+                case "LinkedHashSet":
+                    // Enough buckets that the default 0.75 load factor never triggers a resize
+                    return String.valueOf((int) Math.ceil(size / 0.75));
+                default:
+                    return "";
+            }
+        }
+        
+        /**
+         * Declaration initializer for a collection: new Impl<>(args), or EnumSet.noneOf(E.class)
+         * for a set of enum constants
+         */
+        public static String getConstructorExpression(CollectionStrategy strategy, Class<?> collectionType,
+                                                      Class<?> elementType, int size) {
+            if (isEnumSet(collectionType, elementType)) {
+                return "EnumSet.noneOf(" + elementType.getSimpleName() + ".class)";
+            }
+            String implementation = getImplementation(collectionType);
+            return "new " + implementation + "<>(" + getConstructorArguments(strategy, implementation, size) + ")";
+        }
+        
+        /**
+         * Whether a Set field holding enum constants can (and should) be an EnumSet
+         */
+        public static boolean isEnumSet(Class<?> collectionType, Class<?> elementType) {
+            return elementType != null && elementType.isEnum() &&
+                   Set.class.isAssignableFrom(collectionType) && collectionType.isAssignableFrom(EnumSet.class);
+        }
+        
+        /**
+         * Declaration initializer for a map: new EnumMap<>(K.class) for enum keys, otherwise the
+         * implementation registered for the declared map type
+         */
+        public static String getMapConstructorExpression(Class<?> mapType, Class<?> keyType) {
+            if (keyType != null && keyType.isEnum() && mapType.isAssignableFrom(EnumMap.class)) {
+                return "new EnumMap<>(" + keyType.getSimpleName() + ".class)";
+            }
+            return "new " + getImplementation(mapType) + "<>()";
+        }
+        
+        /**
+         * Name of the unmodifiable factory (List.of / Set.of) usable for the declared type,
+         * or null when the IMMUTABLE strategy does not apply. Enum sets always become an
+         * EnumSet instead.
+         */
+        public static String getImmutableFactory(CollectionStrategy strategy, Class<?> collectionType,
+                                                 Class<?> elementType) {
+            if (strategy != CollectionStrategy.IMMUTABLE || isEnumSet(collectionType, elementType)) {
+                return null;
+            }
+            if (collectionType == List.class || collectionType == Collection.class) {
+                return "List.of";
+            }
+            if (collectionType == Set.class) {
+                return "Set.of";
+            }
+            return null;
         }
         
         public static String getInterfaceName(Class<?> collectionType) {
@@ -267,16 +795,52 @@ public class JsonToObjectGenerator {
             return "Collection"; // Default fallback
         }
         
+        /**
+         * List.of/Set.of reject nulls, and Set.of rejects duplicates, so only take the immutable
+         * path when every element is known to be distinct and non-null at generation time
+         */
+        public static boolean supportsImmutable(String immutableFactory, JsonArray jsonArray, 
+                                                Class<?> elementType) {
+            boolean isSet = immutableFactory.equals("Set.of");
+            Set<String> literals = new HashSet<>();
+            for (JsonElement element : jsonArray) {
+                if (element.isJsonObject()) {
+                    if (isSet && overridesEquals(elementType)) return false;
+                } else if (element.isJsonPrimitive()) {
+                    if (isSet && !literals.add(ValueConverter.getPrimitiveValue(element.getAsJsonPrimitive()))) {
+                        return false;
+                    }
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private static boolean overridesEquals(Class<?> type) {
+            try {
+                return type.getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+            } catch (NoSuchMethodException e) {
+                return true;
+            }
+        }
+        
         public static void addElement(Class<?> collectionType, String collectionVarName, 
                                     String elementValue, StringBuilder code) {
-            if (Queue.class.isAssignableFrom(collectionType) && 
-                !Deque.class.isAssignableFrom(collectionType)) {
-                // Use offer() for Queue (but not Deque)
-                code.append(collectionVarName).append(".offer(").append(elementValue).append(");\n");
-            } else {
-                // Use add() for List, Set, Deque, and generic Collection
-                code.append(collectionVarName).append(".add(").append(elementValue).append(");\n");
-            }
+            code.append(collectionVarName).append(".").append(getAddMethod(collectionType))
+                .append("(").append(elementValue).append(");\n");
+        }
+        
+        public static void putEntry(String mapVarName, String key, String value, StringBuilder code) {
+            code.append(mapVarName).append(".put(").append(key).append(", ").append(value).append(");\n");
+        }
+        
+        /**
+         * offer() for a Queue (but not a Deque), add() for List, Set, Deque and generic Collection
+         */
+        public static String getAddMethod(Class<?> collectionType) {
+            return Queue.class.isAssignableFrom(collectionType) && !Deque.class.isAssignableFrom(collectionType)
+                ? "offer" : "add";
         }
     }
     
@@ -284,11 +848,23 @@ public class JsonToObjectGenerator {
     // CODE GENERATION ENGINE
     // ========================================================================================
     
-    private static class CodeGenerator {
+    static class CodeGenerator {
+        
+        private final CollectionStrategy strategy;
+        private final VariableNameManager variableNames = new VariableNameManager();
+        private final CollectionCodeGenerator collections = new CollectionCodeGenerator(this);
+        
+        CodeGenerator(CollectionStrategy strategy) {
+            this.strategy = strategy;
+        }
+        
+        String allocateName(String baseName) {
+            return variableNames.allocate(baseName);
+        }
         
-        public static void generateRecursive(Class<?> clazz, JsonObject jsonObject, 
-                                           String variableName, StringBuilder code, 
-                                           Set<String> processedClasses) {
+        public void generateRecursive(Class<?> clazz, JsonObject jsonObject, 
+                                    String variableName, StringBuilder code, 
+                                    Set<String> processedClasses) {
             try {
                 Field[] fields = clazz.getDeclaredFields();
                 Map<String, String> nestedVariables = new HashMap<>();
@@ -307,9 +883,9 @@ public class JsonToObjectGenerator {
             }
         }
         
-        private static void generateNestedElements(Class<?> clazz, JsonObject jsonObject, 
-                                                 Field[] fields, StringBuilder code, 
-                                                 Map<String, String> nestedVariables) {
+        private void generateNestedElements(Class<?> clazz, JsonObject jsonObject, 
+                                          Field[] fields, StringBuilder code, 
+                                          Map<String, String> nestedVariables) {
             for (Field field : fields) {
                 String fieldName = field.getName();
                 Class<?> fieldType = field.getType();
@@ -318,18 +894,33 @@ public class JsonToObjectGenerator {
                 
                 JsonElement jsonElement = jsonObject.get(fieldName);
                 
-                if (handleNestedObject(field, fieldType, jsonElement, code, nestedVariables) ||
+                if (handleMap(field, fieldType, jsonElement, code, nestedVariables) ||
+                    handleNestedObject(field, fieldType, jsonElement, code, nestedVariables) ||
                     handleCollection(field, fieldType, jsonElement, code, nestedVariables)) {
                     // Element handled
                 }
             }
         }
         
-        private static boolean handleNestedObject(Field field, Class<?> fieldType, 
-                                                JsonElement jsonElement, StringBuilder code, 
-                                                Map<String, String> nestedVariables) {
+        private boolean handleMap(Field field, Class<?> fieldType, 
+                                JsonElement jsonElement, StringBuilder code, 
+                                Map<String, String> nestedVariables) {
+            if (TypeAnalyzer.isMapType(fieldType) && jsonElement.isJsonObject()) {
+                String mapVarName = allocateName(field.getName() + MAP_SUFFIX);
+                collections.generateMap(fieldType, jsonElement.getAsJsonObject(), mapVarName, code,
+                                        TypeAnalyzer.extractTypeArgument(field, 0),
+                                        TypeAnalyzer.extractTypeArgument(field, 1));
+                nestedVariables.put(field.getName(), mapVarName);
+                return true;
+            }
+            return false;
+        }
+        
+        private boolean handleNestedObject(Field field, Class<?> fieldType, 
+                                         JsonElement jsonElement, StringBuilder code, 
+                                         Map<String, String> nestedVariables) {
             if (!TypeAnalyzer.isPrimitiveOrString(fieldType) && jsonElement.isJsonObject()) {
-                String nestedVarName = VariableNameManager.generateUnique(
+                String nestedVarName = allocateName(
                     fieldType.getSimpleName().toLowerCase());
                 
                 generateRecursive(fieldType, jsonElement.getAsJsonObject(), 
@@ -341,18 +932,18 @@ public class JsonToObjectGenerator {
             return false;
         }
         
-        private static boolean handleCollection(Field field, Class<?> fieldType, 
-                                              JsonElement jsonElement, StringBuilder code, 
-                                              Map<String, String> nestedVariables) {
+        private boolean handleCollection(Field field, Class<?> fieldType, 
+                                       JsonElement jsonElement, StringBuilder code, 
+                                       Map<String, String> nestedVariables) {
             if (TypeAnalyzer.isCollectionType(fieldType) && jsonElement.isJsonArray()) {
                 JsonArray jsonArray = jsonElement.getAsJsonArray();
-                String collectionVarName = VariableNameManager.generateUnique(
+                String collectionVarName = allocateName(
                     field.getName() + ARRAY_SUFFIX);
                 
                 Class<?> elementType = TypeAnalyzer.getElementType(field, jsonArray);
                 elementType = handleSpecialCases(field.getName(), fieldType, elementType);
                 
-                CollectionCodeGenerator.generate(fieldType, jsonArray, collectionVarName, 
+                collections.generate(fieldType, jsonArray, collectionVarName, 
                                                code, elementType, field);
                 
                 nestedVariables.put(field.getName(), collectionVarName);
@@ -361,7 +952,7 @@ public class JsonToObjectGenerator {
             return false;
         }
         
-        private static Class<?> handleSpecialCases(String fieldName, Class<?> fieldType, 
+        static Class<?> handleSpecialCases(String fieldName, Class<?> fieldType, 
                                                  Class<?> elementType) {
             // Handle specific cases like "employees" field
             if (fieldName.equals("employees") && TypeAnalyzer.isCollectionType(fieldType)) {
@@ -374,10 +965,10 @@ public class JsonToObjectGenerator {
             return elementType;
         }
         
-        private static void createMainObject(Class<?> clazz, JsonObject jsonObject, 
-                                           String variableName, Field[] fields, 
-                                           StringBuilder code, Map<String, String> nestedVariables, 
-                                           Set<String> processedClasses) {
+        private void createMainObject(Class<?> clazz, JsonObject jsonObject, 
+                                    String variableName, Field[] fields, 
+                                    StringBuilder code, Map<String, String> nestedVariables, 
+                                    Set<String> processedClasses) {
             if (processedClasses.contains(variableName)) return;
             
             processedClasses.add(variableName);
@@ -394,9 +985,9 @@ public class JsonToObjectGenerator {
             code.append("\n");
         }
         
-        private static void setFieldValue(Field field, JsonObject jsonObject, 
-                                        String variableName, StringBuilder code, 
-                                        Map<String, String> nestedVariables) {
+        private void setFieldValue(Field field, JsonObject jsonObject, 
+                                 String variableName, StringBuilder code, 
+                                 Map<String, String> nestedVariables) {
             String fieldName = field.getName();
             String setterName = "set" + StringUtils.capitalize(fieldName);
             
@@ -425,9 +1016,15 @@ public class JsonToObjectGenerator {
     
     private static class CollectionCodeGenerator {
         
-        public static void generate(Class<?> fieldType, JsonArray jsonArray, 
-                                  String collectionVarName, StringBuilder code, 
-                                  Class<?> elementType, Field originalField) {
+        private final CodeGenerator generator;
+        
+        CollectionCodeGenerator(CodeGenerator generator) {
+            this.generator = generator;
+        }
+        
+        public void generate(Class<?> fieldType, JsonArray jsonArray, 
+                           String collectionVarName, StringBuilder code, 
+                           Class<?> elementType, Field originalField) {
             try {
                 if (fieldType.isArray()) {
                     generateArrayCode(fieldType, jsonArray, collectionVarName, code, elementType);
@@ -441,9 +1038,9 @@ public class JsonToObjectGenerator {
             }
         }
         
-        private static void generateArrayCode(Class<?> fieldType, JsonArray jsonArray, 
-                                            String arrayVarName, StringBuilder code, 
-                                            Class<?> elementType) {
+        private void generateArrayCode(Class<?> fieldType, JsonArray jsonArray, 
+                                     String arrayVarName, StringBuilder code, 
+                                     Class<?> elementType) {
             String elementTypeName = fieldType.getComponentType().getSimpleName();
             code.append(elementTypeName).append("[] ").append(arrayVarName)
                 .append(" = new ").append(elementTypeName).append("[")
@@ -455,12 +1052,12 @@ public class JsonToObjectGenerator {
             }
         }
         
-        private static void processArrayElement(Class<?> fieldType, JsonElement element, 
-                                              String arrayVarName, int index, StringBuilder code) {
+        private void processArrayElement(Class<?> fieldType, JsonElement element, 
+                                       String arrayVarName, int index, StringBuilder code) {
             if (element.isJsonObject() && !TypeAnalyzer.isPrimitiveOrString(fieldType.getComponentType())) {
-                String elementVarName = VariableNameManager.generateUnique(
+                String elementVarName = generator.allocateName(
                     fieldType.getComponentType().getSimpleName().toLowerCase());
-                CodeGenerator.generateRecursive(fieldType.getComponentType(), 
+                generator.generateRecursive(fieldType.getComponentType(), 
                                               element.getAsJsonObject(), elementVarName, code, new HashSet<>());
                 code.append(arrayVarName).append("[").append(index).append("] = ")
                     .append(elementVarName).append(";\n");
@@ -471,18 +1068,27 @@ public class JsonToObjectGenerator {
             }
         }
         
-        private static void generateCollectionCode(Class<?> fieldType, JsonArray jsonArray, 
-                                                 String collectionVarName, StringBuilder code, 
-                                                 Class<?> elementType, Field originalField) {
+        private void generateCollectionCode(Class<?> fieldType, JsonArray jsonArray, 
+                                          String collectionVarName, StringBuilder code, 
+                                          Class<?> elementType, Field originalField) {
             String elementTypeName = elementType != null ? elementType.getSimpleName() : DEFAULT_ELEMENT_TYPE;
-            String implementation = CollectionHandler.getImplementation(fieldType);
             
             // Use the original field type name instead of generic interface name
             String fieldTypeName = getOriginalFieldTypeName(originalField, fieldType);
             
+            String immutableFactory = CollectionHandler.getImmutableFactory(generator.strategy, fieldType, elementType);
+            if (immutableFactory != null && CollectionHandler.supportsImmutable(immutableFactory, jsonArray, elementType)) {
+                generateImmutableCollectionCode(immutableFactory, fieldTypeName, elementTypeName, 
+                                                jsonArray, collectionVarName, code, elementType);
+                return;
+            }
+            
             // Create collection declaration with original field type
             code.append(fieldTypeName).append("<").append(elementTypeName).append("> ")
-                .append(collectionVarName).append(" = new ").append(implementation).append("<>();\n");
+                .append(collectionVarName).append(" = ")
+                .append(CollectionHandler.getConstructorExpression(generator.strategy, fieldType, 
+                                                                  elementType, jsonArray.size()))
+                .append(";\n");
             
             // Process each element
             for (JsonElement element : jsonArray) {
@@ -490,6 +1096,58 @@ public class JsonToObjectGenerator {
             }
         }
         
+        private void generateImmutableCollectionCode(String immutableFactory, String fieldTypeName, 
+                                                   String elementTypeName, JsonArray jsonArray, 
+                                                   String collectionVarName, StringBuilder code, 
+                                                   Class<?> elementType) {
+            // Elements have to exist before the factory call, so nested objects come first
+            List<String> elementValues = new ArrayList<>(jsonArray.size());
+            for (JsonElement element : jsonArray) {
+                if (element.isJsonObject()) {
+                    String elementVarName = generator.allocateName(
+                        elementType.getSimpleName().toLowerCase());
+                    generator.generateRecursive(elementType, element.getAsJsonObject(), 
+                                                  elementVarName, code, new HashSet<>());
+                    elementValues.add(elementVarName);
+                } else {
+                    elementValues.add(ValueConverter.getElementValue(element.getAsJsonPrimitive(), elementType));
+                }
+            }
+            
+            code.append(fieldTypeName).append("<").append(elementTypeName).append("> ")
+                .append(collectionVarName).append(" = ").append(immutableFactory).append("(")
+                .append(String.join(", ", elementValues)).append(");\n");
+        }
+        
+        /**
+         * Map field from a JSON object: declaration, then one put per member. Keys are
+         * converted to the declared key type; object values become nested objects first.
+         */
+        public void generateMap(Class<?> fieldType, JsonObject jsonObject, String mapVarName, 
+                              StringBuilder code, Class<?> keyType, Class<?> valueType) {
+            code.append(fieldType.getSimpleName()).append("<")
+                .append(keyType != null ? keyType.getSimpleName() : "String").append(", ")
+                .append(valueType != null ? valueType.getSimpleName() : DEFAULT_ELEMENT_TYPE).append("> ")
+                .append(mapVarName).append(" = ")
+                .append(CollectionHandler.getMapConstructorExpression(fieldType, keyType)).append(";\n");
+            
+            for (Map.Entry<String, JsonElement> entry : jsonObject.entrySet()) {
+                String key = ValueConverter.getKeyValue(entry.getKey(), keyType);
+                JsonElement value = entry.getValue();
+                if (value.isJsonObject() && TypeAnalyzer.isModelType(valueType)) {
+                    String valueVarName = generator.allocateName(valueType.getSimpleName().toLowerCase());
+                    generator.generateRecursive(valueType, value.getAsJsonObject(), 
+                                                  valueVarName, code, new HashSet<>());
+                    CollectionHandler.putEntry(mapVarName, key, valueVarName, code);
+                } else if (value.isJsonPrimitive() || value.isJsonNull()) {
+                    CollectionHandler.putEntry(mapVarName, key, ValueConverter.getMapValue(value, valueType), code);
+                } else {
+                    code.append("// Warning: Unhandled value type in map: ").append(value).append("\n");
+                }
+            }
+            code.append("\n");
+        }
+        
         private static String getOriginalFieldTypeName(Field originalField, Class<?> fieldType) {
             if (originalField != null) {
                 // Get the actual declared type from the field
@@ -500,19 +1158,19 @@ public class JsonToObjectGenerator {
             return CollectionHandler.getInterfaceName(fieldType);
         }
         
-        private static void processCollectionElement(Class<?> fieldType, JsonElement element, 
-                                                   String collectionVarName, StringBuilder code, 
-                                                   Class<?> elementType) {
+        private void processCollectionElement(Class<?> fieldType, JsonElement element, 
+                                            String collectionVarName, StringBuilder code, 
+                                            Class<?> elementType) {
             if (element.isJsonObject() && elementType != null) {
                 // Create nested object recursively
-                String elementVarName = VariableNameManager.generateUnique(
+                String elementVarName = generator.allocateName(
                     elementType.getSimpleName().toLowerCase());
-                CodeGenerator.generateRecursive(elementType, element.getAsJsonObject(), 
+                generator.generateRecursive(elementType, element.getAsJsonObject(), 
                                               elementVarName, code, new HashSet<>());
                 CollectionHandler.addElement(fieldType, collectionVarName, elementVarName, code);
             } else if (element.isJsonPrimitive()) {
                 // Handle primitive values
-                String value = ValueConverter.getPrimitiveValue(element.getAsJsonPrimitive());
+                String value = ValueConverter.getElementValue(element.getAsJsonPrimitive(), elementType);
                 CollectionHandler.addElement(fieldType, collectionVarName, value, code);
             } else {
                 // Handle null or unexpected element type
@@ -522,62 +1180,213 @@ public class JsonToObjectGenerator {
         }
     }
     
+    // ========================================================================================
+    // ENUM HANDLING
+    // ========================================================================================
+    
+    static class EnumHandler {
+        
+        private static final Map<Class<?>, Map<String, Enum<?>>> CONSTANTS = new ConcurrentHashMap<>();
+        
+        /**
+         * Constant for a JSON name, or null if the enum has none. Exact names win; otherwise
+         * the name is matched upper-cased with '-' and ' ' read as '_', so "in-progress"
+         * finds IN_PROGRESS. The index is built once per enum class.
+         */
+        public static Enum<?> lookup(Class<?> enumType, String name) {
+            Map<String, Enum<?>> constants = CONSTANTS.computeIfAbsent(enumType, EnumHandler::index);
+            Enum<?> constant = constants.get(name);
+            return constant != null ? constant : constants.get(normalize(name));
+        }
+        
+        /**
+         * Constant at a JSON ordinal, or null if out of range
+         */
+        public static Enum<?> byOrdinal(Class<?> enumType, int ordinal) {
+            Object[] constants = enumType.getEnumConstants();
+            return ordinal >= 0 && ordinal < constants.length ? (Enum<?>) constants[ordinal] : null;
+        }
+        
+        private static Map<String, Enum<?>> index(Class<?> enumType) {
+            Object[] values = enumType.getEnumConstants();
+            Map<String, Enum<?>> index = new HashMap<>();
+            for (Object value : values) {
+                Enum<?> constant = (Enum<?>) value;
+                index.put(constant.name(), constant);
+            }
+            for (Object value : values) {
+                Enum<?> constant = (Enum<?>) value;
+                index.putIfAbsent(normalize(constant.name()), constant);
+            }
+            return index;
+        }
+        
+        private static String normalize(String name) {
+            return name.trim().toUpperCase(Locale.ROOT).replace('-', '_').replace(' ', '_');
+        }
+    }
+    
     // ========================================================================================
     // VALUE CONVERSION UTILITIES
     // ========================================================================================
     
-    private static class ValueConverter {
+    static class ValueConverter {
         
         public static String getValueAsString(JsonElement element, Class<?> type) {
+            StringBuilder value = new StringBuilder();
+            appendValue(value, element, type);
+            return value.toString();
+        }
+        
+        /**
+         * Same output as getValueAsString, appended without intermediate strings
+         */
+        public static void appendValue(StringBuilder out, JsonElement element, Class<?> type) {
             if (element.isJsonPrimitive()) {
                 JsonPrimitive primitive = element.getAsJsonPrimitive();
                 
                 if (type == String.class && primitive.isString()) {
-                    return "\"" + escapeString(primitive.getAsString()) + "\"";
+                    appendEscaped(out.append('"'), primitive.getAsString()).append('"');
+                    return;
                 } else if ((type == int.class || type == Integer.class) && primitive.isNumber()) {
-                    return String.valueOf(primitive.getAsInt());
+                    out.append(primitive.getAsInt());
+                    return;
                 } else if ((type == long.class || type == Long.class) && primitive.isNumber()) {
-                    return primitive.getAsLong() + "L";
+                    out.append(primitive.getAsLong()).append('L');
+                    return;
                 } else if ((type == double.class || type == Double.class) && primitive.isNumber()) {
-                    return String.valueOf(primitive.getAsDouble());
+                    out.append(primitive.getAsDouble());
+                    return;
                 } else if ((type == float.class || type == Float.class) && primitive.isNumber()) {
-                    return primitive.getAsFloat() + "f";
+                    out.append(primitive.getAsFloat()).append('f');
+                    return;
                 } else if ((type == boolean.class || type == Boolean.class) && primitive.isBoolean()) {
-                    return String.valueOf(primitive.getAsBoolean());
+                    out.append(primitive.getAsBoolean());
+                    return;
                 } else if ((type == char.class || type == Character.class) && primitive.isString()) {
-                    return "'" + escapeChar(primitive.getAsString().charAt(0)) + "'";
+                    out.append('\'').append(escapeChar(primitive.getAsString().charAt(0))).append('\'');
+                    return;
                 } else if ((type == byte.class || type == Byte.class) && primitive.isNumber()) {
-                    return "(byte)" + primitive.getAsByte();
+                    out.append("(byte)").append(primitive.getAsByte());
+                    return;
                 } else if ((type == short.class || type == Short.class) && primitive.isNumber()) {
-                    return "(short)" + primitive.getAsShort();
+                    out.append("(short)").append(primitive.getAsShort());
+                    return;
+                } else if (type.isEnum() && (primitive.isString() || primitive.isNumber())) {
+                    appendEnumConstant(out, type, primitive);
+                    return;
                 }
             }
-            return escapeString(element.getAsString());
+            appendEscaped(out, element.getAsString());
+        }
+        
+        /**
+         * EnumType.CONSTANT for a constant name (or ordinal). A name the enum does not
+         * declare becomes EnumType.valueOf("name"), which compiles and fails loudly at runtime.
+         */
+        private static void appendEnumConstant(StringBuilder out, Class<?> enumType, JsonPrimitive primitive) {
+            Enum<?> constant = primitive.isString()
+                ? EnumHandler.lookup(enumType, primitive.getAsString())
+                : EnumHandler.byOrdinal(enumType, primitive.getAsInt());
+            out.append(enumType.getSimpleName());
+            if (constant != null) {
+                out.append('.').append(constant.name());
+            } else {
+                appendEscaped(out.append(".valueOf(\""), primitive.getAsString()).append("\")");
+            }
+        }
+        
+        /**
+         * Collection element literal: enum constants for an enum element type, otherwise the
+         * untyped rendering of getPrimitiveValue
+         */
+        public static String getElementValue(JsonPrimitive primitive, Class<?> elementType) {
+            StringBuilder value = new StringBuilder();
+            appendElementValue(value, primitive, elementType);
+            return value.toString();
+        }
+        
+        public static void appendElementValue(StringBuilder out, JsonPrimitive primitive, Class<?> elementType) {
+            if (elementType != null && elementType.isEnum()) {
+                appendValue(out, primitive, elementType);
+            } else {
+                appendPrimitiveValue(out, primitive);
+            }
+        }
+        
+        /**
+         * Map key literal: JSON member names are always strings, so numeric and boolean
+         * keys are parsed before conversion to the declared key type
+         */
+        public static String getKeyValue(String key, Class<?> keyType) {
+            if (keyType == null || keyType == String.class || keyType == Object.class) {
+                return appendEscaped(new StringBuilder().append('"'), key).append('"').toString();
+            }
+            JsonPrimitive primitive = new JsonPrimitive(key);
+            if (keyType == Boolean.class) {
+                primitive = new JsonPrimitive(Boolean.valueOf(key));
+            } else if (Number.class.isAssignableFrom(keyType)) {
+                try {
+                    primitive = new JsonPrimitive(new java.math.BigDecimal(key));
+                } catch (NumberFormatException e) {
+                    // Left as a string; the literal will not compile, as for any other mistyped value
+                }
+            }
+            return getValueAsString(primitive, keyType);
+        }
+        
+        /**
+         * Scalar map value: typed when the declared value type is a scalar or enum, untyped otherwise
+         */
+        public static String getMapValue(JsonElement element, Class<?> valueType) {
+            if (element.isJsonNull()) {
+                return "null";
+            }
+            if (valueType != null && (TypeAnalyzer.isPrimitiveOrString(valueType) || valueType.isEnum())) {
+                return getValueAsString(element, valueType);
+            }
+            return getPrimitiveValue(element.getAsJsonPrimitive());
         }
         
         public static String getPrimitiveValue(JsonPrimitive primitive) {
+            StringBuilder value = new StringBuilder();
+            appendPrimitiveValue(value, primitive);
+            return value.toString();
+        }
+        
+        /**
+         * Same output as getPrimitiveValue, appended without intermediate strings
+         */
+        public static void appendPrimitiveValue(StringBuilder out, JsonPrimitive primitive) {
             if (primitive.isString()) {
-                return "\"" + escapeString(primitive.getAsString()) + "\"";
+                appendEscaped(out.append('"'), primitive.getAsString()).append('"');
             } else if (primitive.isNumber()) {
-                return primitive.getAsNumber().toString();
+                out.append(primitive.getAsNumber());
             } else if (primitive.isBoolean()) {
-                return primitive.getAsBoolean() ? "true" : "false";
+                out.append(primitive.getAsBoolean());
+            } else {
+                out.append("null");
             }
-            return "null";
         }
         
         /**
          * Escape special characters in strings for Java code generation
          */
-        private static String escapeString(String str) {
-            if (str == null) return "";
-            return str.replace("\\", "\\\\")
-                     .replace("\"", "\\\"")
-                     .replace("\n", "\\n")
-                     .replace("\r", "\\r")
-                     .replace("\t", "\\t")
-                     .replace("\b", "\\b")
-                     .replace("\f", "\\f");
+        static StringBuilder appendEscaped(StringBuilder out, String str) {
+            for (int i = 0; i < str.length(); i++) {
+                char c = str.charAt(i);
+                switch (c) {
+                    case '\\': out.append("\\\\"); break;
+                    case '"': out.append("\\\""); break;
+                    case '\n': out.append("\\n"); break;
+                    case '\r': out.append("\\r"); break;
+                    case '\t': out.append("\\t"); break;
+                    case '\b': out.append("\\b"); break;
+                    case '\f': out.append("\\f"); break;
+                    default: out.append(c); break;
+                }
+            }
+            return out;
         }
         
         /**
@@ -601,7 +1410,7 @@ public class JsonToObjectGenerator {
     // UTILITY CLASSES
     // ========================================================================================
     
-    private static class StringUtils {
+    static class StringUtils {
         public static String capitalize(String str) {
             if (str == null || str.isEmpty()) {
                 return str;
@@ -610,9 +1419,12 @@ public class JsonToObjectGenerator {
         }
     }
     
-    private static class FileUtils {
+    static class FileUtils {
+        /**
+         * Read a JSON file, inflating it on the fly if it is gzip-compressed (or a single-entry zip)
+         */
         public static String readJsonFile(String filePath) throws IOException {
-            return new String(Files.readAllBytes(Paths.get(filePath)));
+            return CompressedJsonInput.readDocument(Paths.get(filePath));
         }
     }
     
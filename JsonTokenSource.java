@@ -0,0 +1,75 @@
+import java.io.IOException;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Pull-based token stream consumed by StreamingCodeGenerator
+ * 
+ * Modeled on Gson's JsonReader (peek, then consume or skip), with two additions that
+ * let a source avoid materializing strings: field names are matched straight against
+ * a ClassPlan, and scalar values are captured as opaque handles that are only rendered
+ * into Java literals when the owning object is emitted.
+ */
+interface JsonTokenSource {
+    
+    /**
+     * Upcoming token, without consuming it
+     */
+    JsonToken peek() throws IOException;
+    
+    /**
+     * Consume the peeked token (BEGIN_*, END_*, NAME or a scalar)
+     */
+    void advance() throws IOException;
+    
+    /**
+     * Skip the upcoming value, including everything nested inside it
+     */
+    void skipValue() throws IOException;
+    
+    /**
+     * Index into plan.getFields() of the peeked NAME token, or -1 if the class has no such field
+     */
+    int nameIndex(ClassPlan plan) throws IOException;
+    
+    /**
+     * The peeked NAME token as a string, for members that are map keys rather than fields
+     */
+    String name() throws IOException;
+    
+    /**
+     * Number of elements in the array that starts at the peeked BEGIN_ARRAY, or -1 if the
+     * source cannot tell without consuming it
+     */
+    int countElements() throws IOException;
+    
+    /**
+     * Whether countElements knows array sizes ahead. Sampling modes that need the size
+     * (stride, reservoir) are rejected for sources that do not.
+     */
+    boolean countsElements();
+    
+    /**
+     * Capture the peeked scalar (STRING, NUMBER, BOOLEAN or NULL) so it can be rendered later.
+     * A handle captured inside an object stays valid until the token after the object's
+     * END_OBJECT has been consumed; one captured as an array element only until the element
+     * itself is consumed, so render array elements before advancing past them.
+     */
+    long captureScalar() throws IOException;
+    
+    /**
+     * Whether a captured scalar was JSON null
+     */
+    boolean isNull(long handle);
+    
+    /**
+     * Render a captured scalar as a Java literal for a setter of the given type
+     * (same rules as ValueConverter.getValueAsString)
+     */
+    void appendValue(long handle, Class<?> type, StringBuilder out);
+    
+    /**
+     * Render a captured scalar as an untyped collection element
+     * (same rules as ValueConverter.getPrimitiveValue)
+     */
+    void appendPrimitive(long handle, StringBuilder out);
+}
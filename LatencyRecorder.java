@@ -0,0 +1,61 @@
+import java.util.Arrays;
+
+/**
+ * Thread-safe latency recorder over a sliding window of recent samples
+ * 
+ * Keeps the last WINDOW request durations in a ring buffer plus lifetime totals.
+ * Percentiles are computed on demand from a sorted copy of the window, which is
+ * cheap at this size and keeps the recording path to a few array writes.
+ */
+final class LatencyRecorder {
+    
+    private static final int WINDOW = 8192;
+    
+    private final long[] samples = new long[WINDOW];
+    private long count;
+    private long errors;
+    private long totalNanos;
+    private long maxNanos;
+    
+    synchronized void record(long nanos, boolean success) {
+        samples[(int) (count % WINDOW)] = nanos;
+        count++;
+        if (!success) errors++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+    
+    /**
+     * Render lifetime counters and window percentiles (in microseconds) as a JSON object
+     */
+    String toJson() {
+        long[] window;
+        long snapshotCount;
+        long snapshotErrors;
+        long snapshotTotal;
+        long snapshotMax;
+        synchronized (this) {
+            snapshotCount = count;
+            snapshotErrors = errors;
+            snapshotTotal = totalNanos;
+            snapshotMax = maxNanos;
+            window = Arrays.copyOf(samples, (int) Math.min(count, WINDOW));
+        }
+        Arrays.sort(window);
+        
+        return "{\"count\":" + snapshotCount +
+               ",\"errors\":" + snapshotErrors +
+               ",\"meanMicros\":" + (snapshotCount == 0 ? 0 : snapshotTotal / snapshotCount / 1000) +
+               ",\"p50Micros\":" + percentile(window, 0.50) +
+               ",\"p90Micros\":" + percentile(window, 0.90) +
+               ",\"p99Micros\":" + percentile(window, 0.99) +
+               ",\"p999Micros\":" + percentile(window, 0.999) +
+               ",\"maxMicros\":" + snapshotMax / 1000 + "}";
+    }
+    
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000;
+    }
+}
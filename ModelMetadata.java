@@ -0,0 +1,80 @@
+import java.util.List;
+
+/**
+ * Compile-time description of a model class
+ * 
+ * Implementations are generated by ModelMetadataProcessor and registered under
+ * META-INF/services/ModelMetadata, where ClassPlan finds them through ServiceLoader.
+ */
+public interface ModelMetadata {
+    
+    Class<?> getModelClass();
+    
+    /**
+     * Fields in declaration order
+     */
+    List<Field> getFields();
+    
+    enum Kind {
+        SCALAR,
+        ENUM,
+        OBJECT,
+        COLLECTION,
+        ARRAY,
+        MAP
+    }
+    
+    final class Field {
+        private final String name;
+        private final Kind kind;
+        private final Class<?> type;
+        private final String setterName;
+        private final Class<?> elementType;
+        private final Class<?> keyType;
+        
+        public Field(String name, Kind kind, Class<?> type, String setterName, Class<?> elementType) {
+            this(name, kind, type, setterName, elementType, null);
+        }
+        
+        public Field(String name, Kind kind, Class<?> type, String setterName, Class<?> elementType,
+                     Class<?> keyType) {
+            this.name = name;
+            this.kind = kind;
+            this.type = type;
+            this.setterName = setterName;
+            this.elementType = elementType;
+            this.keyType = keyType;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public Kind getKind() {
+            return kind;
+        }
+        
+        public Class<?> getType() {
+            return type;
+        }
+        
+        public String getSetterName() {
+            return setterName;
+        }
+        
+        /**
+         * Array component type, first generic argument of a collection or value type of a map,
+         * or null if unknown
+         */
+        public Class<?> getElementType() {
+            return elementType;
+        }
+        
+        /**
+         * Key type of a map, or null if unknown or not a map
+         */
+        public Class<?> getKeyType() {
+            return keyType;
+        }
+    }
+}
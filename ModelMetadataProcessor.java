@@ -0,0 +1,218 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor for @GeneratorModel classes
+ * 
+ * For every annotated class it writes a <ClassName>_ModelMetadata source implementing
+ * ModelMetadata, and at the end of processing lists all of them in
+ * META-INF/services/ModelMetadata. Field kinds and element types are derived with the
+ * same rules the reflective ClassPlan uses, so both paths plan a class identically.
+ * 
+ * Usage (processor compiled first, then used for the model classes):
+ *   javac -d out GeneratorModel.java ModelMetadata.java ModelMetadataProcessor.java
+ *   javac -cp out:gson.jar -processorpath out -processor ModelMetadataProcessor -d out *.java
+ */
+@SupportedAnnotationTypes("GeneratorModel")
+public class ModelMetadataProcessor extends AbstractProcessor {
+    
+    private static final String SERVICE_FILE = "META-INF/services/ModelMetadata";
+    private static final String SUFFIX = "_ModelMetadata";
+    private static final Set<String> SCALAR_TYPES = new HashSet<>(Arrays.asList(
+        "java.lang.String", "java.lang.Integer", "java.lang.Long", "java.lang.Double", "java.lang.Float",
+        "java.lang.Boolean", "java.lang.Character", "java.lang.Byte", "java.lang.Short"));
+    
+    private final Set<String> generatedProviders = new TreeSet<>();
+    
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+    
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    error(element, "@GeneratorModel applies to classes only");
+                    continue;
+                }
+                try {
+                    generatedProviders.add(writeMetadata((TypeElement) element));
+                } catch (IOException e) {
+                    error(element, "Could not write model metadata: " + e.getMessage());
+                }
+            }
+        }
+        
+        if (roundEnv.processingOver() && !generatedProviders.isEmpty()) {
+            writeServiceFile();
+        }
+        return true;
+    }
+    
+    // ========================================================================================
+    // SOURCE GENERATION
+    // ========================================================================================
+    
+    private String writeMetadata(TypeElement modelClass) throws IOException {
+        Elements elements = processingEnv.getElementUtils();
+        String packageName = elements.getPackageOf(modelClass).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(modelClass).toString();
+        String simpleBinaryName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+        String metadataName = simpleBinaryName.replace('$', '_') + SUFFIX;
+        String qualifiedMetadataName = packageName.isEmpty() ? metadataName : packageName + "." + metadataName;
+        
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("// Generated by ModelMetadataProcessor - do not edit\n");
+        source.append("public final class ").append(metadataName).append(" implements ModelMetadata {\n\n");
+        source.append("    @Override\n");
+        source.append("    public Class<?> getModelClass() {\n");
+        source.append("        return ").append(modelClass.getQualifiedName()).append(".class;\n");
+        source.append("    }\n\n");
+        source.append("    @Override\n");
+        source.append("    public java.util.List<ModelMetadata.Field> getFields() {\n");
+        source.append("        return java.util.Arrays.asList(");
+        
+        String separator = "\n";
+        for (Element member : modelClass.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.FIELD) continue;
+            source.append(separator).append("            ").append(fieldEntry((VariableElement) member));
+            separator = ",\n";
+        }
+        source.append(");\n");
+        source.append("    }\n");
+        source.append("}\n");
+        
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedMetadataName, modelClass);
+        try (Writer writer = file.openWriter()) {
+            writer.write(source.toString());
+        }
+        return qualifiedMetadataName;
+    }
+    
+    private String fieldEntry(VariableElement field) {
+        TypeMirror type = field.asType();
+        String name = field.getSimpleName().toString();
+        ModelMetadata.Kind kind = kindOf(type);
+        TypeMirror elementType = elementTypeOf(type, kind);
+        TypeMirror keyType = kind == ModelMetadata.Kind.MAP ? typeArgument(type, 0) : null;
+        
+        return "new ModelMetadata.Field(\"" + name + "\", ModelMetadata.Kind." + kind + ", "
+            + classLiteral(type) + ", \"" + setterName(field) + "\", "
+            + (elementType != null ? classLiteral(elementType) : "null")
+            + (keyType != null ? ", " + classLiteral(keyType) : "") + ")";
+    }
+    
+    /**
+     * set + capitalized field name, the same rule as ClassPlan's reflective path, so both
+     * paths call the same setter
+     */
+    private String setterName(VariableElement field) {
+        String name = field.getSimpleName().toString();
+        return "set" + name.substring(0, 1).toUpperCase() + name.substring(1);
+    }
+    
+    // ========================================================================================
+    // TYPE ANALYSIS
+    // ========================================================================================
+    
+    private ModelMetadata.Kind kindOf(TypeMirror type) {
+        Types types = processingEnv.getTypeUtils();
+        if (type.getKind().isPrimitive()) {
+            return ModelMetadata.Kind.SCALAR;
+        }
+        if (type.getKind() == TypeKind.ARRAY) {
+            return ModelMetadata.Kind.ARRAY;
+        }
+        Element element = types.asElement(type);
+        if (element != null && element.getKind() == ElementKind.ENUM) {
+            return ModelMetadata.Kind.ENUM;
+        }
+        if (element instanceof TypeElement &&
+            SCALAR_TYPES.contains(((TypeElement) element).getQualifiedName().toString())) {
+            return ModelMetadata.Kind.SCALAR;
+        }
+        TypeMirror collection = types.erasure(
+            processingEnv.getElementUtils().getTypeElement("java.util.Collection").asType());
+        if (types.isAssignable(types.erasure(type), collection)) {
+            return ModelMetadata.Kind.COLLECTION;
+        }
+        TypeMirror map = types.erasure(
+            processingEnv.getElementUtils().getTypeElement("java.util.Map").asType());
+        if (types.isAssignable(types.erasure(type), map)) {
+            return ModelMetadata.Kind.MAP;
+        }
+        return ModelMetadata.Kind.OBJECT;
+    }
+    
+    /**
+     * Mirrors TypeAnalyzer.extractGenericType: only a plain (non-parameterized) first type
+     * argument counts, anything else is left to the runtime heuristics. For a map the
+     * element type is its value type.
+     */
+    private TypeMirror elementTypeOf(TypeMirror type, ModelMetadata.Kind kind) {
+        if (kind == ModelMetadata.Kind.ARRAY) {
+            return ((ArrayType) type).getComponentType();
+        }
+        if (kind == ModelMetadata.Kind.COLLECTION) {
+            return typeArgument(type, 0);
+        }
+        if (kind == ModelMetadata.Kind.MAP) {
+            return typeArgument(type, 1);
+        }
+        return null;
+    }
+    
+    private TypeMirror typeArgument(TypeMirror type, int index) {
+        if (type.getKind() == TypeKind.DECLARED) {
+            List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+            if (typeArguments.size() > index && typeArguments.get(index).getKind() == TypeKind.DECLARED &&
+                ((DeclaredType) typeArguments.get(index)).getTypeArguments().isEmpty()) {
+                return typeArguments.get(index);
+            }
+        }
+        return null;
+    }
+    
+    private String classLiteral(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString() + ".class";
+    }
+    
+    // ========================================================================================
+    // SERVICE REGISTRATION
+    // ========================================================================================
+    
+    private void writeServiceFile() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer writer = file.openWriter()) {
+                for (String provider : generatedProviders) {
+                    writer.write(provider);
+                    writer.write("\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "Could not write " + SERVICE_FILE + ": " + e.getMessage());
+        }
+    }
+    
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,37 @@
+import java.util.*;
+
+/**
+ * Index of compile-time model metadata
+ * 
+ * Loads every ModelMetadata provider registered through ServiceLoader once, on first
+ * lookup, and keys it by model class. Classes without metadata return null and are
+ * planned through reflection instead.
+ */
+final class ModelMetadataRegistry {
+    
+    private ModelMetadataRegistry() {}
+    
+    /**
+     * Get the generated metadata for a class, or null if it has none
+     */
+    static ModelMetadata lookup(Class<?> modelClass) {
+        return Holder.INDEX.get(modelClass);
+    }
+    
+    private static final class Holder {
+        static final Map<Class<?>, ModelMetadata> INDEX = load();
+        
+        private static Map<Class<?>, ModelMetadata> load() {
+            Map<Class<?>, ModelMetadata> index = new HashMap<>();
+            try {
+                for (ModelMetadata metadata : ServiceLoader.load(ModelMetadata.class)) {
+                    index.put(metadata.getModelClass(), metadata);
+                }
+            } catch (ServiceConfigurationError e) {
+                // A stale or broken index only costs us the fast path
+                System.err.println("Ignoring model metadata index: " + e.getMessage());
+            }
+            return index;
+        }
+    }
+}
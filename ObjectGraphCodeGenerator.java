@@ -0,0 +1,509 @@
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Generates object creation code from a live object graph instead of JSON
+ * 
+ * Walks the instance with the same ClassPlans (field order, setter names, collection and
+ * map handling) and the same explicit work stack as the JSON engines, so an acyclic graph
+ * produces the code its JSON form would. On top of that, object identity is kept:
+ * - an object, collection or map reached twice gets one variable, and later references
+ *   reuse it
+ * - a reference back to an object still being generated (a parent pointer, a cycle) is
+ *   set right after that object is complete: {@code child.setParent(parent);}. List and
+ *   array positions are kept (a null placeholder is replaced with set(i, ...)); other
+ *   collections and maps receive such elements at that point.
+ * 
+ * Visited tracking uses IdentityHashMap, so equals/hashCode of the model classes are
+ * never called.
+ */
+final class ObjectGraphCodeGenerator {
+    
+    private static final Map<Class<?>, Field[]> FIELDS = new ConcurrentHashMap<>();
+    
+    private final GenerationOptions options;
+    private final JsonToObjectGenerator.VariableNameManager variableNames =
+        new JsonToObjectGenerator.VariableNameManager();
+    private final Map<Object, String> variables = new IdentityHashMap<>();
+    private final Set<Object> inProgress = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Object, List<String>> fixups = new IdentityHashMap<>();
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private final GenerationBudget budget;
+    private final StringBuilder code = new StringBuilder();
+    
+    ObjectGraphCodeGenerator(GenerationOptions options) {
+        this.options = options;
+        this.budget = GenerationBudget.start(options);
+    }
+    
+    /**
+     * Generate code that rebuilds the graph reachable from the given root object
+     */
+    String generate(Object root) {
+        Objects.requireNonNull(root, "root");
+        if (isScalar(root) || root instanceof Collection || root instanceof Map || root.getClass().isArray()) {
+            throw new IllegalArgumentException("Root must be a model object: " + root.getClass().getName());
+        }
+        pushObject(root, 1);
+        while (!stack.isEmpty()) {
+            stack.peek().step();
+            budget.checkpoint(code.length());
+        }
+        return code.toString().trim();
+    }
+    
+    GenerationBudget getBudget() {
+        return budget;
+    }
+    
+    private void pushObject(Object object, int depth) {
+        ClassPlan plan = ClassPlan.of(object.getClass());
+        String variableName = variableNames.allocate(plan.getVariableBaseName());
+        budget.enterObject(depth, plan, variableName);
+        enter(object, variableName);
+        stack.push(new ObjectFrame(object, plan, variableName, depth));
+    }
+    
+    private void enter(Object value, String variableName) {
+        variables.put(value, variableName);
+        inProgress.add(value);
+    }
+    
+    /**
+     * Mark a value complete and emit the statements that were waiting for it
+     */
+    private void complete(Object value) {
+        inProgress.remove(value);
+        List<String> waiting = fixups.remove(value);
+        if (waiting != null) {
+            for (String statement : waiting) {
+                code.append(statement);
+            }
+        }
+    }
+    
+    private void deferUntilComplete(Object target, String statement) {
+        fixups.computeIfAbsent(target, key -> new ArrayList<>()).add(statement);
+    }
+    
+    /**
+     * Pop a finished frame and hand its variable to the frame below
+     */
+    private void finished(String variableName) {
+        stack.pop();
+        if (!stack.isEmpty()) {
+            stack.peek().childCompleted(variableName);
+        }
+    }
+    
+    // ========================================================================================
+    // VALUES
+    // ========================================================================================
+    
+    private static boolean isScalar(Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean ||
+               value instanceof Character || value instanceof Enum;
+    }
+    
+    private static boolean isContainer(Object value) {
+        return value instanceof Collection || value instanceof Map || value.getClass().isArray();
+    }
+    
+    /**
+     * Java literal for a scalar, rendered by ValueConverter like the JSON engines. Scalars in
+     * untyped (Object) positions are typed by their runtime class.
+     */
+    private static String literal(Object value, Class<?> declaredType) {
+        if (value instanceof Enum) {
+            Enum<?> constant = (Enum<?>) value;
+            return constant.getDeclaringClass().getSimpleName() + "." + constant.name();
+        }
+        if (value instanceof Double && !Double.isFinite((Double) value)) {
+            return "Double." + nonFiniteName((Double) value);
+        }
+        if (value instanceof Float && !Float.isFinite((Float) value)) {
+            return "Float." + nonFiniteName((Float) value);
+        }
+        Class<?> type = declaredType != null && JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(declaredType)
+            ? declaredType : value.getClass();
+        JsonPrimitive primitive = value instanceof Number ? new JsonPrimitive((Number) value)
+            : value instanceof Boolean ? new JsonPrimitive((Boolean) value)
+            : value instanceof Character ? new JsonPrimitive((Character) value)
+            : new JsonPrimitive((String) value);
+        return JsonToObjectGenerator.ValueConverter.getValueAsString(primitive, type);
+    }
+    
+    private static String nonFiniteName(double value) {
+        return Double.isNaN(value) ? "NaN" : value > 0 ? "POSITIVE_INFINITY" : "NEGATIVE_INFINITY";
+    }
+    
+    /**
+     * Reflective fields in the order of the class plan (null where a plan field has no backing field)
+     */
+    private static Field[] fieldsOf(ClassPlan plan) {
+        return FIELDS.computeIfAbsent(plan.getType(), type -> {
+            ClassPlan.FieldPlan[] planFields = plan.getFields();
+            Field[] fields = new Field[planFields.length];
+            for (int i = 0; i < planFields.length; i++) {
+                for (Class<?> c = type; c != null && fields[i] == null; c = c.getSuperclass()) {
+                    try {
+                        fields[i] = c.getDeclaredField(planFields[i].getName());
+                        fields[i].setAccessible(true);
+                    } catch (NoSuchFieldException e) {
+                        // Try the superclass
+                    }
+                }
+            }
+            return fields;
+        });
+    }
+    
+    private static Object read(Field field, Object owner) {
+        try {
+            return field != null ? field.get(owner) : null;
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read " + field + ": " + e.getMessage(), e);
+        }
+    }
+    
+    // ========================================================================================
+    // FRAMES
+    // ========================================================================================
+    
+    private interface Frame {
+        /**
+         * Advance by one unit of work: emit code, push a child frame, or finish
+         */
+        void step();
+        
+        /**
+         * Called when a value pushed by this frame has been generated
+         */
+        void childCompleted(String childVariable);
+    }
+    
+    /**
+     * Fields in plan order; nested values first, then the declaration and setters
+     */
+    private final class ObjectFrame implements Frame {
+        private final Object object;
+        private final ClassPlan plan;
+        private final String variableName;
+        private final int depth;
+        private final Field[] fields;
+        private final String[] values;
+        private int fieldIndex;
+        
+        ObjectFrame(Object object, ClassPlan plan, String variableName, int depth) {
+            this.object = object;
+            this.plan = plan;
+            this.variableName = variableName;
+            this.depth = depth;
+            this.fields = fieldsOf(plan);
+            this.values = new String[fields.length];
+        }
+        
+        @Override
+        public void step() {
+            ClassPlan.FieldPlan[] planFields = plan.getFields();
+            while (fieldIndex < planFields.length) {
+                ClassPlan.FieldPlan field = planFields[fieldIndex];
+                Object value = read(fields[fieldIndex], object);
+                if (value == null) {
+                    fieldIndex++;
+                    continue;
+                }
+                if (isScalar(value)) {
+                    values[fieldIndex++] = literal(value, field.getType());
+                    continue;
+                }
+                String existing = variables.get(value);
+                if (existing != null) {
+                    if (inProgress.contains(value)) {
+                        deferUntilComplete(value, variableName + "." + field.getSetterName() + "(" + existing + ");\n");
+                    } else {
+                        values[fieldIndex] = existing;
+                    }
+                    fieldIndex++;
+                    continue;
+                }
+                if (value instanceof Map) {
+                    pushMap(field, (Map<?, ?>) value, depth);
+                } else if (value instanceof Collection || value.getClass().isArray()) {
+                    pushCollection(field, value, depth);
+                } else {
+                    pushObject(value, depth + 1);
+                }
+                return;
+            }
+            
+            code.append(plan.getSimpleName()).append(" ").append(variableName)
+                .append(" = new ").append(plan.getSimpleName()).append("();\n");
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    code.append(variableName).append(".").append(planFields[i].getSetterName())
+                        .append("(").append(values[i]).append(");\n");
+                }
+            }
+            complete(object);
+            code.append("\n");
+            finished(variableName);
+        }
+        
+        @Override
+        public void childCompleted(String childVariable) {
+            values[fieldIndex++] = childVariable;
+        }
+    }
+    
+    private void pushCollection(ClassPlan.FieldPlan field, Object collection, int depth) {
+        String variableName = variableNames.allocate(field.getCollectionVariableBaseName());
+        budget.enterNode();
+        enter(collection, variableName);
+        stack.push(new CollectionFrame(field, collection, variableName, depth));
+    }
+    
+    private void pushMap(ClassPlan.FieldPlan field, Map<?, ?> map, int depth) {
+        String variableName = variableNames.allocate(field.getMapVariableBaseName());
+        budget.enterNode();
+        enter(map, variableName);
+        stack.push(new MapFrame(field, map, variableName, depth));
+    }
+    
+    /**
+     * A collection or array field: declaration, then one element per step
+     */
+    private final class CollectionFrame implements Frame {
+        private final Object collection;
+        private final Class<?> fieldType;
+        private final String declaredTypeName;
+        private final Class<?> elementType;
+        private final String variableName;
+        private final int depth;
+        private final Object[] elements;
+        private final List<String> immutableValues;
+        private final String immutableFactory;
+        private final boolean list;
+        private int index;
+        
+        CollectionFrame(ClassPlan.FieldPlan field, Object collection, String variableName, int depth) {
+            this.collection = collection;
+            this.fieldType = field.getType();
+            this.declaredTypeName = field.getDeclaredTypeName();
+            this.variableName = variableName;
+            this.depth = depth;
+            this.elements = collection instanceof Collection ? ((Collection<?>) collection).toArray()
+                : toObjectArray(collection);
+            this.list = collection instanceof List;
+            this.elementType = fieldType.isArray() ? fieldType.getComponentType() : elementTypeOf(field);
+            
+            String factory = fieldType.isArray() ? null : JsonToObjectGenerator.CollectionHandler.getImmutableFactory(
+                options.getCollectionStrategy(), fieldType, elementType);
+            this.immutableFactory = factory != null && supportsImmutable(factory) ? factory : null;
+            this.immutableValues = immutableFactory != null ? new ArrayList<>(elements.length) : null;
+            
+            if (fieldType.isArray()) {
+                String elementTypeName = elementType.getSimpleName();
+                code.append(elementTypeName).append("[] ").append(variableName).append(" = new ")
+                    .append(elementTypeName).append("[").append(elements.length).append("];\n");
+            } else if (immutableFactory == null) {
+                code.append(declaredTypeName).append("<").append(elementType.getSimpleName()).append("> ")
+                    .append(variableName).append(" = ")
+                    .append(JsonToObjectGenerator.CollectionHandler.getConstructorExpression(
+                        options.getCollectionStrategy(), fieldType, elementType, elements.length))
+                    .append(";\n");
+            }
+        }
+        
+        private Class<?> elementTypeOf(ClassPlan.FieldPlan field) {
+            Class<?> declared = field.getElementType(null);
+            if (declared != Object.class) {
+                return declared;
+            }
+            for (Object element : elements) {
+                if (element != null) return element.getClass();
+            }
+            return Object.class;
+        }
+        
+        /**
+         * List.of / Set.of reject nulls and Set.of rejects equal elements; elements that close
+         * a cycle cannot be passed to the factory either
+         */
+        private boolean supportsImmutable(String factory) {
+            for (Object element : elements) {
+                if (element == null || inProgress.contains(element) || isContainer(element)) {
+                    return false;
+                }
+            }
+            return !"Set.of".equals(factory) || new HashSet<>(Arrays.asList(elements)).size() == elements.length;
+        }
+        
+        @Override
+        public void step() {
+            while (index < elements.length) {
+                int current = index;
+                Object element = elements[current];
+                if (element == null) {
+                    if (!fieldType.isArray()) emit(current, "null");
+                    index++;
+                    continue;
+                }
+                if (isScalar(element)) {
+                    emit(current, literal(element, elementType));
+                    index++;
+                    continue;
+                }
+                if (isContainer(element)) {
+                    code.append("// Warning: Unhandled element type in collection: ")
+                        .append(element.getClass().getSimpleName()).append("\n");
+                    if (!fieldType.isArray()) emit(current, "null");
+                    index++;
+                    continue;
+                }
+                String existing = variables.get(element);
+                if (existing == null) {
+                    pushObject(element, depth + 1);
+                    return;
+                }
+                if (inProgress.contains(element)) {
+                    deferElement(current, element, existing);
+                } else {
+                    emit(current, existing);
+                }
+                index++;
+            }
+            
+            if (immutableFactory != null) {
+                code.append(declaredTypeName).append("<").append(elementType.getSimpleName()).append("> ")
+                    .append(variableName).append(" = ").append(immutableFactory).append("(")
+                    .append(String.join(", ", immutableValues)).append(");\n");
+            }
+            complete(collection);
+            code.append("\n");
+            finished(variableName);
+        }
+        
+        @Override
+        public void childCompleted(String childVariable) {
+            emit(index++, childVariable);
+        }
+        
+        private void emit(int elementIndex, String value) {
+            if (immutableValues != null) {
+                immutableValues.add(value);
+            } else if (fieldType.isArray()) {
+                code.append(variableName).append("[").append(elementIndex).append("] = ").append(value).append(";\n");
+            } else {
+                JsonToObjectGenerator.CollectionHandler.addElement(fieldType, variableName, value, code);
+            }
+        }
+        
+        /**
+         * The element is an object still being generated: keep its slot and fill it in later
+         */
+        private void deferElement(int elementIndex, Object element, String elementVariable) {
+            if (fieldType.isArray()) {
+                deferUntilComplete(element, variableName + "[" + elementIndex + "] = " + elementVariable + ";\n");
+            } else if (list) {
+                emit(elementIndex, "null");
+                deferUntilComplete(element, variableName + ".set(" + elementIndex + ", " + elementVariable + ");\n");
+            } else {
+                StringBuilder add = new StringBuilder();
+                JsonToObjectGenerator.CollectionHandler.addElement(fieldType, variableName, elementVariable, add);
+                deferUntilComplete(element, add.toString());
+            }
+        }
+    }
+    
+    private static Object[] toObjectArray(Object array) {
+        Object[] elements = new Object[Array.getLength(array)];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = Array.get(array, i);
+        }
+        return elements;
+    }
+    
+    /**
+     * A map field: declaration, then one entry per step
+     */
+    private final class MapFrame implements Frame {
+        private final Map<?, ?> map;
+        private final String variableName;
+        private final Class<?> keyType;
+        private final Class<?> valueType;
+        private final int depth;
+        private final Iterator<? extends Map.Entry<?, ?>> entries;
+        private String pendingKey;
+        
+        MapFrame(ClassPlan.FieldPlan field, Map<?, ?> map, String variableName, int depth) {
+            this.map = map;
+            this.variableName = variableName;
+            this.keyType = field.getKeyType();
+            this.valueType = field.getValueType();
+            this.depth = depth;
+            this.entries = map.entrySet().iterator();
+            code.append(field.getDeclaredTypeName()).append("<")
+                .append(keyType != null ? keyType.getSimpleName() : "String").append(", ")
+                .append(valueType != null ? valueType.getSimpleName() : "Object").append("> ")
+                .append(variableName).append(" = ")
+                .append(JsonToObjectGenerator.CollectionHandler.getMapConstructorExpression(field.getType(), keyType))
+                .append(";\n");
+        }
+        
+        @Override
+        public void step() {
+            while (entries.hasNext()) {
+                Map.Entry<?, ?> entry = entries.next();
+                String key = keyOf(entry.getKey());
+                Object value = entry.getValue();
+                if (value == null || isScalar(value)) {
+                    put(key, value == null ? "null" : literal(value, valueType));
+                    continue;
+                }
+                if (isContainer(value)) {
+                    code.append("// Warning: Unhandled value type in map: ")
+                        .append(value.getClass().getSimpleName()).append("\n");
+                    continue;
+                }
+                String existing = variables.get(value);
+                if (existing == null) {
+                    pendingKey = key;
+                    pushObject(value, depth + 1);
+                    return;
+                }
+                if (inProgress.contains(value)) {
+                    StringBuilder put = new StringBuilder();
+                    JsonToObjectGenerator.CollectionHandler.putEntry(variableName, key, existing, put);
+                    deferUntilComplete(value, put.toString());
+                } else {
+                    put(key, existing);
+                }
+            }
+            
+            complete(map);
+            code.append("\n");
+            finished(variableName);
+        }
+        
+        @Override
+        public void childCompleted(String childVariable) {
+            put(pendingKey, childVariable);
+        }
+        
+        private String keyOf(Object key) {
+            if (key == null) {
+                return "null";
+            }
+            return key instanceof Enum ? literal(key, keyType)
+                : JsonToObjectGenerator.ValueConverter.getKeyValue(String.valueOf(key), keyType);
+        }
+        
+        private void put(String key, String value) {
+            JsonToObjectGenerator.CollectionHandler.putEntry(variableName, key, value, code);
+        }
+    }
+}
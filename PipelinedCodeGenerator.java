@@ -0,0 +1,472 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Three-stage pipeline for one large document: read, generate, write
+ * 
+ * - reader thread:    decodes and tokenizes the input stream with Gson's JsonReader and
+ *                     hands tokens on in batches
+ * - calling thread:   resolves field plans and element types and renders code, running
+ *                     StreamingCodeGenerator over the batched tokens
+ * - writer thread:    encodes the finished code and writes it to the output
+ * 
+ * Stages are connected by bounded queues, so a slow stage holds the others back instead
+ * of letting batches pile up on the heap. Input I/O and tokenizing, generation and output
+ * I/O overlap on machines with spare cores. The written code is the same as the byte
+ * engine's for the same document.
+ * 
+ * Plan resolution is not a stage of its own: ClassPlans are cached, so a lookup costs less
+ * than the handoff would, and it needs the generator's frame stack to know which class a
+ * member belongs to.
+ */
+final class PipelinedCodeGenerator {
+    
+    private static final int BATCH_TOKENS = 4096;
+    private static final int QUEUE_BATCHES = 16;
+    private static final int FLUSH_CHARS = 1 << 16;
+    private static final int QUEUE_FRAGMENTS = 16;
+    private static final long POLL_MILLIS = 100;
+    
+    private PipelinedCodeGenerator() {
+    }
+    
+    /**
+     * Generate code for the document's root object, writing it to {@code out} as it is produced
+     * 
+     * @throws IOException if reading, parsing or writing fails; an unchecked failure of the
+     *         writer is rethrown as it was thrown
+     * @throws InterruptedIOException if the calling thread is interrupted while waiting on a stage
+     * @throws GenerationLimitException if the options' limits are exceeded
+     * @throws CancellationException if the run is cancelled, or interrupted while generating
+     */
+    static void generate(Class<?> clazz, InputStream json, Writer out, GenerationOptions options) throws IOException {
+        TokenReader reader = new TokenReader(json);
+        FragmentWriter writer = new FragmentWriter(out);
+        Thread readerThread = new Thread(reader, "pipeline-reader");
+        Thread writerThread = new Thread(writer, "pipeline-writer");
+        readerThread.setDaemon(true);
+        writerThread.setDaemon(true);
+        readerThread.start();
+        writerThread.start();
+        
+        boolean completed = false;
+        boolean interrupted = false;
+        try {
+            new StreamingCodeGenerator(new QueuedTokenSource(reader), options)
+                .generate(clazz, writer::put, FLUSH_CHARS);
+            completed = true;
+        } catch (RuntimeException e) {
+            if (!writer.stopped) {
+                throw e;
+            }
+            // The writer failed first: its failure is rethrown below
+        } finally {
+            reader.stop();
+            if (completed) {
+                try {
+                    writer.finish();
+                } catch (InterruptedException e) {
+                    completed = false;
+                    interrupted = true;
+                }
+            }
+            if (!completed) {
+                // Nothing more will be written: wake both stages wherever they wait
+                readerThread.interrupt();
+                writerThread.interrupt();
+            }
+            interrupted |= awaitStage(writerThread, readerThread, writerThread);
+            if (completed) {
+                // The reader is past the end of the document; let it release the input first
+                interrupted |= awaitStage(readerThread, readerThread, writerThread);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (interrupted) {
+            throw new InterruptedIOException("Interrupted waiting for the pipeline to finish");
+        }
+        writer.rethrow();
+    }
+    
+    /**
+     * Join a stage. An interrupt of the calling thread stops both stages, and the join then
+     * continues so that no stage outlives the call.
+     * 
+     * @return whether the calling thread was interrupted
+     */
+    private static boolean awaitStage(Thread stage, Thread readerThread, Thread writerThread) {
+        boolean interrupted = false;
+        while (stage.isAlive()) {
+            try {
+                stage.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                readerThread.interrupt();
+                writerThread.interrupt();
+            }
+        }
+        return interrupted;
+    }
+    
+    /**
+     * Put an item on a queue, waiting for space for as long as the consumer is running
+     * 
+     * @return false if the consumer stopped first
+     */
+    private static boolean offer(BlockingQueue<Object> queue, Object item, BooleanSupplier stopped)
+            throws InterruptedException {
+        while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (stopped.getAsBoolean()) return false;
+        }
+        return true;
+    }
+    
+    // ========================================================================================
+    // READER STAGE
+    // ========================================================================================
+    
+    private static final class TokenBatch {
+        private final JsonToken[] tokens = new JsonToken[BATCH_TOKENS];
+        private final String[] texts = new String[BATCH_TOKENS];
+        private int count;
+    }
+    
+    private static final class TokenReader implements Runnable {
+        private final InputStream input;
+        private final BlockingQueue<Object> batches = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+        private volatile boolean stopped;
+        
+        TokenReader(InputStream input) {
+            this.input = input;
+        }
+        
+        @Override
+        public void run() {
+            try (JsonReader reader = new JsonReader(
+                     new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 1 << 16))) {
+                TokenBatch batch = new TokenBatch();
+                JsonToken token;
+                do {
+                    token = reader.peek();
+                    String text = null;
+                    switch (token) {
+                        case BEGIN_OBJECT: reader.beginObject(); break;
+                        case END_OBJECT: reader.endObject(); break;
+                        case BEGIN_ARRAY: reader.beginArray(); break;
+                        case END_ARRAY: reader.endArray(); break;
+                        case NAME: text = reader.nextName(); break;
+                        case STRING:
+                        case NUMBER: text = reader.nextString(); break;
+                        case BOOLEAN: text = String.valueOf(reader.nextBoolean()); break;
+                        case NULL: reader.nextNull(); break;
+                        default: break;
+                    }
+                    batch.tokens[batch.count] = token;
+                    batch.texts[batch.count] = text;
+                    if (++batch.count == BATCH_TOKENS || token == JsonToken.END_DOCUMENT) {
+                        offer(batches, batch, () -> stopped);
+                        batch = new TokenBatch();
+                    }
+                } while (token != JsonToken.END_DOCUMENT && !stopped);
+            } catch (InterruptedException e) {
+                // Stopped by the generator: nobody takes from the queue any more
+            } catch (IOException | RuntimeException | Error e) {
+                try {
+                    offer(batches, e, () -> stopped);
+                } catch (InterruptedException stoppedWhileReporting) {
+                    // As above
+                }
+            }
+        }
+        
+        /**
+         * Next batch, rethrowing the reader's failure if it had one
+         */
+        TokenBatch take() throws IOException {
+            Object next;
+            try {
+                next = batches.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for input");
+            }
+            if (next instanceof IOException) {
+                throw (IOException) next;
+            }
+            if (next instanceof RuntimeException) {
+                throw (RuntimeException) next;
+            }
+            if (next instanceof Error) {
+                throw (Error) next;
+            }
+            return (TokenBatch) next;
+        }
+        
+        void stop() {
+            stopped = true;
+            batches.clear();
+        }
+    }
+    
+    /**
+     * JsonTokenSource over the reader's batches. Array sizes are unknown ahead of time, so
+     * sized collections are buffered by the generator. Captured scalars are released once
+     * the object that contains them has been emitted, and array elements as soon as they
+     * are consumed, so memory is bounded by the nesting depth rather than the document size.
+     */
+    private static final class QueuedTokenSource implements JsonTokenSource {
+        private static final int KIND_BITS = 4;
+        
+        private final TokenReader reader;
+        private final List<String> scalars = new ArrayList<>();
+        // Per open container: the scalar count at BEGIN_OBJECT, -1 for an array
+        private int[] scalarMarks = new int[16];
+        private int depth;
+        private int releaseTo = -1;
+        private boolean capturedPeeked;
+        private TokenBatch batch;
+        private int position;
+        
+        QueuedTokenSource(TokenReader reader) {
+            this.reader = reader;
+        }
+        
+        @Override
+        public JsonToken peek() throws IOException {
+            if (batch == null || position == batch.count) {
+                batch = reader.take();
+                position = 0;
+            }
+            return batch.tokens[position];
+        }
+        
+        @Override
+        public void advance() throws IOException {
+            JsonToken consumed = peek();
+            if (consumed == JsonToken.END_DOCUMENT) {
+                throw new IllegalStateException("No token to consume at end of document");
+            }
+            release();
+            if (consumed == JsonToken.BEGIN_OBJECT || consumed == JsonToken.BEGIN_ARRAY) {
+                if (depth == scalarMarks.length) {
+                    scalarMarks = Arrays.copyOf(scalarMarks, depth * 2);
+                }
+                scalarMarks[depth++] = consumed == JsonToken.BEGIN_OBJECT ? scalars.size() : -1;
+            } else if (consumed == JsonToken.END_OBJECT) {
+                // Handles captured inside are still rendered by the generator's next action
+                releaseTo = scalarMarks[--depth];
+            } else if (consumed == JsonToken.END_ARRAY) {
+                depth--;
+            } else if (capturedPeeked && depth > 0 && scalarMarks[depth - 1] < 0) {
+                // An array element is rendered before it is consumed: a List<String> of millions holds one handle
+                scalars.remove(scalars.size() - 1);
+            }
+            capturedPeeked = false;
+            position++;
+        }
+        
+        @Override
+        public void skipValue() throws IOException {
+            int depth = 0;
+            do {
+                JsonToken token = peek();
+                if (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {
+                    depth++;
+                } else if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                    depth--;
+                }
+                advance();
+            } while (depth > 0);
+        }
+        
+        @Override
+        public int nameIndex(ClassPlan plan) throws IOException {
+            return plan.getNameTable().find(name());
+        }
+        
+        @Override
+        public String name() throws IOException {
+            if (peek() != JsonToken.NAME) {
+                throw new IllegalStateException("Expected NAME but was " + peek());
+            }
+            return batch.texts[position];
+        }
+        
+        @Override
+        public int countElements() {
+            return -1;
+        }
+        
+        @Override
+        public boolean countsElements() {
+            return false;
+        }
+        
+        @Override
+        public long captureScalar() throws IOException {
+            JsonToken token = peek();
+            release();
+            long index = scalars.size();
+            scalars.add(batch.texts[position]);
+            capturedPeeked = true;
+            return index << KIND_BITS | token.ordinal();
+        }
+        
+        @Override
+        public boolean isNull(long handle) {
+            return kindOf(handle) == JsonToken.NULL;
+        }
+        
+        @Override
+        public void appendValue(long handle, Class<?> type, StringBuilder out) {
+            out.append(JsonToObjectGenerator.ValueConverter.getValueAsString(toPrimitive(handle), type));
+        }
+        
+        @Override
+        public void appendPrimitive(long handle, StringBuilder out) {
+            switch (kindOf(handle)) {
+                case STRING:
+                    out.append(JsonToObjectGenerator.ValueConverter.getPrimitiveValue(toPrimitive(handle)));
+                    break;
+                case NUMBER:
+                case BOOLEAN:
+                    out.append(textOf(handle));
+                    break;
+                default:
+                    out.append("null");
+            }
+        }
+        
+        private void release() {
+            if (releaseTo >= 0) {
+                scalars.subList(releaseTo, scalars.size()).clear();
+                releaseTo = -1;
+            }
+        }
+        
+        private JsonToken kindOf(long handle) {
+            return JsonToken.values()[(int) (handle & ((1 << KIND_BITS) - 1))];
+        }
+        
+        private String textOf(long handle) {
+            return scalars.get((int) (handle >>> KIND_BITS));
+        }
+        
+        private JsonPrimitive toPrimitive(long handle) {
+            switch (kindOf(handle)) {
+                case STRING:
+                    return new JsonPrimitive(textOf(handle));
+                case NUMBER:
+                    return JsonParser.parseString(textOf(handle)).getAsJsonPrimitive();
+                default:
+                    return new JsonPrimitive(Boolean.parseBoolean(textOf(handle)));
+            }
+        }
+    }
+    
+    // ========================================================================================
+    // WRITER STAGE
+    // ========================================================================================
+    
+    /**
+     * Writes fragments in order. Whitespace at the very start is dropped and whitespace at
+     * the end of a fragment is held back until more code follows, so the output is trimmed
+     * like the other engines' without buffering it.
+     * 
+     * Any failure, checked or not, stops the writer: it is recorded for rethrow, and the
+     * generator is stopped at its next fragment instead of waiting on a queue nobody takes from.
+     */
+    private static final class FragmentWriter implements Runnable {
+        private static final Object END_OF_OUTPUT = new Object();
+        
+        private final Writer out;
+        private final BlockingQueue<Object> fragments = new ArrayBlockingQueue<>(QUEUE_FRAGMENTS);
+        private final StringBuilder heldWhitespace = new StringBuilder();
+        private boolean started;
+        private volatile Throwable failure;
+        private volatile boolean stopped;
+        
+        FragmentWriter(Writer out) {
+            this.out = out;
+        }
+        
+        void put(String fragment) {
+            if (stopped) {
+                throw new IllegalStateException("Output writer stopped", failure);
+            }
+            if (fragment.isEmpty()) {
+                return;
+            }
+            try {
+                offer(fragments, fragment, () -> stopped);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Generation interrupted");
+            }
+        }
+        
+        /**
+         * Queue the end of the output; the writer flushes once it has written everything before it
+         */
+        void finish() throws InterruptedException {
+            offer(fragments, END_OF_OUTPUT, () -> stopped);
+        }
+        
+        void rethrow() throws IOException {
+            Throwable failed = failure;
+            if (failed instanceof IOException) {
+                throw (IOException) failed;
+            }
+            if (failed instanceof RuntimeException) {
+                throw (RuntimeException) failed;
+            }
+            if (failed instanceof Error) {
+                throw (Error) failed;
+            }
+        }
+        
+        @Override
+        public void run() {
+            try {
+                Object next;
+                while ((next = fragments.take()) != END_OF_OUTPUT) {
+                    write((String) next);
+                }
+                out.flush();
+            } catch (IOException | RuntimeException | Error e) {
+                failure = e;
+                stopped = true;
+                fragments.clear();
+            } catch (InterruptedException e) {
+                // The run failed or was interrupted: the output is abandoned
+            }
+        }
+        
+        private void write(String fragment) throws IOException {
+            int end = fragment.length();
+            while (end > 0 && fragment.charAt(end - 1) <= ' ') end--;
+            int start = 0;
+            if (!started) {
+                while (start < end && fragment.charAt(start) <= ' ') start++;
+            }
+            if (start < end) {
+                out.append(heldWhitespace);
+                heldWhitespace.setLength(0);
+                out.write(fragment, start, end - start);
+                started = true;
+            }
+            if (started) {
+                heldWhitespace.append(fragment, Math.max(start, end), fragment.length());
+            }
+        }
+    }
+}
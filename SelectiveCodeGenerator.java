@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Generates code only for the parts of a document addressed by JSON path selectors
+ * 
+ * The input is read with a streaming JsonReader. Members and elements that are not on
+ * the way to any selector are passed over with skipValue(), so they are tokenized but
+ * never turned into a JsonElement tree. Only the selected subtrees are materialized
+ * and handed to the work-stack engine. Cost therefore follows the size of the
+ * selected data rather than the size of the document.
+ */
+final class SelectiveCodeGenerator {
+    
+    private final Class<?> rootClass;
+    private final IterativeCodeGenerator generator;
+    
+    private SelectiveCodeGenerator(Class<?> rootClass, GenerationOptions options) {
+        this.rootClass = rootClass;
+        this.generator = new IterativeCodeGenerator(options);
+    }
+    
+    /**
+     * Generate code for every subtree matching one of the selectors. Matches are emitted in
+     * document order, each preceded by a comment naming its concrete path.
+     */
+    static String generate(Class<?> rootClass, Reader json, GenerationOptions options,
+                           List<JsonPathSelector> selectors) throws IOException {
+        SelectiveCodeGenerator selective = new SelectiveCodeGenerator(rootClass, options);
+        try (JsonReader reader = new JsonReader(json)) {
+            selective.visitValue(reader, rootClass, null, selectors, 0, "$");
+        }
+        return selective.generator.getCode();
+    }
+    
+    /**
+     * Walk one JSON value. Recursion depth is bounded by the longest selector, since
+     * anything below a complete match is materialized and anything off-path is skipped.
+     */
+    private void visitValue(JsonReader reader, Class<?> type, ClassPlan.FieldPlan field,
+                            List<JsonPathSelector> active, int depth, String path) throws IOException {
+        for (JsonPathSelector selector : active) {
+            if (selector.length() == depth) {
+                emitMatch(JsonParser.parseReader(reader), type, field, path);
+                return;
+            }
+        }
+        
+        JsonToken token = reader.peek();
+        if (token == JsonToken.BEGIN_OBJECT) {
+            ClassPlan plan = type != null && !JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(type)
+                ? ClassPlan.of(type) : null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                List<JsonPathSelector> next = new ArrayList<>(active.size());
+                for (JsonPathSelector selector : active) {
+                    if (selector.matchesMember(depth, name)) next.add(selector);
+                }
+                if (next.isEmpty()) {
+                    reader.skipValue();
+                    continue;
+                }
+                ClassPlan.FieldPlan childField = plan != null ? plan.getField(name) : null;
+                Class<?> childType = childField != null ? childField.getType() : null;
+                visitValue(reader, childType, childField, next, depth + 1, path + "." + name);
+            }
+            reader.endObject();
+        } else if (token == JsonToken.BEGIN_ARRAY) {
+            // A root-level (or nested) array without a declaring field holds values of the current type
+            Class<?> elementType = field != null && field.isCollectionType() ? field.getElementType(null) : type;
+            reader.beginArray();
+            for (int index = 0; reader.hasNext(); index++) {
+                List<JsonPathSelector> next = new ArrayList<>(active.size());
+                for (JsonPathSelector selector : active) {
+                    if (selector.matchesIndex(depth, index)) next.add(selector);
+                }
+                if (next.isEmpty()) {
+                    reader.skipValue();
+                    continue;
+                }
+                visitValue(reader, elementType, null, next, depth + 1, path + "[" + index + "]");
+            }
+            reader.endArray();
+        } else {
+            reader.skipValue();
+        }
+    }
+    
+    private void emitMatch(JsonElement element, Class<?> type, ClassPlan.FieldPlan field, String path) {
+        generator.appendComment("Selected: " + path);
+        
+        if (type == null) {
+            generator.appendComment("No field of " + rootClass.getSimpleName() + " matches " + path + "\n");
+        } else if (element.isJsonNull()) {
+            generator.appendComment("null\n");
+        } else if (element.isJsonObject() && !JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(type)) {
+            generator.appendObject(type, element.getAsJsonObject());
+        } else if (element.isJsonArray() && field != null && field.isCollectionType()) {
+            generator.appendCollection(field, element.getAsJsonArray());
+        } else if (element.isJsonArray()) {
+            for (JsonElement item : element.getAsJsonArray()) {
+                if (item.isJsonObject()) {
+                    generator.appendObject(type, item.getAsJsonObject());
+                }
+            }
+        } else if (element.isJsonPrimitive() && JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(type)) {
+            String baseName = field != null ? field.getName() : "value";
+            generator.appendScalar(baseName, type, element);
+        } else {
+            generator.appendComment("Unsupported value for " + type.getSimpleName() + " at " + path + "\n");
+        }
+    }
+}
@@ -0,0 +1,488 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Sharded NDJSON generation across local worker JVMs
+ * 
+ * The input is split into byte-range shards aligned to record (line) boundaries. A pool
+ * of ShardWorker processes - each with its own heap and GC - takes shards from a shared
+ * queue. Workers talk to the coordinator over their stdin/stdout and stay alive across
+ * shards and across runs until the coordinator is closed. Each shard's output is spooled
+ * to a temporary file, checked against the worker's CRC32 and concatenated in shard
+ * order, so the merged output is identical to a single-process run whatever the shard
+ * and worker counts.
+ * 
+ * A shard whose worker dies, breaks the protocol, reports a failure or runs past the
+ * shard timeout is retried on a fresh worker, up to maxAttempts times. A timed-out worker
+ * is killed, which is what unblocks the coordinator's read. Records that merely fail to generate are not
+ * retried; they show up as comments in the output (see ShardWorker).
+ * 
+ * Usage: java ShardCoordinator --class Company --input records.ndjson --output records.java
+ *                              [--workers N] [--shards N] [--strategy PRESIZED]
+ *                              [--attempts N] [--worker-heap 512m] [--shard-timeout-ms N]
+ */
+public class ShardCoordinator implements AutoCloseable {
+    
+    private static final int SHARDS_PER_WORKER = 4;
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+    private static final long DEFAULT_SHARD_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    
+    private final int workers;
+    private final List<String> workerJvmOptions = new ArrayList<>();
+    private final BlockingQueue<WorkerProcess> idleWorkers = new LinkedBlockingQueue<>();
+    private int shardCount;
+    private int maxAttempts = 3;
+    private long shardTimeoutMillis = DEFAULT_SHARD_TIMEOUT_MILLIS;
+    private CollectionStrategy collectionStrategy = CollectionStrategy.DEFAULT;
+    
+    public ShardCoordinator(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1: " + workers);
+        }
+        this.workers = workers;
+    }
+    
+    /**
+     * Number of shards to split the input into (default: 4 per worker, for load balancing)
+     */
+    public ShardCoordinator shards(int shardCount) {
+        this.shardCount = shardCount;
+        return this;
+    }
+    
+    /**
+     * Attempts per shard before the run fails (default 3)
+     */
+    public ShardCoordinator maxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+    
+    /**
+     * Longest time one attempt at a shard may take before its worker is killed and the
+     * shard retried (default 10 minutes)
+     */
+    public ShardCoordinator shardTimeout(long shardTimeoutMillis) {
+        if (shardTimeoutMillis < 1) {
+            throw new IllegalArgumentException("shardTimeoutMillis must be at least 1: " + shardTimeoutMillis);
+        }
+        this.shardTimeoutMillis = shardTimeoutMillis;
+        return this;
+    }
+    
+    public ShardCoordinator collectionStrategy(CollectionStrategy collectionStrategy) {
+        this.collectionStrategy = Objects.requireNonNull(collectionStrategy, "collectionStrategy");
+        return this;
+    }
+    
+    /**
+     * Extra JVM options for newly launched workers, e.g. -Xmx512m
+     */
+    public ShardCoordinator workerJvmOption(String option) {
+        workerJvmOptions.add(option);
+        return this;
+    }
+    
+    /**
+     * Generate code for every record of an NDJSON file into the output file
+     * 
+     * @throws IOException if a shard still fails after maxAttempts
+     */
+    public Result run(Class<?> rootClass, Path input, Path output) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        List<Shard> shards = split(input, shardCount > 0 ? shardCount : workers * SHARDS_PER_WORKER);
+        BlockingQueue<Shard> pending = new LinkedBlockingQueue<>(shards);
+        AtomicInteger remaining = new AtomicInteger(shards.size());
+        AtomicLong retries = new AtomicLong();
+        List<IOException> failures = Collections.synchronizedList(new ArrayList<>());
+        
+        ExecutorService drivers = Executors.newFixedThreadPool(workers);
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "shard-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int i = 0; i < workers; i++) {
+                drivers.execute(() -> drive(rootClass, input, pending, remaining, retries, failures, watchdog));
+            }
+            drivers.shutdown();
+            drivers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            
+            if (!failures.isEmpty()) {
+                throw failures.get(0);
+            }
+            
+            long records = 0;
+            try (FileChannel merged = FileChannel.open(output, StandardOpenOption.CREATE,
+                                                       StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (Shard shard : shards) {
+                    records += shard.records;
+                    try (FileChannel part = FileChannel.open(shard.spool, StandardOpenOption.READ)) {
+                        long position = 0;
+                        long size = part.size();
+                        while (position < size) {
+                            position += part.transferTo(position, size - position, merged);
+                        }
+                    }
+                }
+            }
+            return new Result(shards.size(), records, retries.get(), System.nanoTime() - started);
+        } finally {
+            drivers.shutdownNow();
+            watchdog.shutdownNow();
+            for (Shard shard : shards) {
+                if (shard.spool != null) Files.deleteIfExists(shard.spool);
+            }
+        }
+    }
+    
+    /**
+     * One driver thread per worker slot: borrow a worker, run shards until none are left
+     */
+    private void drive(Class<?> rootClass, Path input, BlockingQueue<Shard> pending, AtomicInteger remaining,
+                       AtomicLong retries, List<IOException> failures, ScheduledExecutorService watchdog) {
+        WorkerProcess worker = null;
+        try {
+            while (remaining.get() > 0 && failures.isEmpty()) {
+                Shard shard = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (shard == null) continue;
+                try {
+                    if (worker == null) {
+                        worker = borrowWorker();
+                    }
+                    worker.generate(rootClass, collectionStrategy, input, shard, watchdog, shardTimeoutMillis);
+                    remaining.decrementAndGet();
+                } catch (IOException e) {
+                    if (worker != null) {
+                        worker.destroy();
+                        worker = null;
+                    }
+                    if (++shard.attempts >= maxAttempts) {
+                        failures.add(new IOException("Shard " + shard.index + " [" + shard.start + ", " + shard.end
+                            + ") failed after " + shard.attempts + " attempts", e));
+                    } else {
+                        retries.incrementAndGet();
+                        pending.add(shard);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (worker != null) {
+                idleWorkers.add(worker);
+            }
+        }
+    }
+    
+    private WorkerProcess borrowWorker() throws IOException {
+        WorkerProcess worker;
+        while ((worker = idleWorkers.poll()) != null) {
+            if (worker.process.isAlive()) {
+                return worker;
+            }
+            worker.destroy();
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(workerJvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardWorker.class.getName());
+        return new WorkerProcess(new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start());
+    }
+    
+    /**
+     * Stop all idle workers
+     */
+    @Override
+    public void close() {
+        WorkerProcess worker;
+        while ((worker = idleWorkers.poll()) != null) {
+            worker.quit();
+        }
+    }
+    
+    // ========================================================================================
+    // SHARDING
+    // ========================================================================================
+    
+    /**
+     * Split a file into at most {@code count} byte ranges, each starting at the beginning
+     * of a line. Only the bytes around each split point are read.
+     */
+    static List<Shard> split(Path input, int count) throws IOException {
+        List<Shard> shards = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            long start = 0;
+            for (int i = 1; i <= count && start < size; i++) {
+                long end = i == count ? size : Math.max(start, nextLineStart(channel, buffer, size * i / count));
+                if (end > start) {
+                    shards.add(new Shard(shards.size(), start, end));
+                    start = end;
+                }
+            }
+        }
+        return shards;
+    }
+    
+    /**
+     * First line start at or after {@code position}: position itself if the byte before it
+     * is a newline, else the byte after the next newline (or the end of the file)
+     */
+    private static long nextLineStart(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        if (position == 0) {
+            return 0;
+        }
+        long scan = position - 1;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, scan);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return scan + i + 1;
+                }
+            }
+            scan += read;
+        }
+    }
+    
+    static final class Shard {
+        private final int index;
+        private final long start;
+        private final long end;
+        private int attempts;
+        private long records;
+        private Path spool;
+        
+        Shard(int index, long start, long end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+        
+        int getIndex() {
+            return index;
+        }
+        
+        long getStart() {
+            return start;
+        }
+        
+        long getEnd() {
+            return end;
+        }
+    }
+    
+    // ========================================================================================
+    // WORKER PROCESS
+    // ========================================================================================
+    
+    private static final class WorkerProcess {
+        private final Process process;
+        private final DataOutputStream requests;
+        private final DataInputStream responses;
+        
+        WorkerProcess(Process process) {
+            this.process = process;
+            this.requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.responses = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+        
+        /**
+         * Run one shard within the timeout. A worker still running at the deadline is killed,
+         * so the blocked read fails and the shard is retried like after a crash.
+         */
+        void generate(Class<?> rootClass, CollectionStrategy strategy, Path input, Shard shard,
+                      ScheduledExecutorService watchdog, long timeoutMillis) throws IOException {
+            // Whichever of the watchdog and this thread settles the attempt first decides it
+            AtomicBoolean settled = new AtomicBoolean();
+            ScheduledFuture<?> deadline = watchdog.schedule(() -> {
+                if (settled.compareAndSet(false, true)) {
+                    destroy();
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            try {
+                exchange(rootClass, strategy, input, shard);
+            } catch (IOException e) {
+                if (!settled.compareAndSet(false, true)) {
+                    throw timedOut(shard, timeoutMillis, e);
+                }
+                throw e;
+            } finally {
+                deadline.cancel(false);
+            }
+            if (!settled.compareAndSet(false, true)) {
+                throw timedOut(shard, timeoutMillis, null);
+            }
+        }
+        
+        private static IOException timedOut(Shard shard, long timeoutMillis, IOException cause) {
+            return new IOException("Shard " + shard.index + " timed out after " + timeoutMillis + " ms", cause);
+        }
+        
+        /**
+         * Send one shard request, spooling its output to a temporary file and checking the CRC
+         */
+        private void exchange(Class<?> rootClass, CollectionStrategy strategy, Path input, Shard shard)
+                throws IOException {
+            requests.write(ShardWorker.GENERATE);
+            requests.writeUTF(rootClass.getName());
+            requests.writeUTF(strategy.name());
+            requests.writeUTF(input.toAbsolutePath().toString());
+            requests.writeLong(shard.start);
+            requests.writeLong(shard.end);
+            requests.flush();
+            
+            Path spool = shard.spool != null ? shard.spool : Files.createTempFile("shard-" + shard.index + "-", ".part");
+            shard.spool = spool;
+            CRC32 crc = new CRC32();
+            byte[] chunk = new byte[0];
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(spool))) {
+                int length;
+                while ((length = responses.readInt()) > 0) {
+                    if (chunk.length < length) {
+                        chunk = new byte[length];
+                    }
+                    responses.readFully(chunk, 0, length);
+                    crc.update(chunk, 0, length);
+                    out.write(chunk, 0, length);
+                }
+                if (length == ShardWorker.SHARD_FAILED) {
+                    throw new IOException("Worker failed: " + responses.readUTF());
+                }
+                if (length != ShardWorker.END_OF_SHARD) {
+                    throw new IOException("Protocol error: chunk length " + length);
+                }
+            }
+            long records = responses.readLong();
+            if (responses.readLong() != crc.getValue()) {
+                throw new IOException("Checksum mismatch for shard " + shard.index);
+            }
+            shard.records = records;
+        }
+        
+        void quit() {
+            try {
+                requests.write(ShardWorker.QUIT);
+                requests.flush();
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            } catch (IOException e) {
+                process.destroy();
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        void destroy() {
+            process.destroyForcibly();
+        }
+    }
+    
+    // ========================================================================================
+    // RESULT
+    // ========================================================================================
+    
+    public static final class Result {
+        private final int shards;
+        private final long records;
+        private final long retries;
+        private final long elapsedNanos;
+        
+        Result(int shards, long records, long retries, long elapsedNanos) {
+            this.shards = shards;
+            this.records = records;
+            this.retries = retries;
+            this.elapsedNanos = elapsedNanos;
+        }
+        
+        public int getShards() {
+            return shards;
+        }
+        
+        public long getRecords() {
+            return records;
+        }
+        
+        public long getRetries() {
+            return retries;
+        }
+        
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d records in %d shards, %d retries, %.1f ms",
+                                 records, shards, retries, elapsedNanos / 1e6);
+        }
+    }
+    
+    // ========================================================================================
+    // COMMAND LINE
+    // ========================================================================================
+    
+    public static void main(String[] args) throws Exception {
+        String className = null;
+        Path input = null;
+        Path output = null;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int shards = 0;
+        int attempts = 3;
+        long shardTimeoutMillis = DEFAULT_SHARD_TIMEOUT_MILLIS;
+        CollectionStrategy strategy = CollectionStrategy.DEFAULT;
+        String workerHeap = null;
+        
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--class": className = args[++i]; break;
+                case "--input": input = Paths.get(args[++i]); break;
+                case "--output": output = Paths.get(args[++i]); break;
+                case "--workers": workers = Integer.parseInt(args[++i]); break;
+                case "--shards": shards = Integer.parseInt(args[++i]); break;
+                case "--attempts": attempts = Integer.parseInt(args[++i]); break;
+                case "--strategy": strategy = CollectionStrategy.valueOf(args[++i]); break;
+                case "--worker-heap": workerHeap = args[++i]; break;
+                case "--shard-timeout-ms": shardTimeoutMillis = Long.parseLong(args[++i]); break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if (className == null || input == null || output == null) {
+            System.err.println("Usage: java ShardCoordinator --class Company --input records.ndjson "
+                + "--output records.java [--workers N] [--shards N] [--strategy S] [--attempts N] [--worker-heap 512m] "
+                + "[--shard-timeout-ms N]");
+            System.exit(2);
+        }
+        
+        try (ShardCoordinator coordinator = new ShardCoordinator(workers)
+                .shards(shards).maxAttempts(attempts).shardTimeout(shardTimeoutMillis).collectionStrategy(strategy)) {
+            if (workerHeap != null) {
+                coordinator.workerJvmOption("-Xmx" + workerHeap);
+            }
+            System.out.println(coordinator.run(Class.forName(className), input, output));
+        }
+    }
+}
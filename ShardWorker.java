@@ -0,0 +1,173 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Worker process for sharded NDJSON generation (see ShardCoordinator)
+ * 
+ * Reads shard requests from stdin and streams the generated code back on stdout,
+ * one request at a time, until stdin closes or a QUIT arrives. The process is reused
+ * for as many shards as the coordinator hands it, so JVM startup, class loading and
+ * JIT warm-up are paid once per worker rather than once per shard.
+ * 
+ * Protocol (DataOutput encoding, both directions):
+ * - request:  'G', class name, collection strategy, input path, start offset, end offset
+ *             'Q' to quit
+ * - response: zero or more chunks (int length > 0, UTF-8 bytes), then either
+ *             0, record count, CRC32 of all chunk bytes   - shard done
+ *             -1, error message                           - shard failed
+ * 
+ * A shard covers the records (lines) starting in [start, end). Every record is generated
+ * on its own, so the output of a record does not depend on how the input was sharded.
+ * stdout carries the protocol only; System.out is redirected to stderr.
+ */
+public class ShardWorker {
+    
+    static final byte GENERATE = 'G';
+    static final byte QUIT = 'Q';
+    static final int END_OF_SHARD = 0;
+    static final int SHARD_FAILED = -1;
+    
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    
+    public static void main(String[] args) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+        
+        while (true) {
+            int command = in.read();
+            if (command < 0 || command == QUIT) {
+                break;
+            }
+            if (command != GENERATE) {
+                throw new IOException("Unknown command: " + command);
+            }
+            String className = in.readUTF();
+            String strategy = in.readUTF();
+            String path = in.readUTF();
+            long start = in.readLong();
+            long end = in.readLong();
+            
+            ChunkWriter chunks = new ChunkWriter(out);
+            try {
+                GenerationOptions options = GenerationOptions.defaults()
+                    .collectionStrategy(CollectionStrategy.valueOf(strategy));
+                long records = generateRange(Class.forName(className), new File(path), start, end, options, chunks);
+                chunks.flush();
+                out.writeInt(END_OF_SHARD);
+                out.writeLong(records);
+                out.writeLong(chunks.crc.getValue());
+            } catch (Exception e) {
+                chunks.flush();
+                out.writeInt(SHARD_FAILED);
+                out.writeUTF(String.valueOf(e));
+            }
+            out.flush();
+        }
+    }
+    
+    /**
+     * Generate code for every record starting in [start, end) of an NDJSON file. Each
+     * record is preceded by a comment with its byte offset; records that cannot be
+     * generated get a comment with the reason instead of code.
+     * 
+     * @return Number of records
+     */
+    static long generateRange(Class<?> rootClass, File input, long start, long end,
+                              GenerationOptions options, Writer out) throws IOException {
+        long records = 0;
+        try (RandomAccessFile file = new RandomAccessFile(input, "r")) {
+            file.seek(start);
+            InputStream in = new BufferedInputStream(new FileInputStream(file.getFD()), READ_BUFFER_SIZE);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long position = start;
+            long recordStart = start;
+            int b;
+            while (recordStart < end) {
+                b = in.read();
+                if (b >= 0) position++;
+                if (b >= 0 && b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                if (generateRecord(rootClass, line, recordStart, options, out)) {
+                    records++;
+                }
+                line.reset();
+                recordStart = position;
+                if (b < 0) break;
+            }
+        }
+        return records;
+    }
+    
+    private static boolean generateRecord(Class<?> rootClass, ByteArrayOutputStream line, long offset,
+                                          GenerationOptions options, Writer out) throws IOException {
+        String json = new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+        if (json.isEmpty()) {
+            return false;
+        }
+        GenerationResult result = JsonToObjectGenerator.generate(rootClass, json, options);
+        if (result.isCompleted()) {
+            out.write("// Record at byte " + offset + "\n");
+            out.write(result.getCode());
+            out.write("\n\n");
+        } else {
+            out.write("// Record at byte " + offset + " failed: " + result.getMessage() + "\n\n");
+        }
+        return true;
+    }
+    
+    // ========================================================================================
+    // CHUNKED OUTPUT
+    // ========================================================================================
+    
+    /**
+     * Frames generated text as length-prefixed UTF-8 chunks and keeps a CRC32 of the bytes
+     */
+    private static final class ChunkWriter extends Writer {
+        private static final int CHUNK_CHARS = 1 << 15;
+        
+        private final DataOutputStream out;
+        private final StringBuilder pending = new StringBuilder();
+        private final CRC32 crc = new CRC32();
+        
+        ChunkWriter(DataOutputStream out) {
+            this.out = out;
+        }
+        
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            pending.append(buffer, offset, length);
+            if (pending.length() >= CHUNK_CHARS) {
+                flush();
+            }
+        }
+        
+        @Override
+        public void write(String text) throws IOException {
+            pending.append(text);
+            if (pending.length() >= CHUNK_CHARS) {
+                flush();
+            }
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            if (pending.length() == 0) {
+                return;
+            }
+            byte[] bytes = pending.toString().getBytes(StandardCharsets.UTF_8);
+            pending.setLength(0);
+            crc.update(bytes);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Round-trips the bundled fixtures through the binary snapshot format, then times
+ * loading a large synthetic Company fixture
+ * 
+ * Usage: java SnapshotBenchmark [employees]
+ */
+public class SnapshotBenchmark {
+    
+    private static final int LOAD_RUNS = 5;
+    
+    public static void main(String[] args) throws Exception {
+        int employees = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        
+        System.out.println("=== Snapshot Round Trip ===\n");
+        roundTrip(TreeNode.class, "test_composite.json");
+        roundTrip(Department.class, "test_collections.json");
+        roundTrip(Company.class, "test_array.json");
+        roundTrip(A.class, "sample_data.json");
+        
+        System.out.println("\n=== Large Fixture (" + employees + " employees) ===\n");
+        String json = syntheticCompany(employees);
+        System.out.printf("JSON size:      %,d bytes%n", json.length());
+        
+        long start = System.nanoTime();
+        byte[] snapshot = JsonToObjectGenerator.generateSnapshot(Company.class, json);
+        System.out.printf("Write:          %,d ms%n", (System.nanoTime() - start) / 1_000_000);
+        System.out.printf("Snapshot size:  %,d bytes%n", snapshot.length);
+        
+        Company company = null;
+        for (int run = 1; run <= LOAD_RUNS; run++) {
+            start = System.nanoTime();
+            company = SnapshotLoader.load(snapshot, Company.class);
+            System.out.printf("Load run %d:     %,d ms%n", run, (System.nanoTime() - start) / 1_000_000);
+        }
+        
+        Employee last = company.getEmployees().get(employees - 1);
+        boolean valid = company.getEmployees().size() == employees &&
+                        last.getName().equals("Employee " + (employees - 1)) &&
+                        last.getAge() == 20 + (employees - 1) % 45;
+        System.out.println("\nLoaded graph check: " + (valid ? "OK" : "FAILED"));
+        if (!valid) {
+            System.exit(1);
+        }
+    }
+    
+    private static void roundTrip(Class<?> clazz, String fileName) throws Exception {
+        String json = new String(Files.readAllBytes(Paths.get(fileName)), StandardCharsets.UTF_8);
+        byte[] snapshot = JsonToObjectGenerator.generateSnapshot(clazz, json);
+        Object loaded = SnapshotLoader.load(snapshot, clazz);
+        System.out.printf("%-24s %5d JSON bytes -> %5d snapshot bytes: %s%n",
+                          fileName, json.length(), snapshot.length, loaded);
+    }
+    
+    private static String syntheticCompany(int employees) {
+        StringBuilder json = new StringBuilder(employees * 40);
+        json.append("{\"name\":\"Synthetic Corp\",\"employees\":[");
+        for (int i = 0; i < employees; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"name\":\"Employee ").append(i).append("\",\"age\":").append(20 + i % 45).append('}');
+        }
+        return json.append("]}").toString();
+    }
+}
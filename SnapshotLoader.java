@@ -0,0 +1,399 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rebuilds an object graph from a snapshot written by SnapshotWriter
+ * 
+ * Records are read in one flat loop; each creates its object, collection, array or map and
+ * fills it from values already loaded. Setters are resolved from the ClassPlan setter
+ * names - the same calls generated source would make - and cached as method handles.
+ * 
+ * Usage:
+ *   byte[] snapshot = JsonToObjectGenerator.generateSnapshot(Company.class, json);
+ *   Company company = SnapshotLoader.load(snapshot, Company.class);
+ */
+public final class SnapshotLoader {
+    
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    private static final Map<ClassPlan.FieldPlan, MethodHandle> SETTERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, MethodHandle> CONSTRUCTORS = new ConcurrentHashMap<>();
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>();
+    
+    static {
+        for (Class<?> type : new Class<?>[] { boolean.class, byte.class, short.class, char.class,
+                                               int.class, long.class, float.class, double.class }) {
+            PRIMITIVES.put(type.getName(), type);
+        }
+    }
+    
+    private final byte[] data;
+    private int position;
+    private ClassEntry[] classes;
+    private String[] strings;
+    private Object[] records;
+    
+    private SnapshotLoader(byte[] data) {
+        this.data = data;
+    }
+    
+    /**
+     * Load the root object of a snapshot
+     * 
+     * @throws IllegalArgumentException if the data is not a supported snapshot
+     * @throws IllegalStateException if a class, constructor or setter cannot be resolved
+     */
+    public static Object load(byte[] snapshot) {
+        return new SnapshotLoader(snapshot).read();
+    }
+    
+    /**
+     * Load the root object of a snapshot, checking its type
+     */
+    public static <T> T load(byte[] snapshot, Class<T> rootType) {
+        return rootType.cast(load(snapshot));
+    }
+    
+    private Object read() {
+        for (byte magic : SnapshotWriter.MAGIC) {
+            if (position >= data.length || data[position++] != magic) {
+                throw new IllegalArgumentException("Not a generator snapshot");
+            }
+        }
+        int version = readVarint();
+        // Version 1 is version 2 without map records
+        if (version < 1 || version > SnapshotWriter.VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version " + version);
+        }
+        
+        classes = new ClassEntry[readVarint()];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = readClassEntry();
+        }
+        strings = new String[readVarint()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString();
+        }
+        
+        records = new Object[readVarint()];
+        if (records.length == 0) {
+            throw new IllegalArgumentException("Snapshot has no root record");
+        }
+        for (int i = 0; i < records.length; i++) {
+            ClassEntry entry = classes[readVarint()];
+            try {
+                switch (entry.kind) {
+                    case SnapshotWriter.CLASS_MODEL:
+                        records[i] = readObject(entry);
+                        break;
+                    case SnapshotWriter.CLASS_COLLECTION:
+                        records[i] = readCollection(entry);
+                        break;
+                    case SnapshotWriter.CLASS_MAP:
+                        records[i] = readMap(entry);
+                        break;
+                    default:
+                        records[i] = readArray(entry);
+                        break;
+                }
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Could not load record " + i + " (" + entry.type.getName() + ")", t);
+            }
+        }
+        return records[records.length - 1];
+    }
+    
+    // ========================================================================================
+    // RECORDS
+    // ========================================================================================
+    
+    private Object readObject(ClassEntry entry) throws Throwable {
+        Object target = (Object) entry.constructor.invokeExact();
+        int members = readVarint();
+        for (int i = 0; i < members; i++) {
+            int slot = readVarint();
+            Object value = readValue();
+            MethodHandle setter = entry.setters[slot];
+            if (setter == null) continue;
+            if (value instanceof String && entry.slotTypes[slot].isEnum()) {
+                value = enumConstant(entry.slotTypes[slot], (String) value);
+            } else if (value instanceof Collection && entry.slotEnumElementTypes[slot] != null) {
+                value = enumCollection(value, entry.slotEnumElementTypes[slot], entry.slotTypes[slot]);
+            } else if (value instanceof Map
+                       && (entry.slotEnumKeyTypes[slot] != null || entry.slotEnumElementTypes[slot] != null)) {
+                value = enumMap(value, entry.slotEnumKeyTypes[slot], entry.slotEnumElementTypes[slot],
+                                entry.slotTypes[slot]);
+            }
+            setter.invokeExact(target, value);
+        }
+        return target;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Object readCollection(ClassEntry entry) throws Throwable {
+        Collection<Object> collection = (Collection<Object>) (Object) entry.constructor.invokeExact();
+        int count = readVarint();
+        for (int i = 0; i < count; i++) {
+            collection.add(readValue());
+        }
+        return collection;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Object readMap(ClassEntry entry) throws Throwable {
+        Map<Object, Object> map = (Map<Object, Object>) (Object) entry.constructor.invokeExact();
+        int count = readVarint();
+        for (int i = 0; i < count; i++) {
+            Object key = readValue();
+            map.put(key, readValue());
+        }
+        return map;
+    }
+    
+    private Object readArray(ClassEntry entry) {
+        int count = readVarint();
+        Object array = Array.newInstance(entry.type, count);
+        for (int i = 0; i < count; i++) {
+            Object value = readValue();
+            if (value != null) {
+                Array.set(array, i, value);
+            }
+        }
+        return array;
+    }
+    
+    private Object readValue() {
+        int tag = readVarint();
+        switch (tag) {
+            case SnapshotWriter.VALUE_NULL:
+                return null;
+            case SnapshotWriter.VALUE_FALSE:
+                return Boolean.FALSE;
+            case SnapshotWriter.VALUE_TRUE:
+                return Boolean.TRUE;
+            case SnapshotWriter.VALUE_INT:
+                return (int) readZigzag();
+            case SnapshotWriter.VALUE_LONG:
+                return readZigzag();
+            case SnapshotWriter.VALUE_BYTE:
+                return (byte) readZigzag();
+            case SnapshotWriter.VALUE_SHORT:
+                return (short) readZigzag();
+            case SnapshotWriter.VALUE_FLOAT:
+                return Float.intBitsToFloat((int) readFixed(4));
+            case SnapshotWriter.VALUE_DOUBLE:
+                return Double.longBitsToDouble(readFixed(8));
+            case SnapshotWriter.VALUE_CHAR:
+                return (char) readVarint();
+            case SnapshotWriter.VALUE_STRING:
+                return strings[readVarint()];
+            case SnapshotWriter.VALUE_REF:
+                return records[readVarint()];
+            default:
+                throw new IllegalArgumentException("Unknown value tag " + tag + " at byte " + (position - 1));
+        }
+    }
+    
+    /**
+     * Same name matching as generated source (see JsonToObjectGenerator.EnumHandler)
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object enumConstant(Class<?> enumType, String name) {
+        Enum<?> constant = JsonToObjectGenerator.EnumHandler.lookup(enumType, name);
+        return constant != null ? constant : Enum.valueOf((Class<? extends Enum>) enumType, name);
+    }
+    
+    /**
+     * Enum elements are stored by name; resolve them, into an EnumSet where generated source
+     * would declare one
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object enumCollection(Object value, Class<?> enumType, Class<?> fieldType) {
+        Collection<Object> names = (Collection<Object>) value;
+        Collection<Object> target = JsonToObjectGenerator.CollectionHandler.isEnumSet(fieldType, enumType)
+            ? (Collection<Object>) EnumSet.noneOf((Class<? extends Enum>) enumType) : names;
+        List<Object> constants = new ArrayList<>(names.size());
+        for (Object name : names) {
+            constants.add(name instanceof String ? enumConstant(enumType, (String) name) : name);
+        }
+        if (target == names) {
+            names.clear();
+        } else {
+            constants.removeIf(Objects::isNull);
+        }
+        target.addAll(constants);
+        return target;
+    }
+    
+    /**
+     * Enum keys and values are stored by name; resolve them, into an EnumMap where generated
+     * source would declare one
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object enumMap(Object value, Class<?> enumKeyType, Class<?> enumValueType, Class<?> fieldType) {
+        Map<Object, Object> stored = (Map<Object, Object>) value;
+        Map<Object, Object> target = enumKeyType != null && fieldType.isAssignableFrom(EnumMap.class)
+            ? new EnumMap(enumKeyType) : stored;
+        Map<Object, Object> resolved = new LinkedHashMap<>();
+        for (Map.Entry<Object, Object> e : stored.entrySet()) {
+            Object key = enumKeyType != null && e.getKey() instanceof String
+                ? enumConstant(enumKeyType, (String) e.getKey()) : e.getKey();
+            Object entryValue = enumValueType != null && e.getValue() instanceof String
+                ? enumConstant(enumValueType, (String) e.getValue()) : e.getValue();
+            resolved.put(key, entryValue);
+        }
+        if (target == stored) {
+            stored.clear();
+        }
+        target.putAll(resolved);
+        return target;
+    }
+    
+    // ========================================================================================
+    // CLASS DICTIONARY
+    // ========================================================================================
+    
+    private static final class ClassEntry {
+        private final int kind;
+        private final Class<?> type;
+        private final MethodHandle constructor;
+        private final MethodHandle[] setters;
+        private final Class<?>[] slotTypes;
+        private final Class<?>[] slotEnumElementTypes;
+        private final Class<?>[] slotEnumKeyTypes;
+        
+        ClassEntry(int kind, Class<?> type, MethodHandle constructor, MethodHandle[] setters, Class<?>[] slotTypes,
+                   Class<?>[] slotEnumElementTypes, Class<?>[] slotEnumKeyTypes) {
+            this.kind = kind;
+            this.type = type;
+            this.constructor = constructor;
+            this.setters = setters;
+            this.slotTypes = slotTypes;
+            this.slotEnumElementTypes = slotEnumElementTypes;
+            this.slotEnumKeyTypes = slotEnumKeyTypes;
+        }
+    }
+    
+    private ClassEntry readClassEntry() {
+        int kind = readVarint();
+        Class<?> type = resolveClass(readString());
+        if (kind == SnapshotWriter.CLASS_ARRAY) {
+            return new ClassEntry(kind, type, null, null, null, null, null);
+        }
+        if (kind == SnapshotWriter.CLASS_COLLECTION || kind == SnapshotWriter.CLASS_MAP) {
+            return new ClassEntry(kind, type, constructor(type), null, null, null, null);
+        }
+        
+        // Fields are matched by name, so a snapshot survives fields being added or reordered
+        ClassPlan plan = ClassPlan.of(type);
+        int fieldCount = readVarint();
+        MethodHandle[] setters = new MethodHandle[fieldCount];
+        Class<?>[] slotTypes = new Class<?>[fieldCount];
+        Class<?>[] slotEnumElementTypes = new Class<?>[fieldCount];
+        Class<?>[] slotEnumKeyTypes = new Class<?>[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            ClassPlan.FieldPlan field = plan.getField(readString());
+            if (field != null) {
+                setters[i] = SETTERS.computeIfAbsent(field, f -> setter(type, f));
+                slotTypes[i] = field.getType();
+                // For a map the element type is its value type
+                Class<?> elementType = field.isMapType() ? field.getValueType()
+                    : field.isCollectionType() && !field.getType().isArray() ? field.getElementType(null) : null;
+                Class<?> keyType = field.isMapType() ? field.getKeyType() : null;
+                slotEnumElementTypes[i] = elementType != null && elementType.isEnum() ? elementType : null;
+                slotEnumKeyTypes[i] = keyType != null && keyType.isEnum() ? keyType : null;
+            }
+        }
+        return new ClassEntry(kind, type, constructor(type), setters, slotTypes, slotEnumElementTypes,
+                              slotEnumKeyTypes);
+    }
+    
+    private static Class<?> resolveClass(String name) {
+        Class<?> primitive = PRIMITIVES.get(name);
+        if (primitive != null) {
+            return primitive;
+        }
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try {
+            return Class.forName(name, false, loader != null ? loader : SnapshotLoader.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Snapshot class not found: " + name, e);
+        }
+    }
+    
+    private static MethodHandle constructor(Class<?> type) {
+        return CONSTRUCTORS.computeIfAbsent(type, t -> {
+            try {
+                return MethodHandles.publicLookup().findConstructor(t, MethodType.methodType(void.class))
+                    .asType(CONSTRUCTOR_TYPE);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("No public no-arg constructor on " + t.getName(), e);
+            }
+        });
+    }
+    
+    private static MethodHandle setter(Class<?> type, ClassPlan.FieldPlan field) {
+        try {
+            return MethodHandles.publicLookup().unreflect(type.getMethod(field.getSetterName(), field.getType()))
+                .asType(SETTER_TYPE);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No setter " + field.getSetterName() + " on " + type.getName(), e);
+        }
+    }
+    
+    // ========================================================================================
+    // DECODING
+    // ========================================================================================
+    
+    private int readVarint() {
+        return (int) readVarlong();
+    }
+    
+    private long readVarlong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("Truncated snapshot");
+            }
+            byte b = data[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at byte " + position);
+    }
+    
+    private long readZigzag() {
+        long value = readVarlong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    private long readFixed(int bytes) {
+        if (position + bytes > data.length) {
+            throw new IllegalArgumentException("Truncated snapshot");
+        }
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            value |= (data[position++] & 0xFFL) << (8 * i);
+        }
+        return value;
+    }
+    
+    private String readString() {
+        int length = readVarint();
+        if (length < 0 || position + length > data.length) {
+            throw new IllegalArgumentException("Truncated snapshot");
+        }
+        String value = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+}
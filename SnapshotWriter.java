@@ -0,0 +1,554 @@
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import com.google.gson.*;
+
+/**
+ * Serializes an inferred object graph into a compact binary snapshot
+ * 
+ * Layout (integers are unsigned LEB128 varints, signed values zigzag-encoded):
+ *   header    "JOGS", format version
+ *   classes   count, then per class: kind, binary name and, for models, the field names
+ *   strings   count, then per string: UTF-8 byte length and bytes
+ *   records   count, then one record per object, collection, array or map in post-order
+ * 
+ * A map record holds its entry count, then a key and a value per entry. Enum keys and
+ * values are stored by name like enum collection elements and resolved by the loader.
+ * 
+ * Records refer to the values they contain by record index. Post-order means those
+ * records always come first, so SnapshotLoader rebuilds the graph in one flat pass;
+ * the last record is the root. Which fields are set, element types and collection
+ * implementations follow the same ClassPlan rules as source generation.
+ */
+final class SnapshotWriter {
+    
+    static final byte[] MAGIC = { 'J', 'O', 'G', 'S' };
+    static final int VERSION = 2;
+    
+    // Class dictionary kinds
+    static final int CLASS_MODEL = 0;
+    static final int CLASS_COLLECTION = 1;
+    static final int CLASS_ARRAY = 2;
+    static final int CLASS_MAP = 3;
+    
+    // Value tags
+    static final int VALUE_NULL = 0;
+    static final int VALUE_FALSE = 1;
+    static final int VALUE_TRUE = 2;
+    static final int VALUE_INT = 3;
+    static final int VALUE_LONG = 4;
+    static final int VALUE_FLOAT = 5;
+    static final int VALUE_DOUBLE = 6;
+    static final int VALUE_STRING = 7;
+    static final int VALUE_CHAR = 8;
+    static final int VALUE_BYTE = 9;
+    static final int VALUE_SHORT = 10;
+    static final int VALUE_REF = 11;
+    
+    private final GenerationOptions options;
+    private final Map<Class<?>, Integer> classIds = new HashMap<>();
+    private final ByteOutput classTable = new ByteOutput();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final ByteOutput stringTable = new ByteOutput();
+    private final ByteOutput records = new ByteOutput();
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private int recordCount;
+    
+    SnapshotWriter(GenerationOptions options) {
+        this.options = options;
+    }
+    
+    /**
+     * Serialize the object graph described by a JSON object
+     */
+    byte[] write(Class<?> clazz, JsonObject jsonObject) {
+        pushObject(ClassPlan.of(clazz), jsonObject, 1);
+        while (!stack.isEmpty()) {
+            stack.peek().step();
+        }
+        
+        ByteOutput snapshot = new ByteOutput();
+        snapshot.writeBytes(MAGIC, 0, MAGIC.length);
+        snapshot.writeVarint(VERSION);
+        snapshot.writeVarint(classIds.size());
+        snapshot.writeBytes(classTable.buffer, 0, classTable.size);
+        snapshot.writeVarint(stringIds.size());
+        snapshot.writeBytes(stringTable.buffer, 0, stringTable.size);
+        snapshot.writeVarint(recordCount);
+        snapshot.writeBytes(records.buffer, 0, records.size);
+        return snapshot.toByteArray();
+    }
+    
+    private void pushObject(ClassPlan plan, JsonObject jsonObject, int depth) {
+        if (depth > options.getMaxDepth()) {
+            throw new IllegalStateException("Maximum depth " + options.getMaxDepth() + " exceeded at "
+                + plan.getSimpleName());
+        }
+        stack.push(new ObjectFrame(plan, jsonObject, depth));
+    }
+    
+    /**
+     * Pop the finished frame and hand its record index to the parent, if any
+     */
+    private void complete() {
+        stack.pop();
+        int recordIndex = recordCount++;
+        if (!stack.isEmpty()) {
+            stack.peek().childCompleted(recordIndex);
+        }
+    }
+    
+    // ========================================================================================
+    // DICTIONARIES
+    // ========================================================================================
+    
+    private int modelClassId(ClassPlan plan) {
+        Integer id = classIds.get(plan.getType());
+        if (id == null) {
+            id = classIds.size();
+            classIds.put(plan.getType(), id);
+            classTable.writeVarint(CLASS_MODEL);
+            classTable.writeString(plan.getType().getName());
+            classTable.writeVarint(plan.getFields().length);
+            for (ClassPlan.FieldPlan field : plan.getFields()) {
+                classTable.writeString(field.getName());
+            }
+        }
+        return id;
+    }
+    
+    /**
+     * Collections and maps are keyed by their implementation class, arrays by the array class
+     */
+    private int containerClassId(Class<?> key, int kind, Class<?> named) {
+        Integer id = classIds.get(key);
+        if (id == null) {
+            id = classIds.size();
+            classIds.put(key, id);
+            classTable.writeVarint(kind);
+            classTable.writeString(named.getName());
+        }
+        return id;
+    }
+    
+    private int stringId(String value) {
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = stringIds.size();
+            stringIds.put(value, id);
+            stringTable.writeString(value);
+        }
+        return id;
+    }
+    
+    // ========================================================================================
+    // VALUES
+    // ========================================================================================
+    
+    /**
+     * Tag for a scalar converted to the declared type, or -1 if the value does not fit it
+     * (source generation would not emit a usable setter call either)
+     */
+    private static int typedTag(Class<?> type, JsonElement element) {
+        if (element == null || !element.isJsonPrimitive()) {
+            return -1;
+        }
+        JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (type == String.class) {
+            return VALUE_STRING;
+        } else if (type.isEnum()) {
+            return primitive.isString() ? VALUE_STRING : -1;
+        } else if (type == int.class || type == Integer.class) {
+            return primitive.isNumber() ? VALUE_INT : -1;
+        } else if (type == long.class || type == Long.class) {
+            return primitive.isNumber() ? VALUE_LONG : -1;
+        } else if (type == double.class || type == Double.class) {
+            return primitive.isNumber() ? VALUE_DOUBLE : -1;
+        } else if (type == float.class || type == Float.class) {
+            return primitive.isNumber() ? VALUE_FLOAT : -1;
+        } else if (type == boolean.class || type == Boolean.class) {
+            return primitive.isBoolean() ? (primitive.getAsBoolean() ? VALUE_TRUE : VALUE_FALSE) : -1;
+        } else if (type == char.class || type == Character.class) {
+            return primitive.isString() && !primitive.getAsString().isEmpty() ? VALUE_CHAR : -1;
+        } else if (type == byte.class || type == Byte.class) {
+            return primitive.isNumber() ? VALUE_BYTE : -1;
+        } else if (type == short.class || type == Short.class) {
+            return primitive.isNumber() ? VALUE_SHORT : -1;
+        }
+        return -1;
+    }
+    
+    /**
+     * Tag for a collection element of no particular scalar type, chosen from the JSON value
+     */
+    private static int untypedTag(JsonPrimitive primitive) {
+        if (primitive.isBoolean()) {
+            return primitive.getAsBoolean() ? VALUE_TRUE : VALUE_FALSE;
+        } else if (primitive.isString()) {
+            return VALUE_STRING;
+        }
+        String number = primitive.getAsString();
+        if (number.indexOf('.') >= 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0) {
+            return VALUE_DOUBLE;
+        }
+        try {
+            long value = Long.parseLong(number);
+            return value == (int) value ? VALUE_INT : VALUE_LONG;
+        } catch (NumberFormatException e) {
+            return VALUE_DOUBLE;
+        }
+    }
+    
+    private void writeValue(int tag, JsonPrimitive primitive) {
+        records.writeVarint(tag);
+        switch (tag) {
+            case VALUE_INT:
+                records.writeVarlong(zigzag(primitive.getAsInt()));
+                break;
+            case VALUE_LONG:
+                records.writeVarlong(zigzag(primitive.getAsLong()));
+                break;
+            case VALUE_BYTE:
+                records.writeVarlong(zigzag(primitive.getAsByte()));
+                break;
+            case VALUE_SHORT:
+                records.writeVarlong(zigzag(primitive.getAsShort()));
+                break;
+            case VALUE_FLOAT:
+                records.writeFixed(Float.floatToIntBits(primitive.getAsFloat()), 4);
+                break;
+            case VALUE_DOUBLE:
+                records.writeFixed(Double.doubleToLongBits(primitive.getAsDouble()), 8);
+                break;
+            case VALUE_CHAR:
+                records.writeVarint(primitive.getAsString().charAt(0));
+                break;
+            case VALUE_STRING:
+                records.writeVarint(stringId(primitive.getAsString()));
+                break;
+            default:
+                // NULL, TRUE and FALSE carry no payload
+                break;
+        }
+    }
+    
+    private void writeReference(int recordIndex) {
+        records.writeVarint(VALUE_REF);
+        records.writeVarint(recordIndex);
+    }
+    
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    // ========================================================================================
+    // FRAMES
+    // ========================================================================================
+    
+    private interface Frame {
+        /**
+         * Push the next nested value, or write this record and complete
+         */
+        void step();
+        
+        /**
+         * Called with the record index of the nested value pushed last
+         */
+        void childCompleted(int recordIndex);
+    }
+    
+    private final class ObjectFrame implements Frame {
+        private final ClassPlan plan;
+        private final JsonObject jsonObject;
+        private final int depth;
+        private final int[] nestedRecords;
+        private int fieldIndex;
+        private int pendingField = -1;
+        
+        ObjectFrame(ClassPlan plan, JsonObject jsonObject, int depth) {
+            this.plan = plan;
+            this.jsonObject = jsonObject;
+            this.depth = depth;
+            this.nestedRecords = new int[plan.getFields().length];
+            Arrays.fill(nestedRecords, -1);
+        }
+        
+        @Override
+        public void step() {
+            ClassPlan.FieldPlan[] fields = plan.getFields();
+            while (fieldIndex < fields.length) {
+                int index = fieldIndex++;
+                ClassPlan.FieldPlan field = fields[index];
+                JsonElement jsonElement = jsonObject.get(field.getName());
+                if (jsonElement == null) continue;
+                
+                if (field.isMapType() && jsonElement.isJsonObject()) {
+                    pendingField = index;
+                    stack.push(new MapFrame(field, jsonElement.getAsJsonObject(), depth));
+                    return;
+                }
+                if (!field.isPrimitiveOrString() && jsonElement.isJsonObject()) {
+                    pendingField = index;
+                    pushObject(ClassPlan.of(field.getType()), jsonElement.getAsJsonObject(), depth + 1);
+                    return;
+                }
+                if (field.isCollectionType() && jsonElement.isJsonArray()) {
+                    pendingField = index;
+                    stack.push(new CollectionFrame(field, jsonElement.getAsJsonArray(), depth));
+                    return;
+                }
+            }
+            
+            writeRecord(fields);
+            complete();
+        }
+        
+        @Override
+        public void childCompleted(int recordIndex) {
+            nestedRecords[pendingField] = recordIndex;
+        }
+        
+        private void writeRecord(ClassPlan.FieldPlan[] fields) {
+            int[] tags = new int[fields.length];
+            int members = 0;
+            for (int i = 0; i < fields.length; i++) {
+                tags[i] = nestedRecords[i] >= 0 ? VALUE_REF
+                    : fields[i].isPrimitiveOrString() || fields[i].getType().isEnum()
+                        ? typedTag(fields[i].getType(), jsonObject.get(fields[i].getName())) : -1;
+                if (tags[i] >= 0) members++;
+            }
+            
+            records.writeVarint(modelClassId(plan));
+            records.writeVarint(members);
+            for (int i = 0; i < fields.length; i++) {
+                if (tags[i] < 0) continue;
+                records.writeVarint(i);
+                if (tags[i] == VALUE_REF) {
+                    writeReference(nestedRecords[i]);
+                } else {
+                    writeValue(tags[i], jsonObject.get(fields[i].getName()).getAsJsonPrimitive());
+                }
+            }
+        }
+    }
+    
+    private final class CollectionFrame implements Frame {
+        private final Class<?> fieldType;
+        private final JsonArray jsonArray;
+        private final Class<?> elementType;
+        private final int depth;
+        private final int[] elementRecords;
+        private int index;
+        
+        CollectionFrame(ClassPlan.FieldPlan field, JsonArray jsonArray, int depth) {
+            this.fieldType = field.getType();
+            this.jsonArray = jsonArray;
+            this.depth = depth;
+            this.elementType = fieldType.isArray() ? fieldType.getComponentType() : field.getElementType(jsonArray);
+            this.elementRecords = new int[jsonArray.size()];
+            Arrays.fill(elementRecords, -1);
+        }
+        
+        @Override
+        public void step() {
+            while (index < jsonArray.size()) {
+                JsonElement element = jsonArray.get(index++);
+                boolean objectElement = fieldType.isArray()
+                    ? !JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(elementType)
+                    : elementType != null;
+                if (element.isJsonObject() && objectElement) {
+                    pushObject(ClassPlan.of(elementType), element.getAsJsonObject(), depth + 1);
+                    return;
+                }
+            }
+            
+            writeRecord();
+            complete();
+        }
+        
+        @Override
+        public void childCompleted(int recordIndex) {
+            elementRecords[index - 1] = recordIndex;
+        }
+        
+        private void writeRecord() {
+            boolean scalarElements = JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(elementType);
+            if (fieldType.isArray()) {
+                records.writeVarint(containerClassId(fieldType, CLASS_ARRAY, elementType));
+            } else {
+                Class<?> implementation = JsonToObjectGenerator.CollectionHandler.getImplementationClass(fieldType);
+                records.writeVarint(containerClassId(implementation, CLASS_COLLECTION, implementation));
+            }
+            records.writeVarint(jsonArray.size());
+            
+            for (int i = 0; i < jsonArray.size(); i++) {
+                JsonElement element = jsonArray.get(i);
+                int tag = scalarElements ? typedTag(elementType, element) : -1;
+                if (elementRecords[i] >= 0) {
+                    writeReference(elementRecords[i]);
+                } else if (tag >= 0) {
+                    writeValue(tag, element.getAsJsonPrimitive());
+                } else if (!fieldType.isArray() && element.isJsonPrimitive()) {
+                    writeValue(untypedTag(element.getAsJsonPrimitive()), element.getAsJsonPrimitive());
+                } else {
+                    records.writeVarint(VALUE_NULL);
+                }
+            }
+        }
+    }
+    
+    /**
+     * A map field: model values become records of their own, other entries are written inline.
+     * Entries source generation would skip (nested arrays, unconvertible keys) are left out.
+     */
+    private final class MapFrame implements Frame {
+        private final Class<?> fieldType;
+        private final Class<?> keyType;
+        private final Class<?> valueType;
+        private final int depth;
+        private final List<Map.Entry<String, JsonElement>> entries;
+        private final int[] valueRecords;
+        private int index;
+        
+        MapFrame(ClassPlan.FieldPlan field, JsonObject jsonObject, int depth) {
+            this.fieldType = field.getType();
+            this.keyType = field.getKeyType();
+            this.valueType = field.getValueType();
+            this.depth = depth;
+            this.entries = new ArrayList<>(jsonObject.entrySet());
+            this.valueRecords = new int[entries.size()];
+            Arrays.fill(valueRecords, -1);
+        }
+        
+        @Override
+        public void step() {
+            while (index < entries.size()) {
+                JsonElement value = entries.get(index++).getValue();
+                if (value.isJsonObject() && JsonToObjectGenerator.TypeAnalyzer.isModelType(valueType)) {
+                    pushObject(ClassPlan.of(valueType), value.getAsJsonObject(), depth + 1);
+                    return;
+                }
+            }
+            
+            writeRecord();
+            complete();
+        }
+        
+        @Override
+        public void childCompleted(int recordIndex) {
+            valueRecords[index - 1] = recordIndex;
+        }
+        
+        private void writeRecord() {
+            Class<?> implementation = JsonToObjectGenerator.CollectionHandler.getImplementationClass(fieldType);
+            if (!Map.class.isAssignableFrom(implementation)) {
+                implementation = HashMap.class;
+            }
+            
+            boolean scalarValues = valueType != null
+                && (JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(valueType) || valueType.isEnum());
+            int[] keyTags = new int[entries.size()];
+            int[] valueTags = new int[entries.size()];
+            int count = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                JsonElement value = entries.get(i).getValue();
+                int tag = scalarValues ? typedTag(valueType, value) : -1;
+                keyTags[i] = keyTag(entries.get(i).getKey());
+                valueTags[i] = valueRecords[i] >= 0 ? VALUE_REF
+                    : tag >= 0 ? tag
+                    : value.isJsonPrimitive() ? untypedTag(value.getAsJsonPrimitive())
+                    : value.isJsonNull() ? VALUE_NULL : -1;
+                if (keyTags[i] >= 0 && valueTags[i] >= 0) count++;
+            }
+            
+            records.writeVarint(containerClassId(implementation, CLASS_MAP, implementation));
+            records.writeVarint(count);
+            for (int i = 0; i < entries.size(); i++) {
+                if (keyTags[i] < 0 || valueTags[i] < 0) continue;
+                writeValue(keyTags[i], keyPrimitive(entries.get(i).getKey()));
+                JsonElement value = entries.get(i).getValue();
+                if (valueTags[i] == VALUE_REF) {
+                    writeReference(valueRecords[i]);
+                } else {
+                    writeValue(valueTags[i], value.isJsonPrimitive() ? value.getAsJsonPrimitive() : null);
+                }
+            }
+        }
+        
+        /**
+         * Keys are converted like ValueConverter.getKeyValue converts them for source
+         */
+        private int keyTag(String key) {
+            if (keyType == null || keyType == String.class || keyType == Object.class) {
+                return VALUE_STRING;
+            }
+            return typedTag(keyType, keyPrimitive(key));
+        }
+        
+        private JsonPrimitive keyPrimitive(String key) {
+            if (keyType == Boolean.class) {
+                return new JsonPrimitive(Boolean.valueOf(key));
+            }
+            if (keyType != null && Number.class.isAssignableFrom(keyType)) {
+                try {
+                    return new JsonPrimitive(new BigDecimal(key));
+                } catch (NumberFormatException e) {
+                    // Left as a string, which no numeric key tag accepts
+                }
+            }
+            return new JsonPrimitive(key);
+        }
+    }
+    
+    // ========================================================================================
+    // OUTPUT BUFFER
+    // ========================================================================================
+    
+    private static final class ByteOutput {
+        private byte[] buffer = new byte[256];
+        private int size;
+        
+        void writeByte(int value) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = (byte) value;
+        }
+        
+        void writeBytes(byte[] bytes, int offset, int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+        
+        void writeVarint(int value) {
+            writeVarlong(value & 0xFFFFFFFFL);
+        }
+        
+        void writeVarlong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+        
+        void writeFixed(long value, int bytes) {
+            for (int i = 0; i < bytes; i++) {
+                writeByte((int) (value >>> (8 * i)));
+            }
+        }
+        
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            writeBytes(utf8, 0, utf8.length);
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+}
@@ -0,0 +1,559 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Consumer;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Single-pass code generation over a JsonTokenSource
+ * 
+ * Emits the same statements as the tree-based engines without building a JSON tree:
+ * nested objects and collections are generated as their tokens arrive, and an object's
+ * own declaration and setters follow once its closing brace is read. Scalars are kept
+ * as source handles until then, so nothing is decoded that is not emitted.
+ * 
+ * Differences from the tree engines, both only visible on unusual input:
+ * - nested values are generated in document order rather than field declaration order
+ *   (identical whenever the JSON keys follow the class, as generated JSON does)
+ * - untyped collections cannot peek at their first element, so the JSON-content element
+ *   type heuristic is not applied
+ * 
+ * With GenerationOptions.parentFirst(true) objects are declared as soon as they start and
+ * their scalar setters follow in document order; the setter linking a nested object,
+ * collection or map to its parent comes right after the child is complete. Nothing but
+ * the open frames is then held back from the output. Collections whose declaration needs
+ * information from the end of the array (List.of/Set.of, or a size the source cannot
+ * count ahead) keep only their element literals and variable names until ']'.
+ */
+final class StreamingCodeGenerator {
+    
+    private final JsonTokenSource source;
+    private final GenerationOptions options;
+    private final JsonToObjectGenerator.VariableNameManager variableNames =
+        new JsonToObjectGenerator.VariableNameManager();
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private final GenerationBudget budget;
+    private StringBuilder code = new StringBuilder();
+    
+    StreamingCodeGenerator(JsonTokenSource source, GenerationOptions options) {
+        CollectionSampling sampling = options.getSampling();
+        if (sampling != null && sampling.getMode() != CollectionSampling.Mode.FIRST && !source.countsElements()) {
+            throw new IllegalArgumentException(sampling.getMode().name().toLowerCase()
+                + " sampling needs array sizes up front, which this input cannot provide; use first(n)");
+        }
+        this.source = source;
+        this.options = options;
+        this.budget = GenerationBudget.start(options);
+    }
+    
+    /**
+     * Generate object creation code for the document's root object
+     */
+    String generate(Class<?> clazz) throws IOException {
+        begin(clazz);
+        while (!stack.isEmpty()) {
+            stack.peek().step();
+            budget.checkpoint(code.length());
+        }
+        return code.toString();
+    }
+    
+    /**
+     * Like generate(Class), but hands finished output to the sink whenever at least
+     * flushChars of it have built up, instead of returning it all at the end. The top-level
+     * buffer is only ever appended to, so whatever is in it is final.
+     */
+    void generate(Class<?> clazz, Consumer<String> sink, int flushChars) throws IOException {
+        StringBuilder rootCode = code;
+        long flushed = 0;
+        begin(clazz);
+        while (!stack.isEmpty()) {
+            stack.peek().step();
+            budget.checkpoint(flushed + code.length());
+            if (rootCode.length() >= flushChars) {
+                flushed += rootCode.length();
+                sink.accept(rootCode.toString());
+                rootCode.setLength(0);
+            }
+        }
+        sink.accept(rootCode.toString());
+        rootCode.setLength(0);
+    }
+    
+    private void begin(Class<?> clazz) throws IOException {
+        if (source.peek() != JsonToken.BEGIN_OBJECT) {
+            throw new IllegalStateException("Expected a JSON object but was " + source.peek());
+        }
+        source.advance();
+        ClassPlan plan = ClassPlan.of(clazz);
+        pushObject(plan, uniqueName(plan.getVariableBaseName()), 1);
+    }
+    
+    /**
+     * Accounting for this run against the options' limits
+     */
+    GenerationBudget getBudget() {
+        return budget;
+    }
+    
+    private String uniqueName(String baseName) {
+        return variableNames.allocate(baseName);
+    }
+    
+    private void pushObject(ClassPlan plan, String variableName, int depth) {
+        budget.enterObject(depth, plan, variableName);
+        stack.push(new ObjectFrame(plan, variableName, depth));
+    }
+    
+    private static boolean isScalar(JsonToken token) {
+        return token == JsonToken.STRING || token == JsonToken.NUMBER ||
+               token == JsonToken.BOOLEAN || token == JsonToken.NULL;
+    }
+    
+    // ========================================================================================
+    // FRAMES
+    // ========================================================================================
+    
+    private interface Frame {
+        /**
+         * Consume the next member or element, or finish at the closing token
+         */
+        void step() throws IOException;
+        
+        /**
+         * Called when a nested object pushed by this frame has been emitted
+         */
+        void childCompleted(String childVariable);
+    }
+    
+    /**
+     * Inside an object: one member per step, then declaration and setters at '}'
+     */
+    private final class ObjectFrame implements Frame {
+        private final ClassPlan plan;
+        private final String variableName;
+        private final int depth;
+        private final String[] nestedVariables;
+        private final long[] scalars;
+        private final boolean[] hasScalar;
+        private int pendingLink = -1;
+        
+        ObjectFrame(ClassPlan plan, String variableName, int depth) {
+            this.plan = plan;
+            this.variableName = variableName;
+            this.depth = depth;
+            int fieldCount = plan.getFields().length;
+            this.nestedVariables = new String[fieldCount];
+            this.scalars = new long[fieldCount];
+            this.hasScalar = new boolean[fieldCount];
+            if (options.isParentFirst()) {
+                appendDeclaration();
+            }
+        }
+        
+        @Override
+        public void step() throws IOException {
+            if (pendingLink >= 0) {
+                // The nested value pushed last is complete: link it right away
+                appendSetter(pendingLink, nestedVariables[pendingLink]);
+                pendingLink = -1;
+            }
+            
+            JsonToken token = source.peek();
+            if (token == JsonToken.END_OBJECT) {
+                source.advance();
+                stack.pop();
+                if (options.isParentFirst()) {
+                    code.append("\n");
+                } else {
+                    createMainObject();
+                }
+                if (!stack.isEmpty()) {
+                    stack.peek().childCompleted(variableName);
+                }
+                return;
+            }
+            
+            int index = source.nameIndex(plan);
+            source.advance();
+            if (index < 0) {
+                source.skipValue();
+                return;
+            }
+            
+            ClassPlan.FieldPlan field = plan.getFields()[index];
+            JsonToken valueToken = source.peek();
+            if (options.isParentFirst() && !isScalar(valueToken)) {
+                pendingLink = index;
+            }
+            if (valueToken == JsonToken.BEGIN_OBJECT && field.isMapType()) {
+                source.advance();
+                nestedVariables[index] = uniqueName(field.getMapVariableBaseName());
+                budget.enterNode();
+                stack.push(new MapFrame(field, nestedVariables[index], depth));
+            } else if (valueToken == JsonToken.BEGIN_OBJECT && !field.isPrimitiveOrString()) {
+                source.advance();
+                ClassPlan nestedPlan = ClassPlan.of(field.getType());
+                nestedVariables[index] = uniqueName(nestedPlan.getVariableBaseName());
+                pushObject(nestedPlan, nestedVariables[index], depth + 1);
+            } else if (valueToken == JsonToken.BEGIN_ARRAY && field.isCollectionType()) {
+                nestedVariables[index] = uniqueName(field.getCollectionVariableBaseName());
+                budget.enterNode();
+                stack.push(new CollectionFrame(field, nestedVariables[index], depth));
+            } else if (isScalar(valueToken) && (field.isPrimitiveOrString() || field.getType().isEnum())) {
+                scalars[index] = source.captureScalar();
+                hasScalar[index] = true;
+                source.advance();
+                if (options.isParentFirst() && !source.isNull(scalars[index])) {
+                    code.append(variableName).append(".").append(field.getSetterName()).append("(");
+                    source.appendValue(scalars[index], field.getType(), code);
+                    code.append(");\n");
+                }
+            } else {
+                pendingLink = -1;
+                source.skipValue();
+            }
+        }
+        
+        @Override
+        public void childCompleted(String childVariable) {
+            // Nested object variables are recorded when the child is pushed
+        }
+        
+        private void appendDeclaration() {
+            code.append(plan.getSimpleName()).append(" ").append(variableName)
+                .append(" = new ").append(plan.getSimpleName()).append("();\n");
+        }
+        
+        private void appendSetter(int fieldIndex, String value) {
+            code.append(variableName).append(".").append(plan.getFields()[fieldIndex].getSetterName())
+                .append("(").append(value).append(");\n");
+        }
+        
+        private void createMainObject() {
+            appendDeclaration();
+            
+            ClassPlan.FieldPlan[] fields = plan.getFields();
+            for (int i = 0; i < fields.length; i++) {
+                if (nestedVariables[i] != null) {
+                    appendSetter(i, nestedVariables[i]);
+                } else if (hasScalar[i] && !source.isNull(scalars[i])) {
+                    code.append(variableName).append(".").append(fields[i].getSetterName()).append("(");
+                    source.appendValue(scalars[i], fields[i].getType(), code);
+                    code.append(");\n");
+                }
+            }
+            
+            code.append("\n");
+        }
+    }
+    
+    /**
+     * Inside a collection or array: one element per step, closing statements at ']'
+     * 
+     * When the declaration cannot be written up front (array size unknown to the source,
+     * or List.of/Set.of eligibility not yet known) element code is collected in a side
+     * buffer and spliced in once the array ends.
+     */
+    private final class CollectionFrame implements Frame {
+        private final ClassPlan.FieldPlan field;
+        private final Class<?> fieldType;
+        private final Class<?> elementType;
+        private final String collectionVarName;
+        private final int depth;
+        private final String immutableFactory;
+        private final StringBuilder parentCode;
+        private final boolean declareAtEnd;
+        private final List<String> elementValues = new ArrayList<>();
+        private final List<Integer> arrayIndexes = new ArrayList<>();
+        private final List<Integer> elementBlockEnds = new ArrayList<>();
+        private final Set<String> distinctLiterals = new HashSet<>();
+        private boolean immutableSupported = true;
+        private int[] selected;
+        private int firstOnly;
+        private int nextSelected;
+        private int position;
+        private int index;
+        
+        CollectionFrame(ClassPlan.FieldPlan field, String collectionVarName, int depth) throws IOException {
+            this.field = field;
+            this.fieldType = field.getType();
+            this.collectionVarName = collectionVarName;
+            this.depth = depth;
+            this.elementType = fieldType.isArray() ? fieldType.getComponentType() : field.getElementType(null);
+            this.immutableFactory = fieldType.isArray() ? null
+                : JsonToObjectGenerator.CollectionHandler.getImmutableFactory(
+                    options.getCollectionStrategy(), fieldType, elementType);
+            
+            CollectionSampling sampling = options.getSampling();
+            int size = needsSize() || sampling != null ? source.countElements() : -1;
+            this.selected = sampling != null && size >= 0 ? sampling.select(size) : null;
+            // Uncounted arrays only take first(n) (see the constructor): elements are counted as they pass
+            this.firstOnly = sampling != null && size < 0 ? sampling.getMaxElements() : -1;
+            if (selected != null) {
+                code.append("// ").append(sampling.describe(field.getName(), selected.length, size)).append("\n");
+                size = selected.length;
+            }
+            source.advance();
+            
+            boolean declarationDeferred = immutableFactory != null || (needsSize() && size < 0);
+            this.declareAtEnd = declarationDeferred && options.isParentFirst();
+            if (declarationDeferred && !declareAtEnd) {
+                this.parentCode = code;
+                code = new StringBuilder();
+            } else {
+                this.parentCode = null;
+                if (!declareAtEnd) {
+                    code.append(declaration(size));
+                }
+            }
+        }
+        
+        private boolean needsSize() {
+            return fieldType.isArray() || options.getCollectionStrategy() == CollectionStrategy.PRESIZED;
+        }
+        
+        private String declaration(int size) {
+            if (fieldType.isArray()) {
+                String elementTypeName = elementType.getSimpleName();
+                return elementTypeName + "[] " + collectionVarName + " = new " + elementTypeName + "[" + size + "];\n";
+            }
+            return field.getDeclaredTypeName() + "<" + elementType.getSimpleName() + "> " + collectionVarName
+                + " = " + JsonToObjectGenerator.CollectionHandler.getConstructorExpression(
+                    options.getCollectionStrategy(), fieldType, elementType, size)
+                + ";\n";
+        }
+        
+        @Override
+        public void step() throws IOException {
+            JsonToken token = source.peek();
+            if (token == JsonToken.END_ARRAY) {
+                source.advance();
+                stack.pop();
+                finish();
+                if (firstOnly >= 0 && position > firstOnly) {
+                    // The size is only known now, so the summary follows the collection
+                    code.append("// ").append(options.getSampling().describe(field.getName(), firstOnly, position))
+                        .append("\n");
+                }
+                return;
+            }
+            
+            if (selected != null && !isSelected(position++)
+                || firstOnly >= 0 && position++ >= firstOnly) {
+                // Not sampled: passed over at token level, never decoded
+                source.skipValue();
+                return;
+            }
+            
+            int current = index++;
+            boolean objectElement = fieldType.isArray()
+                ? !JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(elementType)
+                : elementType != null;
+            
+            if (token == JsonToken.BEGIN_OBJECT && objectElement) {
+                source.advance();
+                ClassPlan elementPlan = ClassPlan.of(elementType);
+                if ("Set.of".equals(immutableFactory) && overridesEquals()) {
+                    immutableSupported = false;
+                }
+                pushObject(elementPlan, uniqueName(elementPlan.getVariableBaseName()), depth + 1);
+            } else if (isScalar(token) && fieldType.isArray()) {
+                if (token != JsonToken.NULL && JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(elementType)) {
+                    StringBuilder value = new StringBuilder();
+                    source.appendValue(source.captureScalar(), elementType, value);
+                    emitElement(current, value.toString());
+                }
+                source.advance();
+            } else if (isScalar(token) && token != JsonToken.NULL) {
+                StringBuilder value = new StringBuilder();
+                if (elementType != null && elementType.isEnum()) {
+                    source.appendValue(source.captureScalar(), elementType, value);
+                } else {
+                    source.appendPrimitive(source.captureScalar(), value);
+                }
+                source.advance();
+                String literal = value.toString();
+                if ("Set.of".equals(immutableFactory) && !distinctLiterals.add(literal)) {
+                    immutableSupported = false;
+                }
+                emitElement(current, literal);
+            } else {
+                source.skipValue();
+                if (!fieldType.isArray()) {
+                    immutableSupported = false;
+                    code.append("// Warning: Unhandled element type in collection: ")
+                        .append(token == JsonToken.NULL ? "null" : token.toString()).append("\n");
+                    emitElement(current, "null");
+                }
+            }
+        }
+        
+        @Override
+        public void childCompleted(String childVariable) {
+            emitElement(index - 1, childVariable);
+        }
+        
+        private boolean isSelected(int elementPosition) {
+            if (nextSelected < selected.length && selected[nextSelected] == elementPosition) {
+                nextSelected++;
+                return true;
+            }
+            return false;
+        }
+        
+        private boolean overridesEquals() {
+            try {
+                return elementType.getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+            } catch (NoSuchMethodException e) {
+                return true;
+            }
+        }
+        
+        private void emitElement(int elementIndex, String value) {
+            if (declareAtEnd) {
+                // Element objects are already written; only the statements that use them wait
+                elementValues.add(value);
+                arrayIndexes.add(elementIndex);
+                return;
+            }
+            if (fieldType.isArray()) {
+                code.append(collectionVarName).append("[").append(elementIndex).append("] = ")
+                    .append(value).append(";\n");
+                return;
+            }
+            if (parentCode != null) {
+                // Only a deferred declaration needs the elements again at ']'
+                elementValues.add(value);
+            }
+            if (immutableFactory != null) {
+                // Statement deferred until the strategy is decided; remember where this element's code ends
+                elementBlockEnds.add(code.length());
+            } else {
+                JsonToObjectGenerator.CollectionHandler.addElement(fieldType, collectionVarName, value, code);
+            }
+        }
+        
+        private void finish() {
+            if (declareAtEnd) {
+                appendDeferredStatements();
+                code.append("\n");
+                return;
+            }
+            if (parentCode == null) {
+                code.append("\n");
+                return;
+            }
+            
+            StringBuilder elementsCode = code;
+            code = parentCode;
+            if (immutableFactory != null && immutableSupported) {
+                code.append(elementsCode)
+                    .append(field.getDeclaredTypeName()).append("<").append(elementType.getSimpleName()).append("> ")
+                    .append(collectionVarName).append(" = ").append(immutableFactory).append("(")
+                    .append(String.join(", ", elementValues)).append(");\n");
+            } else if (immutableFactory != null) {
+                code.append(declaration(elementValues.size()));
+                int blockStart = 0;
+                for (int i = 0; i < elementValues.size(); i++) {
+                    code.append(elementsCode, blockStart, elementBlockEnds.get(i));
+                    JsonToObjectGenerator.CollectionHandler.addElement(fieldType, collectionVarName,
+                                                                       elementValues.get(i), code);
+                    blockStart = elementBlockEnds.get(i);
+                }
+                code.append(elementsCode, blockStart, elementsCode.length());
+            } else {
+                code.append(declaration(fieldType.isArray() ? index : elementValues.size())).append(elementsCode);
+            }
+            code.append("\n");
+        }
+        
+        /**
+         * Parent-first: declaration and element statements, all elements being declared by now
+         */
+        private void appendDeferredStatements() {
+            if (immutableFactory != null && immutableSupported) {
+                code.append(field.getDeclaredTypeName()).append("<").append(elementType.getSimpleName()).append("> ")
+                    .append(collectionVarName).append(" = ").append(immutableFactory).append("(")
+                    .append(String.join(", ", elementValues)).append(");\n");
+                return;
+            }
+            code.append(declaration(fieldType.isArray() ? index : elementValues.size()));
+            for (int i = 0; i < elementValues.size(); i++) {
+                if (fieldType.isArray()) {
+                    code.append(collectionVarName).append("[").append(arrayIndexes.get(i)).append("] = ")
+                        .append(elementValues.get(i)).append(";\n");
+                } else {
+                    JsonToObjectGenerator.CollectionHandler.addElement(fieldType, collectionVarName,
+                                                                       elementValues.get(i), code);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Inside a map-typed object: one entry per step. Map declarations need no size, so
+     * the declaration is written up front and entries follow in document order.
+     */
+    private final class MapFrame implements Frame {
+        private final String mapVarName;
+        private final Class<?> keyType;
+        private final Class<?> valueType;
+        private final int depth;
+        private String pendingKey;
+        
+        MapFrame(ClassPlan.FieldPlan field, String mapVarName, int depth) {
+            this.mapVarName = mapVarName;
+            this.keyType = field.getKeyType();
+            this.valueType = field.getValueType();
+            this.depth = depth;
+            code.append(field.getDeclaredTypeName()).append("<")
+                .append(keyType != null ? keyType.getSimpleName() : "String").append(", ")
+                .append(valueType != null ? valueType.getSimpleName() : "Object").append("> ")
+                .append(mapVarName).append(" = ")
+                .append(JsonToObjectGenerator.CollectionHandler.getMapConstructorExpression(field.getType(), keyType))
+                .append(";\n");
+        }
+        
+        @Override
+        public void step() throws IOException {
+            JsonToken token = source.peek();
+            if (token == JsonToken.END_OBJECT) {
+                source.advance();
+                stack.pop();
+                code.append("\n");
+                return;
+            }
+            
+            String key = JsonToObjectGenerator.ValueConverter.getKeyValue(source.name(), keyType);
+            source.advance();
+            JsonToken valueToken = source.peek();
+            if (valueToken == JsonToken.BEGIN_OBJECT && JsonToObjectGenerator.TypeAnalyzer.isModelType(valueType)) {
+                source.advance();
+                ClassPlan valuePlan = ClassPlan.of(valueType);
+                pendingKey = key;
+                pushObject(valuePlan, uniqueName(valuePlan.getVariableBaseName()), depth + 1);
+            } else if (isScalar(valueToken)) {
+                long handle = source.captureScalar();
+                source.advance();
+                StringBuilder value = new StringBuilder();
+                if (source.isNull(handle)) {
+                    value.append("null");
+                } else if (valueType != null &&
+                           (JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(valueType) || valueType.isEnum())) {
+                    source.appendValue(handle, valueType, value);
+                } else {
+                    source.appendPrimitive(handle, value);
+                }
+                JsonToObjectGenerator.CollectionHandler.putEntry(mapVarName, key, value.toString(), code);
+            } else {
+                source.skipValue();
+                code.append("// Warning: Unhandled value type in map: ").append(valueToken).append("\n");
+            }
+        }
+        
+        @Override
+        public void childCompleted(String childVariable) {
+            JsonToObjectGenerator.CollectionHandler.putEntry(mapVarName, pendingKey, childVariable, code);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+import java.util.Arrays;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * Structural index (tape) over a UTF-8 JSON document
+ * 
+ * One pass over the bytes records every object and array in document (pre-)order as two
+ * longs on a flat tape:
+ * 
+ *   word 0: begin offset (upper 32 bits) | end offset, exclusive (lower 32 bits)
+ *   word 1: direct member/element count (upper 32 bits) | index just past the subtree (lower 32 bits)
+ * 
+ * Nothing is decoded: only quotes, backslashes, brackets and commas are looked at. The
+ * tape costs 16 bytes per container, against several objects per member for a Gson tree.
+ * 
+ * With it a later stage can size a collection before reading it, jump straight to (or
+ * over) any subtree, and split an array into disjoint slices for separate threads:
+ * 
+ *   StructuralIndex index = StructuralIndex.build(json);
+ *   for (int[] slice : index.slices(0, threads)) {
+ *       for (int element = slice[0]; element < slice[1]; element = index.skip(element)) {
+ *           // element is one subtree of the root array; index.tokenizer(element) reads it
+ *       }
+ *   }
+ */
+final class StructuralIndex {
+    
+    private static final long LOW_BITS = 0xFFFFFFFFL;
+    
+    private final byte[] buffer;
+    private final long[] tape;
+    private final int size;
+    
+    private StructuralIndex(byte[] buffer, long[] tape, int size) {
+        this.buffer = buffer;
+        this.tape = tape;
+        this.size = size;
+    }
+    
+    public static StructuralIndex build(byte[] json) throws MalformedJsonException {
+        return build(json, 0, json.length);
+    }
+    
+    /**
+     * Index the bytes in [offset, offset + length). Offsets on the tape are absolute
+     * positions in the buffer.
+     */
+    public static StructuralIndex build(byte[] json, int offset, int length) throws MalformedJsonException {
+        int limit = offset + length;
+        long[] tape = new long[Math.max(16, length / 16)];
+        int size = 0;
+        int[] open = new int[32];
+        int depth = 0;
+        boolean expectValue = false;
+        
+        for (int i = offset; i < limit; i++) {
+            byte b = json[i];
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') continue;
+            if (expectValue && b != '}' && b != ']') {
+                // First token of a member or element: count it against the enclosing container
+                tape[2 * open[depth - 1] + 1] += 1L << 32;
+                expectValue = false;
+            }
+            switch (b) {
+                case '"':
+                    i++;
+                    while (i < limit && json[i] != '"') {
+                        i += json[i] == '\\' ? 2 : 1;
+                    }
+                    if (i >= limit) throw syntaxError("Unterminated string", i);
+                    break;
+                case '{':
+                case '[':
+                    if (2 * size + 2 > tape.length) {
+                        tape = Arrays.copyOf(tape, tape.length * 2);
+                    }
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, depth * 2);
+                    }
+                    tape[2 * size] = (long) i << 32;
+                    tape[2 * size + 1] = 0;
+                    open[depth++] = size++;
+                    expectValue = true;
+                    break;
+                case '}':
+                case ']':
+                    if (depth == 0) throw syntaxError("Unbalanced '" + (char) b + "'", i);
+                    int container = open[--depth];
+                    int begin = (int) (tape[2 * container] >>> 32);
+                    if ((json[begin] == '{') != (b == '}')) {
+                        throw syntaxError("Mismatched '" + (char) b + "'", i);
+                    }
+                    tape[2 * container] |= (i + 1) & LOW_BITS;
+                    tape[2 * container + 1] |= size;
+                    expectValue = false;
+                    break;
+                case ',':
+                    if (depth > 0) expectValue = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (depth > 0) {
+            throw syntaxError("Unterminated container", limit);
+        }
+        if (tape.length > 2 * size) {
+            // Sized for a dense document up front; keep only what was used
+            tape = Arrays.copyOf(tape, 2 * size);
+        }
+        return new StructuralIndex(json, tape, size);
+    }
+    
+    private static MalformedJsonException syntaxError(String message, int position) {
+        return new MalformedJsonException(message + " at byte " + position);
+    }
+    
+    // ========================================================================================
+    // NAVIGATION
+    // ========================================================================================
+    
+    /**
+     * Number of objects and arrays in the document
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Offset of the opening bracket
+     */
+    public int begin(int container) {
+        return (int) (tape[2 * container] >>> 32);
+    }
+    
+    /**
+     * Offset just past the closing bracket
+     */
+    public int end(int container) {
+        return (int) (tape[2 * container] & LOW_BITS);
+    }
+    
+    public boolean isObject(int container) {
+        return buffer[begin(container)] == '{';
+    }
+    
+    /**
+     * Direct members of an object or elements of an array
+     */
+    public int count(int container) {
+        return (int) (tape[2 * container + 1] >>> 32);
+    }
+    
+    /**
+     * Index of the first container after this one's subtree, i.e. its next sibling if
+     * it has one. size() when the subtree runs to the end of the document.
+     */
+    public int skip(int container) {
+        return (int) (tape[2 * container + 1] & LOW_BITS);
+    }
+    
+    /**
+     * Containers directly inside this one, in document order
+     */
+    public int[] children(int container) {
+        int count = 0;
+        for (int child = container + 1; child < skip(container); child = skip(child)) {
+            count++;
+        }
+        int[] children = new int[count];
+        int next = 0;
+        for (int child = container + 1; child < skip(container); child = skip(child)) {
+            children[next++] = child;
+        }
+        return children;
+    }
+    
+    /**
+     * Container whose opening bracket is at the given offset, or -1 if there is none.
+     * A binary search over the tape; tokenizers walk it in order instead.
+     */
+    public int containerAt(int offset) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int begin = begin(mid);
+            if (begin < offset) {
+                low = mid + 1;
+            } else if (begin > offset) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Split the child containers of an array into at most {@code parts} contiguous,
+     * disjoint ranges [from, to) of container indices with about the same number of bytes
+     * each. Scalar elements are not containers and are not part of any slice.
+     */
+    public int[][] slices(int container, int parts) {
+        int[] children = children(container);
+        if (children.length == 0 || parts <= 1) {
+            return children.length == 0 ? new int[0][] : new int[][] { { children[0], skip(container) } };
+        }
+        long totalBytes = 0;
+        for (int child : children) {
+            totalBytes += end(child) - begin(child);
+        }
+        
+        int[][] slices = new int[Math.min(parts, children.length)][];
+        int count = 0;
+        int from = 0;
+        long consumed = 0;
+        for (int i = 0; i < children.length; i++) {
+            consumed += end(children[i]) - begin(children[i]);
+            boolean last = i == children.length - 1;
+            if (last || (count < slices.length - 1 && consumed * slices.length >= totalBytes * (count + 1))) {
+                slices[count++] = new int[] { children[from], last ? skip(container) : children[i + 1] };
+                from = i + 1;
+            }
+        }
+        return Arrays.copyOf(slices, count);
+    }
+    
+    /**
+     * Tokenizer over one subtree, sharing this index for element counts and skips
+     */
+    ByteJsonTokenizer tokenizer(int container) {
+        return new ByteJsonTokenizer(buffer, begin(container), end(container) - begin(container), this, container);
+    }
+    
+    /**
+     * Bytes held by the tape itself
+     */
+    public long tapeBytes() {
+        return 16L + 8L * tape.length;
+    }
+}
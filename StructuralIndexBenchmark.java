@@ -0,0 +1,187 @@
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+/**
+ * Measures the structural index: build speed, memory against a Gson tree, and
+ * generation over disjoint array slices on several threads
+ * 
+ * The document is a root array of Department objects, each with its own employee
+ * list and string collections. Every element is generated on its own from a subtree
+ * tokenizer; the parallel runs must reproduce the single-threaded output exactly.
+ * 
+ * Usage: java StructuralIndexBenchmark [departments] [maxThreads]
+ */
+public class StructuralIndexBenchmark {
+    
+    private static final int ROUNDS = 5;
+    private static final int EMPLOYEES_PER_DEPARTMENT = 20;
+    
+    public static void main(String[] args) throws Exception {
+        int departments = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1])
+            : Math.max(1, Runtime.getRuntime().availableProcessors());
+        byte[] json = document(departments);
+        GenerationOptions options = GenerationOptions.defaults().collectionStrategy(CollectionStrategy.PRESIZED);
+        
+        System.out.println("=== Structural Index Benchmark ===\n");
+        System.out.printf("Document: %,d departments, %,d bytes%n%n", departments, json.length);
+        
+        // Build speed
+        StructuralIndex index = StructuralIndex.build(json);
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            StructuralIndex.build(json);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("Index build: %,d containers in %.1f ms (%.0f MB/s)%n",
+                          index.size(), best / 1e6, json.length / (best / 1e9) / 1e6);
+        
+        // Memory: tape against a Gson tree of the same document
+        long treeBytes = retainedBytes(() -> JsonParser.parseString(new String(json, StandardCharsets.UTF_8)));
+        System.out.printf("Tape:        %,14d bytes (%.1f per container)%n",
+                          index.tapeBytes(), (double) index.tapeBytes() / index.size());
+        System.out.printf("Gson tree:   %,14d bytes (approx., %.1fx the tape)%n%n",
+                          treeBytes, (double) treeBytes / index.tapeBytes());
+        
+        // Element counts from the tape instead of rescanning (PRESIZED asks for every array size)
+        String scanned = generateAll(json, index, options, false);
+        String indexed = generateAll(json, index, options, true);
+        System.out.printf("Sequential, rescanning sizes: %8.1f ms%n", time(() -> generateAll(json, index, options, false)));
+        System.out.printf("Sequential, sizes from tape:  %8.1f ms%n%n", time(() -> generateAll(json, index, options, true)));
+        
+        // Disjoint slices of the root array on separate threads
+        boolean allMatch = scanned.equals(indexed);
+        System.out.printf("%-8s %10s %10s%n", "Threads", "ms", "Speedup");
+        double single = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            int parts = threads;
+            String[] output = new String[1];
+            double ms = time(() -> output[0] = generateParallel(index, options, parts));
+            if (threads == 1) single = ms;
+            allMatch &= output[0].equals(indexed);
+            System.out.printf("%-8d %10.1f %9.2fx%n", threads, ms, single / ms);
+            if (threads < maxThreads && threads * 2 > maxThreads) threads = maxThreads / 2;
+        }
+        
+        System.out.println("\nOutput parity: " + (allMatch ? "OK" : "FAILED"));
+        if (!allMatch) {
+            System.exit(1);
+        }
+    }
+    
+    // ========================================================================================
+    // GENERATION
+    // ========================================================================================
+    
+    /**
+     * Root array elements in order. Element boundaries always come from the index; useTape
+     * decides whether the tokenizers also use it for sizes and skips.
+     */
+    private static String generateAll(byte[] json, StructuralIndex index, GenerationOptions options,
+                                      boolean useTape) throws Exception {
+        StringBuilder code = new StringBuilder();
+        for (int element = 1; element < index.size(); element = index.skip(element)) {
+            code.append(generateElement(json, index, element, options, useTape));
+        }
+        return code.toString();
+    }
+    
+    private static String generateParallel(StructuralIndex index, GenerationOptions options, int parts)
+            throws Exception {
+        int[][] slices = index.slices(0, parts);
+        ExecutorService pool = Executors.newFixedThreadPool(slices.length);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int[] slice : slices) {
+                results.add(pool.submit(() -> {
+                    StringBuilder code = new StringBuilder();
+                    for (int element = slice[0]; element < slice[1]; element = index.skip(element)) {
+                        code.append(generateElement(null, index, element, options, true));
+                    }
+                    return code.toString();
+                }));
+            }
+            StringBuilder code = new StringBuilder();
+            for (Future<String> result : results) {
+                code.append(result.get());
+            }
+            return code.toString();
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    private static String generateElement(byte[] json, StructuralIndex index, int element,
+                                          GenerationOptions options, boolean useTape) throws Exception {
+        int begin = index.begin(element);
+        JsonTokenSource source = useTape
+            ? index.tokenizer(element)
+            : new ByteJsonTokenizer(json, begin, index.end(element) - begin);
+        return new StreamingCodeGenerator(source, options).generate(Department.class);
+    }
+    
+    // ========================================================================================
+    // MEASUREMENT
+    // ========================================================================================
+    
+    private interface Task {
+        void run() throws Exception;
+    }
+    
+    private static double time(Task task) throws Exception {
+        task.run();
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+    
+    /**
+     * Heap growth while the built value is still reachable (after forced collections)
+     */
+    private static long retainedBytes(Callable<JsonElement> build) throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        long before = usedAfterGc(runtime);
+        JsonElement value = build.call();
+        long after = usedAfterGc(runtime);
+        if (value.isJsonNull()) {
+            System.out.println("  (empty tree)");
+        }
+        return after - before;
+    }
+    
+    private static long usedAfterGc(Runtime runtime) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    // ========================================================================================
+    // INPUT
+    // ========================================================================================
+    
+    private static byte[] document(int departments) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder("[");
+        for (int d = 0; d < departments; d++) {
+            if (d > 0) json.append(",");
+            json.append("{\"name\":\"Department ").append(d).append("\",\"employees\":[");
+            for (int e = 0; e < EMPLOYEES_PER_DEPARTMENT; e++) {
+                if (e > 0) json.append(",");
+                json.append("{\"name\":\"Employee ").append(d).append('-').append(e)
+                    .append("\",\"age\":").append(20 + random.nextInt(45)).append("}");
+            }
+            json.append("],\"skills\":[\"java\",\"sql\",\"go\"],\"tasks\":[\"plan\",\"build\"]}");
+        }
+        return json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,448 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Seeded generator for synthetic model classes and matching JSON payloads
+ * 
+ * Produces a layered class graph (SynthRoot, then `depth` levels of `fanout` classes
+ * each) with scalar, nested object, collection and array fields, plus a recursive
+ * SynthNode type in the style of TreeNode. Payloads are streamed to disk with a
+ * JsonWriter until they reach the requested size, so multi-gigabyte files never
+ * exist in memory. The same seed always gives the same classes and payloads.
+ * 
+ * Payload shapes:
+ * - wide   root.items grows until the size is reached (many objects of one type,
+ *          exercises variable naming)
+ * - deep   root.node is a single SynthNode chain (exercises nesting depth); each link
+ *          also has a children tree of at most `fanout` nodes per level and `depth` levels
+ * - mixed  half of the size each
+ * 
+ * Output layout matches GoldenFileRunner, so a synthetic suite can be run directly:
+ *   <out>/src/*.java                     model sources
+ *   <out>/classes/                       compiled models
+ *   <out>/fixtures/SynthRoot/*.json      payloads
+ * 
+ * Usage:
+ *   java SyntheticDataGenerator --out synthetic --seed 42 --depth 3 --fanout 2 --shape wide --size 10MB --fixtures 1
+ *   java -cp synthetic/classes:... GoldenFileRunner --root synthetic --update
+ */
+public class SyntheticDataGenerator {
+    
+    private static final String[] SCALAR_TYPES = { "String", "int", "long", "double", "boolean" };
+    private static final String[] COLLECTION_KINDS = { "List", "Set", "Queue", "Deque", "Collection" };
+    private static final String[] FIELD_WORDS = {
+        "name", "code", "count", "total", "ratio", "active", "score", "label", "weight", "owner", "region", "flag"
+    };
+    private static final String ROOT_CLASS = "SynthRoot";
+    private static final String NODE_CLASS = "SynthNode";
+    
+    private final long seed;
+    private final int depth;
+    private final int fanout;
+    private final List<List<ModelClass>> levels = new ArrayList<>();
+    private final ModelClass root;
+    private final ModelClass node;
+    
+    SyntheticDataGenerator(long seed, int depth, int fanout) {
+        if (depth < 1 || fanout < 1) {
+            throw new IllegalArgumentException("depth and fanout must be at least 1");
+        }
+        this.seed = seed;
+        this.depth = depth;
+        this.fanout = fanout;
+        
+        Random random = new Random(seed);
+        this.node = new ModelClass(NODE_CLASS);
+        node.fields.add(Field.scalar("label", "String"));
+        node.fields.add(Field.scalar("level", "int"));
+        node.fields.add(Field.object("next", node));
+        node.fields.add(Field.collection("children", "List", node));
+        
+        for (int level = 1; level <= depth; level++) {
+            List<ModelClass> classes = new ArrayList<>();
+            for (int k = 0; k < fanout; k++) {
+                classes.add(new ModelClass("SynthL" + level + "_" + k));
+            }
+            levels.add(classes);
+        }
+        for (int level = 1; level <= depth; level++) {
+            for (ModelClass model : levels.get(level - 1)) {
+                addScalarFields(model, random, 2 + random.nextInt(4));
+                if (level < depth) {
+                    model.fields.add(Field.object("detail", pick(levels.get(level), random)));
+                    model.fields.add(Field.collection("parts", pick(COLLECTION_KINDS, random),
+                                                      pick(levels.get(level), random)));
+                }
+                if (random.nextBoolean()) {
+                    model.fields.add(Field.collection("labels", "List", null));
+                } else {
+                    model.fields.add(Field.array("values", "int"));
+                }
+            }
+        }
+        
+        this.root = new ModelClass(ROOT_CLASS);
+        root.fields.add(Field.scalar("name", "String"));
+        root.fields.add(Field.scalar("seed", "long"));
+        root.fields.add(Field.object("primary", pick(levels.get(0), random)));
+        root.fields.add(Field.collection("tags", "Set", null));
+        root.fields.add(Field.object("node", node));
+        root.fields.add(Field.collection("items", "List", pick(levels.get(0), random)));
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Path out = Paths.get("synthetic");
+        long seed = 42;
+        int depth = 3;
+        int fanout = 2;
+        String shape = "wide";
+        long size = 1 << 20;
+        int fixtures = 1;
+        boolean compile = true;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out": out = Paths.get(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--depth": depth = Integer.parseInt(args[++i]); break;
+                case "--fanout": fanout = Integer.parseInt(args[++i]); break;
+                case "--shape": shape = args[++i]; break;
+                case "--size": size = parseSize(args[++i]); break;
+                case "--fixtures": fixtures = Integer.parseInt(args[++i]); break;
+                case "--no-compile": compile = false; break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if (!shape.equals("wide") && !shape.equals("deep") && !shape.equals("mixed")) {
+            throw new IllegalArgumentException("Shape must be wide, deep or mixed: " + shape);
+        }
+        
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(seed, depth, fanout);
+        List<Path> sources = generator.writeSources(out.resolve("src"));
+        System.out.println("Wrote " + sources.size() + " model classes to " + out.resolve("src"));
+        if (compile) {
+            generator.compile(sources, out.resolve("classes"));
+            System.out.println("Compiled models to " + out.resolve("classes"));
+        }
+        
+        Path fixtureDir = out.resolve("fixtures").resolve(ROOT_CLASS);
+        Files.createDirectories(fixtureDir);
+        for (int i = 0; i < fixtures; i++) {
+            Path file = fixtureDir.resolve(shape + "_" + seed + "_" + i + ".json");
+            long start = System.nanoTime();
+            long[] stats = generator.writePayload(file, shape, size, seed + i);
+            System.out.printf("%s: %,d bytes, %,d objects, %,d ms%n", file, stats[0], stats[1],
+                              (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+    
+    // ========================================================================================
+    // MODEL SOURCES
+    // ========================================================================================
+    
+    private static final class ModelClass {
+        private final String name;
+        private final List<Field> fields = new ArrayList<>();
+        
+        ModelClass(String name) {
+            this.name = name;
+        }
+    }
+    
+    private static final class Field {
+        private final String name;
+        private final String kind;
+        private final String scalarType;
+        private final String collectionKind;
+        private final ModelClass target;
+        
+        private Field(String name, String kind, String scalarType, String collectionKind, ModelClass target) {
+            this.name = name;
+            this.kind = kind;
+            this.scalarType = scalarType;
+            this.collectionKind = collectionKind;
+            this.target = target;
+        }
+        
+        static Field scalar(String name, String type) {
+            return new Field(name, "scalar", type, null, null);
+        }
+        
+        static Field object(String name, ModelClass target) {
+            return new Field(name, "object", null, null, target);
+        }
+        
+        /**
+         * Collection of model objects, or of Strings when target is null
+         */
+        static Field collection(String name, String collectionKind, ModelClass target) {
+            return new Field(name, "collection", "String", collectionKind, target);
+        }
+        
+        static Field array(String name, String componentType) {
+            return new Field(name, "array", componentType, null, null);
+        }
+        
+        String javaType() {
+            switch (kind) {
+                case "scalar": return scalarType;
+                case "object": return target.name;
+                case "array": return scalarType + "[]";
+                default: return collectionKind + "<" + (target != null ? target.name : "String") + ">";
+            }
+        }
+    }
+    
+    private void addScalarFields(ModelClass model, Random random, int count) {
+        List<String> words = new ArrayList<>(Arrays.asList(FIELD_WORDS));
+        Collections.shuffle(words, random);
+        for (int i = 0; i < count; i++) {
+            model.fields.add(Field.scalar(words.get(i), pick(SCALAR_TYPES, random)));
+        }
+    }
+    
+    private static <T> T pick(List<T> values, Random random) {
+        return values.get(random.nextInt(values.size()));
+    }
+    
+    private static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+    
+    List<Path> writeSources(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        List<ModelClass> all = new ArrayList<>();
+        all.add(root);
+        all.add(node);
+        for (List<ModelClass> level : levels) {
+            all.addAll(level);
+        }
+        
+        List<Path> files = new ArrayList<>();
+        for (ModelClass model : all) {
+            Path file = dir.resolve(model.name + ".java");
+            Files.write(file, source(model).getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+        return files;
+    }
+    
+    private String source(ModelClass model) {
+        StringBuilder source = new StringBuilder();
+        source.append("import java.util.*;\n\n");
+        source.append("// Generated by SyntheticDataGenerator (seed ").append(seed).append(", depth ").append(depth)
+              .append(", fanout ").append(fanout).append(")\n");
+        source.append("public class ").append(model.name).append(" {\n");
+        for (Field field : model.fields) {
+            source.append("    private ").append(field.javaType()).append(" ").append(field.name).append(";\n");
+        }
+        for (Field field : model.fields) {
+            String property = JsonToObjectGenerator.StringUtils.capitalize(field.name);
+            String getter = field.javaType().equals("boolean") ? "is" : "get";
+            source.append("\n");
+            source.append("    public ").append(field.javaType()).append(" ").append(getter).append(property).append("() {\n");
+            source.append("        return ").append(field.name).append(";\n");
+            source.append("    }\n\n");
+            source.append("    public void set").append(property).append("(").append(field.javaType()).append(" ")
+                  .append(field.name).append(") {\n");
+            source.append("        this.").append(field.name).append(" = ").append(field.name).append(";\n");
+            source.append("    }\n");
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+    
+    void compile(List<Path> sources, Path classesDir) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No system Java compiler; run on a JDK or use --no-compile");
+        }
+        Files.createDirectories(classesDir);
+        List<String> arguments = new ArrayList<>(Arrays.asList("-d", classesDir.toString(), "-nowarn"));
+        for (Path source : sources) {
+            arguments.add(source.toString());
+        }
+        int status = compiler.run(null, null, null, arguments.toArray(new String[0]));
+        if (status != 0) {
+            throw new IllegalStateException("Compiling synthetic models failed with status " + status);
+        }
+    }
+    
+    // ========================================================================================
+    // PAYLOADS
+    // ========================================================================================
+    
+    /**
+     * Stream one SynthRoot document of roughly the target size
+     * 
+     * @return bytes written and number of objects
+     */
+    long[] writePayload(Path file, String shape, long targetBytes, long payloadSeed) throws IOException {
+        Random random = new Random(payloadSeed);
+        long[] objects = { 0 };
+        try (CountingWriter counter = new CountingWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+             JsonWriter json = new JsonWriter(counter)) {
+            long itemBudget = shape.equals("wide") ? targetBytes : shape.equals("mixed") ? targetBytes / 2 : 0;
+            
+            json.beginObject();
+            objects[0]++;
+            json.name("name").value("synthetic-" + payloadSeed);
+            json.name("seed").value(payloadSeed);
+            json.name("primary");
+            writeObject(json, findTarget(root, "primary"), random, objects);
+            json.name("tags").beginArray();
+            for (int i = 0; i < 3 + random.nextInt(3); i++) {
+                json.value("tag" + i);
+            }
+            json.endArray();
+            
+            json.name("items").beginArray();
+            ModelClass itemClass = findTarget(root, "items");
+            while (counter.count < itemBudget) {
+                writeObject(json, itemClass, random, objects);
+            }
+            json.endArray();
+            
+            // The chain goes last so it can simply grow until the file reaches its size
+            json.name("node");
+            int chain = 0;
+            do {
+                json.beginObject();
+                objects[0]++;
+                json.name("label").value("n" + chain);
+                json.name("level").value(chain);
+                json.name("children");
+                writeChildren(json, chain + 1, depth, random, objects);
+                json.name("next");
+                chain++;
+            } while (!shape.equals("wide") && counter.count < targetBytes);
+            json.nullValue();
+            for (int i = 0; i < chain; i++) {
+                json.endObject();
+            }
+            json.endObject();
+            json.flush();
+            return new long[] { counter.count, objects[0] };
+        }
+    }
+    
+    private static ModelClass findTarget(ModelClass model, String fieldName) {
+        for (Field field : model.fields) {
+            if (field.name.equals(fieldName)) return field.target;
+        }
+        throw new IllegalStateException("No field " + fieldName + " on " + model.name);
+    }
+    
+    /**
+     * Write one model object; recursion is bounded by the class graph depth
+     */
+    private void writeObject(JsonWriter json, ModelClass model, Random random, long[] objects) throws IOException {
+        json.beginObject();
+        objects[0]++;
+        for (Field field : model.fields) {
+            json.name(field.name);
+            switch (field.kind) {
+                case "scalar":
+                    writeScalar(json, field.scalarType, random);
+                    break;
+                case "object":
+                    writeObject(json, field.target, random, objects);
+                    break;
+                case "array":
+                    json.beginArray();
+                    for (int i = 0, n = random.nextInt(fanout + 2); i < n; i++) {
+                        json.value(random.nextInt(1000));
+                    }
+                    json.endArray();
+                    break;
+                default:
+                    json.beginArray();
+                    for (int i = 0, n = random.nextInt(fanout + 1); i < n; i++) {
+                        if (field.target != null) {
+                            writeObject(json, field.target, random, objects);
+                        } else {
+                            // Distinct values, so Set fields keep every element
+                            json.value(field.name + i);
+                        }
+                    }
+                    json.endArray();
+                    break;
+            }
+        }
+        json.endObject();
+    }
+    
+    /**
+     * SynthNode.children of one node: up to fanout children, nested at most remainingDepth levels
+     */
+    private void writeChildren(JsonWriter json, int level, int remainingDepth, Random random, long[] objects)
+            throws IOException {
+        json.beginArray();
+        for (int i = 0, n = remainingDepth > 0 ? random.nextInt(fanout + 1) : 0; i < n; i++) {
+            json.beginObject();
+            objects[0]++;
+            json.name("label").value("c" + level + "_" + i);
+            json.name("level").value(level);
+            json.name("next").nullValue();
+            json.name("children");
+            writeChildren(json, level + 1, remainingDepth - 1, random, objects);
+            json.endObject();
+        }
+        json.endArray();
+    }
+    
+    private static void writeScalar(JsonWriter json, String type, Random random) throws IOException {
+        switch (type) {
+            case "String": json.value("s" + Long.toString(random.nextLong() & 0xFFFFFFFL, 36)); break;
+            case "int": json.value(random.nextInt(100_000)); break;
+            case "long": json.value(random.nextLong() >>> 16); break;
+            case "double": json.value(Math.round(random.nextDouble() * 10_000) / 100.0); break;
+            default: json.value(random.nextBoolean()); break;
+        }
+    }
+    
+    static long parseSize(String text) {
+        String upper = text.trim().toUpperCase();
+        long multiplier = 1;
+        if (upper.endsWith("GB")) multiplier = 1L << 30;
+        else if (upper.endsWith("MB")) multiplier = 1L << 20;
+        else if (upper.endsWith("KB")) multiplier = 1L << 10;
+        String digits = multiplier == 1 ? upper.replaceAll("B$", "") : upper.substring(0, upper.length() - 2);
+        return Long.parseLong(digits.trim()) * multiplier;
+    }
+    
+    /**
+     * Counts characters written; payloads are ASCII, so this is also the byte count
+     */
+    private static final class CountingWriter extends FilterWriter {
+        private long count;
+        
+        CountingWriter(Writer out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count++;
+        }
+        
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            count += length;
+        }
+        
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            out.write(text, offset, length);
+            count += length;
+        }
+    }
+}
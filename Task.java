@@ -0,0 +1,65 @@
+import java.util.*;
+
+@GeneratorModel
+public class Task {
+    private String title;
+    private Priority priority;
+    private Set<Priority> escalations;
+    private List<Priority> history;
+    private Map<Priority, Employee> owners;
+    private Map<String, Integer> estimates;
+    
+    public String getTitle() {
+        return title;
+    }
+    
+    public void setTitle(String title) {
+        this.title = title;
+    }
+    
+    public Priority getPriority() {
+        return priority;
+    }
+    
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+    
+    public Set<Priority> getEscalations() {
+        return escalations;
+    }
+    
+    public void setEscalations(Set<Priority> escalations) {
+        this.escalations = escalations;
+    }
+    
+    public List<Priority> getHistory() {
+        return history;
+    }
+    
+    public void setHistory(List<Priority> history) {
+        this.history = history;
+    }
+    
+    public Map<Priority, Employee> getOwners() {
+        return owners;
+    }
+    
+    public void setOwners(Map<Priority, Employee> owners) {
+        this.owners = owners;
+    }
+    
+    public Map<String, Integer> getEstimates() {
+        return estimates;
+    }
+    
+    public void setEstimates(Map<String, Integer> estimates) {
+        this.estimates = estimates;
+    }
+    
+    @Override
+    public String toString() {
+        return "Task{title='" + title + "', priority=" + priority + ", escalations=" + escalations +
+               ", history=" + history + ", owners=" + owners + ", estimates=" + estimates + "}";
+    }
+}
@@ -0,0 +1,97 @@
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Compares the Gson tree path with the byte-level tokenizer path
+ * 
+ * For each bundled fixture it checks that both paths generate the same code, then
+ * reports time and bytes allocated per generation. Allocation is read from the
+ * HotSpot thread MX bean and reported as n/a on JVMs without it.
+ * 
+ * Usage: java TokenizerBenchmark [iterations]
+ */
+public class TokenizerBenchmark {
+    
+    private static final int WARMUP_ITERATIONS = 2_000;
+    
+    private static final Object[][] FIXTURES = {
+        { TreeNode.class, "test_composite.json" },
+        { Department.class, "test_collections.json" },
+        { Company.class, "test_array.json" },
+        { A.class, "sample_data.json" }
+    };
+    
+    private interface Run {
+        String generate();
+    }
+    
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        GenerationOptions options = GenerationOptions.defaults();
+        boolean allMatch = true;
+        
+        System.out.println("=== Tokenizer Benchmark (" + iterations + " iterations) ===\n");
+        System.out.printf("%-24s %-8s %12s %14s%n", "Fixture", "Path", "us/op", "bytes/op");
+        System.out.println("-".repeat(61));
+        
+        for (Object[] fixture : FIXTURES) {
+            Class<?> clazz = (Class<?>) fixture[0];
+            String fileName = (String) fixture[1];
+            byte[] bytes = Files.readAllBytes(Paths.get(fileName));
+            String json = new String(bytes, StandardCharsets.UTF_8);
+            
+            Run gson = () -> JsonToObjectGenerator.generateObjectCode(clazz, json, options);
+            Run tokenizer = () -> JsonToObjectGenerator.generateObjectCode(clazz, bytes, options);
+            
+            boolean match = gson.generate().equals(tokenizer.generate());
+            allMatch &= match;
+            
+            measure(fileName, "gson", gson, iterations);
+            measure(fileName, "bytes", tokenizer, iterations);
+            if (!match) {
+                System.out.println("  OUTPUT MISMATCH for " + fileName);
+            }
+        }
+        
+        System.out.println("\nOutput parity: " + (allMatch ? "OK" : "FAILED"));
+        if (!allMatch) {
+            System.exit(1);
+        }
+    }
+    
+    private static void measure(String fixture, String label, Run run, int iterations) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            run.generate();
+        }
+        
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += run.generate().length();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        
+        String allocation = allocatedBefore < 0 ? "n/a"
+            : String.valueOf((allocatedAfter - allocatedBefore) / iterations);
+        System.out.printf("%-24s %-8s %12.2f %14s%n", fixture, label,
+                          elapsed / 1_000.0 / iterations, allocation);
+        if (sink == 0) {
+            System.out.println("  (empty output)");
+        }
+    }
+    
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+            if (hotspot.isThreadAllocatedMemorySupported()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -1,3 +1,4 @@
+@GeneratorModel
 public class TreeNode {
     private String name;
     private TreeNode leftChild;
@@ -0,0 +1,571 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.*;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * JsonTokenSource over an XML document, read with a StAX pull parser
+ * 
+ * Lets StreamingCodeGenerator build the same objects from XML that it builds from JSON,
+ * with the same plans and emitter. The document is read event by event and never held as
+ * a tree. The XML is presented as JSON tokens:
+ * - the document element is the root object; its own name is not used
+ * - attributes and child elements are members, attributes first
+ * - a member whose field is a scalar takes the element's text; an empty element is null
+ * - a member whose field is a model class or a map is an object; map keys are child
+ *   element names
+ * - a collection field is matched either by a wrapper element whose children are the
+ *   elements ({@code <features><feature>5G</feature>...</features>}), or by consecutive
+ *   repeated elements named like the field or its singular ({@code <employee>} for
+ *   {@code employees}); a field whose elements come back after other elements is an error
+ * - elements of unknown members, comments and processing instructions are skipped
+ * 
+ * XML text carries no types, so a scalar is converted to the type it is rendered for
+ * (number, boolean, enum constant or string). Array sizes are not known ahead.
+ * 
+ * Captured scalars are released once the object that contains them has been emitted,
+ * so memory is bounded by the nesting depth rather than the document size.
+ */
+final class XmlTokenSource implements JsonTokenSource {
+    
+    private static final int NULL_BIT = 1;
+    
+    private final XMLStreamReader reader;
+    private final Deque<Context> contexts = new ArrayDeque<>();
+    private final List<String> scalarTexts = new ArrayList<>();
+    private final List<Class<?>> scalarElementTypes = new ArrayList<>();
+    
+    private boolean started;
+    private boolean atTag;
+    private boolean valueExpected;
+    private String attributeValue;
+    private ClassPlan.FieldPlan resolvedField;
+    private boolean resolvedBySingular;
+    private int releaseTo = -1;
+    private boolean capturedPeeked;
+    
+    private JsonToken token;
+    private String tokenText;
+    private Class<?> tokenElementType;
+    private Element openedObject;
+    private Context openedArray;
+    private Element firstRepeatedItem;
+    
+    private XmlTokenSource(XMLStreamReader reader) {
+        this.reader = reader;
+    }
+    
+    static XmlTokenSource of(InputStream xml) throws IOException {
+        try {
+            return new XmlTokenSource(factory().createXMLStreamReader(xml));
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot read XML: " + e.getMessage(), e);
+        }
+    }
+    
+    static XmlTokenSource of(Reader xml) throws IOException {
+        try {
+            return new XmlTokenSource(factory().createXMLStreamReader(xml));
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot read XML: " + e.getMessage(), e);
+        }
+    }
+    
+    private static XMLInputFactory factory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // Payloads come from outside: no DTDs, no external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+    
+    // ========================================================================================
+    // TOKENS
+    // ========================================================================================
+    
+    @Override
+    public JsonToken peek() throws IOException {
+        if (token == null) {
+            try {
+                computeNext();
+            } catch (XMLStreamException e) {
+                throw new IOException("Malformed XML: " + e.getMessage(), e);
+            }
+        }
+        return token;
+    }
+    
+    @Override
+    public void advance() throws IOException {
+        JsonToken consumed = peek();
+        switch (consumed) {
+            case BEGIN_OBJECT:
+                contexts.push(Context.object(openedObject, scalarTexts.size()));
+                openedObject = null;
+                break;
+            case BEGIN_ARRAY:
+                contexts.push(openedArray);
+                openedArray = null;
+                break;
+            case END_OBJECT:
+                Context object = contexts.pop();
+                if (!object.closed) {
+                    consumeTag();
+                }
+                // Handles captured inside are still rendered by the generator's next action
+                releaseTo = object.scalarMark;
+                break;
+            case END_ARRAY:
+                Context array = contexts.pop();
+                if (array.repeatedName == null && !array.closed) {
+                    consumeTag();
+                }
+                break;
+            case NAME:
+                Context members = contexts.peek();
+                attributeValue = members.attributes.isEmpty() ? null : members.attributes.poll()[1];
+                valueExpected = true;
+                break;
+            case END_DOCUMENT:
+                throw new IllegalStateException("No token to consume at end of document");
+            default:
+                if (capturedPeeked && !contexts.isEmpty() && contexts.peek().array) {
+                    // An array element is rendered before it is consumed
+                    scalarTexts.remove(scalarTexts.size() - 1);
+                    scalarElementTypes.remove(scalarElementTypes.size() - 1);
+                }
+                break;
+        }
+        capturedPeeked = false;
+        token = null;
+    }
+    
+    @Override
+    public void skipValue() throws IOException {
+        JsonToken next = peek();
+        try {
+            if (next == JsonToken.BEGIN_OBJECT) {
+                if (!openedObject.closed) {
+                    skipToEnd();
+                }
+                openedObject = null;
+            } else if (next == JsonToken.BEGIN_ARRAY) {
+                skipArray();
+            } else if (next == JsonToken.NAME) {
+                advance();
+                skipValue();
+                return;
+            } else if (next == JsonToken.END_OBJECT || next == JsonToken.END_ARRAY || next == JsonToken.END_DOCUMENT) {
+                throw new IllegalStateException("No value to skip at " + next);
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed XML: " + e.getMessage(), e);
+        }
+        token = null;
+    }
+    
+    @Override
+    public int nameIndex(ClassPlan plan) throws IOException {
+        String name = name();
+        int index = contexts.peek().attributes.isEmpty() ? findMember(plan, name) : plan.getNameTable().find(name);
+        resolvedBySingular = index >= 0 && !plan.getFields()[index].getName().equals(name);
+        resolvedField = index >= 0 ? plan.getFields()[index] : null;
+        if (resolvedField != null && resolvedField.isCollectionType() && !contexts.peek().fillCollection(index)) {
+            // A second run would declare a second collection and the setter would keep only the last one
+            throw new IOException("XML elements for collection field '" + resolvedField.getName()
+                + "' are not consecutive: <" + name + "> appears again after other elements");
+        }
+        return index;
+    }
+    
+    /**
+     * Field for a child element name: the field of that name, or the collection field named
+     * by its plural (<employee> repeated directly in the parent fills employees)
+     */
+    private static int findMember(ClassPlan plan, String elementName) {
+        int index = plan.getNameTable().find(elementName);
+        if (index < 0) {
+            int plural = plan.getNameTable().find(elementName + "s");
+            if (plural >= 0 && plan.getFields()[plural].isCollectionType()) {
+                return plural;
+            }
+        }
+        return index;
+    }
+    
+    @Override
+    public String name() throws IOException {
+        if (peek() != JsonToken.NAME) {
+            throw new IllegalStateException("Expected NAME but was " + peek());
+        }
+        return tokenText;
+    }
+    
+    @Override
+    public int countElements() {
+        return -1;
+    }
+    
+    @Override
+    public boolean countsElements() {
+        return false;
+    }
+    
+    private void computeNext() throws XMLStreamException {
+        if (releaseTo >= 0) {
+            scalarTexts.subList(releaseTo, scalarTexts.size()).clear();
+            scalarElementTypes.subList(releaseTo, scalarElementTypes.size()).clear();
+            releaseTo = -1;
+        }
+        tokenElementType = null;
+        
+        if (!started) {
+            started = true;
+            if (nextTag() != XMLStreamConstants.START_ELEMENT) {
+                throw new IllegalStateException("XML document has no root element");
+            }
+            openedObject = open();
+            token = JsonToken.BEGIN_OBJECT;
+            return;
+        }
+        if (valueExpected) {
+            valueExpected = false;
+            computeValue();
+            return;
+        }
+        if (contexts.isEmpty()) {
+            token = JsonToken.END_DOCUMENT;
+            return;
+        }
+        
+        Context context = contexts.peek();
+        if (!context.array) {
+            resolvedField = null;
+            if (!context.attributes.isEmpty()) {
+                token = JsonToken.NAME;
+                tokenText = context.attributes.peek()[0];
+            } else if (context.closed || nextTag() != XMLStreamConstants.START_ELEMENT) {
+                token = JsonToken.END_OBJECT;
+            } else {
+                token = JsonToken.NAME;
+                tokenText = reader.getLocalName();
+            }
+        } else if (firstRepeatedItem != null) {
+            Element item = firstRepeatedItem;
+            firstRepeatedItem = null;
+            computeItem(context, item);
+        } else if (context.closed || nextTag() != XMLStreamConstants.START_ELEMENT ||
+                   (context.repeatedName != null && !context.repeatedName.equals(reader.getLocalName()))) {
+            // A repeated run ends at the first differently named sibling, which stays unread
+            token = JsonToken.END_ARRAY;
+        } else {
+            computeItem(context, open());
+        }
+    }
+    
+    /**
+     * Value of the member whose NAME was just consumed: an attribute value or a child element
+     */
+    private void computeValue() throws XMLStreamException {
+        if (attributeValue != null) {
+            scalar(attributeValue);
+            attributeValue = null;
+            return;
+        }
+        
+        ClassPlan.FieldPlan field = resolvedField;
+        resolvedField = null;
+        Element element = open();
+        if (field != null && field.isCollectionType()) {
+            Class<?> elementType = field.getType().isArray()
+                ? field.getType().getComponentType() : field.getElementType(null);
+            if (!resolvedBySingular && element.closed && !element.hasContent() && element.text.trim().isEmpty()) {
+                // <skills/>: an empty wrapper
+                openedArray = Context.array(null, elementType, true);
+                token = JsonToken.BEGIN_ARRAY;
+                return;
+            }
+            // An element that reads as one item (attributes, or a first child that is an item field) repeats;
+            // anything else wraps the items
+            boolean repeated = resolvedBySingular || !element.hasChildren || (isObjectType(elementType) &&
+                (!element.attributes.isEmpty() || findMember(ClassPlan.of(elementType), reader.getLocalName()) >= 0));
+            if (repeated) {
+                firstRepeatedItem = element;
+            }
+            openedArray = Context.array(repeated ? element.name : null, elementType, false);
+            token = JsonToken.BEGIN_ARRAY;
+        } else if (field != null ? !field.isPrimitiveOrString() && !field.getType().isEnum() : element.hasContent()) {
+            openedObject = element;
+            token = JsonToken.BEGIN_OBJECT;
+        } else {
+            scalar(element);
+        }
+    }
+    
+    private void computeItem(Context array, Element item) throws XMLStreamException {
+        if (item.hasContent() && isObjectType(array.elementType)) {
+            openedObject = item;
+            token = JsonToken.BEGIN_OBJECT;
+        } else {
+            scalar(item);
+            tokenElementType = array.elementType;
+        }
+    }
+    
+    private void skipArray() throws XMLStreamException {
+        Context array = openedArray;
+        openedArray = null;
+        if (array.repeatedName == null) {
+            if (!array.closed) {
+                skipToEnd();
+            }
+            return;
+        }
+        Element item = firstRepeatedItem;
+        firstRepeatedItem = null;
+        while (true) {
+            if (!item.closed) {
+                skipToEnd();
+            }
+            if (nextTag() != XMLStreamConstants.START_ELEMENT || !array.repeatedName.equals(reader.getLocalName())) {
+                return;
+            }
+            item = open();
+        }
+    }
+    
+    private static boolean isObjectType(Class<?> type) {
+        return type != null && !JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(type) && !type.isEnum();
+    }
+    
+    // ========================================================================================
+    // XML EVENTS
+    // ========================================================================================
+    
+    /**
+     * Move to the next start or end tag (text between elements is layout), without consuming it
+     */
+    private int nextTag() throws XMLStreamException {
+        if (atTag) {
+            return reader.getEventType();
+        }
+        int event = reader.next();
+        while (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT &&
+               event != XMLStreamConstants.END_DOCUMENT) {
+            event = reader.next();
+        }
+        atTag = true;
+        return event;
+    }
+    
+    private void consumeTag() {
+        atTag = false;
+    }
+    
+    /**
+     * Consume the start tag at the reader and read up to its first child or its end tag
+     */
+    private Element open() throws XMLStreamException {
+        Element element = new Element(reader.getLocalName());
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.attributes.add(new String[] {reader.getAttributeLocalName(i), reader.getAttributeValue(i)});
+        }
+        consumeTag();
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                element.hasChildren = true;
+                atTag = true;
+                return element;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                element.closed = true;
+                element.text = text.toString();
+                return element;
+            }
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA ||
+                event == XMLStreamConstants.SPACE) {
+                text.append(reader.getText());
+            }
+        }
+    }
+    
+    /**
+     * Consume the rest of the element whose start tag has been read, nested elements included
+     */
+    private void skipToEnd() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = atTag ? reader.getEventType() : reader.next();
+            atTag = false;
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.END_DOCUMENT) {
+                throw new XMLStreamException("Unexpected end of document");
+            }
+        }
+    }
+    
+    private void scalar(Element element) throws XMLStreamException {
+        if (element.hasChildren) {
+            // Scalar field given structured content: nothing to take
+            skipToEnd();
+        }
+        scalar(element.hasChildren || element.text.isEmpty() ? null : element.text);
+    }
+    
+    private void scalar(String text) {
+        tokenText = text;
+        token = text == null ? JsonToken.NULL : JsonToken.STRING;
+    }
+    
+    // ========================================================================================
+    // SCALARS
+    // ========================================================================================
+    
+    @Override
+    public long captureScalar() throws IOException {
+        JsonToken scalarToken = peek();
+        long index = scalarTexts.size();
+        scalarTexts.add(tokenText);
+        scalarElementTypes.add(tokenElementType);
+        capturedPeeked = true;
+        return index << 1 | (scalarToken == JsonToken.NULL ? NULL_BIT : 0);
+    }
+    
+    @Override
+    public boolean isNull(long handle) {
+        return (handle & NULL_BIT) != 0;
+    }
+    
+    @Override
+    public void appendValue(long handle, Class<?> type, StringBuilder out) {
+        if (isNull(handle)) {
+            out.append("null");
+            return;
+        }
+        out.append(JsonToObjectGenerator.ValueConverter.getValueAsString(toPrimitive(textOf(handle), type), type));
+    }
+    
+    /**
+     * Collection elements: rendered for the collection's element type when it is known,
+     * since XML text cannot tell a number from a string
+     */
+    @Override
+    public void appendPrimitive(long handle, StringBuilder out) {
+        Class<?> elementType = scalarElementTypes.get((int) (handle >>> 1));
+        if (!isNull(handle) && elementType != null && elementType != Object.class &&
+            (JsonToObjectGenerator.TypeAnalyzer.isPrimitiveOrString(elementType) || elementType.isEnum())) {
+            appendValue(handle, elementType, out);
+        } else if (isNull(handle)) {
+            out.append("null");
+        } else {
+            out.append(JsonToObjectGenerator.ValueConverter.getPrimitiveValue(new JsonPrimitive(textOf(handle))));
+        }
+    }
+    
+    private String textOf(long handle) {
+        return scalarTexts.get((int) (handle >>> 1));
+    }
+    
+    /**
+     * XML text as the JSON value it stands for when rendered as the given type
+     */
+    private static JsonPrimitive toPrimitive(String text, Class<?> type) {
+        String trimmed = text.trim();
+        if (type == boolean.class || type == Boolean.class) {
+            if (trimmed.equals("true") || trimmed.equals("false")) {
+                return new JsonPrimitive(Boolean.parseBoolean(trimmed));
+            }
+        } else if ((type.isPrimitive() && type != char.class) || Number.class.isAssignableFrom(type)) {
+            try {
+                return new JsonPrimitive(new BigDecimal(trimmed));
+            } catch (NumberFormatException e) {
+                // Left as a string; the literal will not compile, as for any other mistyped value
+            }
+        } else if (type.isEnum()) {
+            return new JsonPrimitive(trimmed);
+        }
+        return new JsonPrimitive(text);
+    }
+    
+    // ========================================================================================
+    // STATE
+    // ========================================================================================
+    
+    /**
+     * An element whose start tag has been read
+     */
+    private static final class Element {
+        private final String name;
+        private final List<String[]> attributes = new ArrayList<>();
+        private boolean hasChildren;
+        private boolean closed;
+        private String text = "";
+        
+        Element(String name) {
+            this.name = name;
+        }
+        
+        boolean hasContent() {
+            return hasChildren || !attributes.isEmpty();
+        }
+    }
+    
+    /**
+     * An open object (element) or array (wrapper element or run of repeated elements)
+     */
+    private static final class Context {
+        private final boolean array;
+        private final String repeatedName;
+        private final Class<?> elementType;
+        private final Deque<String[]> attributes;
+        private final boolean closed;
+        private final int scalarMark;
+        private BitSet filledCollections;
+        
+        private Context(boolean array, String repeatedName, Class<?> elementType, Deque<String[]> attributes,
+                        boolean closed, int scalarMark) {
+            this.array = array;
+            this.repeatedName = repeatedName;
+            this.elementType = elementType;
+            this.attributes = attributes;
+            this.closed = closed;
+            this.scalarMark = scalarMark;
+        }
+        
+        /**
+         * Record that a collection field of this object is being filled
+         * 
+         * @return false if it was already filled by an earlier wrapper or run of elements
+         */
+        boolean fillCollection(int fieldIndex) {
+            if (filledCollections == null) {
+                filledCollections = new BitSet();
+            } else if (filledCollections.get(fieldIndex)) {
+                return false;
+            }
+            filledCollections.set(fieldIndex);
+            return true;
+        }
+        
+        static Context object(Element element, int scalarMark) {
+            return new Context(false, null, null, new ArrayDeque<>(element.attributes), element.closed, scalarMark);
+        }
+        
+        static Context array(String repeatedName, Class<?> elementType, boolean closed) {
+            return new Context(true, repeatedName, elementType, null, closed, -1);
+        }
+    }
+}